@@ -0,0 +1,116 @@
+package offHeapTypes;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import slab.Slab;
+import slab.SlabKeyStore;
+import slab.TestOrder;
+import utils.KeyHasher;
+import utils.StandardKeyHasher;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//--enable-preview
+//--add-opens
+//java.base/jdk.internal.misc=ALL-UNNAMED
+//--add-opens
+//java.base/java.util.zip=ALL-UNNAMED
+//-Dagrona.disable.bounds.checks=true
+//--add-modules
+//jdk.incubator.vector
+//-XX:MaxDirectMemorySize=4g
+//-Xmx4g
+//-Xms4g
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class KeyHasherBenchmarkTests {
+
+    private static final int KEY_COUNT = 1024;
+    private static final int BOOK_SIZE = 1_000_000;
+    private static final int BATCH_SIZE = 64;
+
+    @Param({"POLYNOMIAL", "WYHASH", "CRC32C"})
+    public StandardKeyHasher hasher;
+
+    @Param({"16", "40", "64"})
+    public int keyLength;
+
+    private UnsafeBuffer keys;
+    private int keyIndex;
+
+    private Slab<TestOrder> slab;
+    private SlabKeyStore<TestOrder> slabKeyStore;
+    private int maxProbeDistance;
+    private final TestOrder[] lookups = new TestOrder[BATCH_SIZE];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.keys = new UnsafeBuffer(ByteBuffer.allocateDirect(KEY_COUNT * keyLength));
+        for (int i = 0; i < KEY_COUNT; i++) {
+            final String key = "ORDER" + ThreadLocalRandom.current().nextLong(1L << 40);
+            keys.putStringWithoutLengthAscii(i * keyLength, key.substring(0, Math.min(key.length(), keyLength)));
+        }
+
+        //Lookup cost on a linear probing store with sequential ids is where a hasher's clustering shows
+        final TestOrder testOrder = withHasher(hasher);
+        this.slab = new Slab<>((short) 256, BOOK_SIZE / 256, () -> testOrder);
+        this.slabKeyStore = new SlabKeyStore<>(BOOK_SIZE * 2, 0.65f, slab);
+        for (int i = 0; i < BOOK_SIZE; i++) {
+            final int index = slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set("ORDER" + i);
+            slabKeyStore.insert(index, testOrder);
+        }
+        this.maxProbeDistance = slabKeyStore.getMaxProbeDistance();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            lookups[i] = withHasher(hasher);
+            lookups[i].wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void pickKeys() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            lookups[i].getUnsafeAsciiString().set("ORDER" + random.nextInt(BOOK_SIZE));
+        }
+    }
+
+    @Benchmark
+    public void testHash(final Blackhole blackhole) {
+        keyIndex = (keyIndex + 1) & (KEY_COUNT - 1);
+        blackhole.consume(hasher.hash(keys, keyIndex * keyLength, keyLength));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void testGetKey(final Blackhole blackhole, final Clustering clustering) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            blackhole.consume(slabKeyStore.getKey(lookups[i]));
+        }
+        clustering.maxProbeDistance = maxProbeDistance;
+    }
+
+    //Reported next to testGetKey's score, so each hasher's clustering shows beside the lookup cost it causes
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Clustering {
+        public int maxProbeDistance;
+    }
+
+    private static TestOrder withHasher(final KeyHasher hasher) {
+        return new TestOrder() {
+            @Override
+            public KeyHasher keyHasher() {
+                return hasher;
+            }
+        };
+    }
+}
@@ -4,6 +4,9 @@ import offHeapDataStructures.BytesToIntOffHeapMap;
 import offHeapTypes.DirectBufferUnsafeString;
 import org.agrona.collections.Object2ObjectHashMap;
 import org.openjdk.jmh.annotations.*;
+import segmentSlab.SegmentSlab;
+import segmentSlab.SegmentSlabKeyStore;
+import segmentSlab.SegmentTestOrder;
 import unsafeSlab.UnsafeSlab;
 import unsafeSlab.UnsafeSlabKeyStore;
 import unsafeSlab.UnsafeTestOrder;
@@ -36,6 +39,18 @@ public class DataStoreTests {
 
     private final UnsafeSlab<UnsafeTestOrder> unsafeSlab = new UnsafeSlab<>((short) 256, 8, () -> this.unsafeTestOrder);
 
+    private final UnsafeSlabKeyStore<UnsafeTestOrder> unsafeSlabKeyStore = new UnsafeSlabKeyStore<>(2048, 0.65f,
+            unsafeSlab);
+
+    private final SegmentTestOrder segmentTestOrder = new SegmentTestOrder();
+
+    //State is constructed off the benchmark thread, so a confined arena would reject the benchmark's accesses
+    private final SegmentSlab<SegmentTestOrder> segmentSlab = new SegmentSlab<>((short) 256, 8,
+            () -> this.segmentTestOrder, true);
+
+    private final SegmentSlabKeyStore<SegmentTestOrder> segmentSlabKeyStore = new SegmentSlabKeyStore<>(2048, 0.65f,
+            segmentSlab);
+
     @Setup(Level.Iteration)
     public void setup() {
         lookupKey.set("ABC123");
@@ -83,6 +98,24 @@ public class DataStoreTests {
         slab.removeAt(index);
     }
 
+    @Benchmark
+    public void testUnsafeSlabKeyStore() {
+        final int index = unsafeSlab.create(unsafeTestOrder);
+        unsafeTestOrder.setKey("ABC123");
+        unsafeSlabKeyStore.insert(index, unsafeTestOrder);
+        final int removedKey = unsafeSlabKeyStore.removeCodec(unsafeTestOrder);
+        unsafeSlab.removeAt(removedKey);
+    }
+
+    @Benchmark
+    public void testSegmentSlabKeyStore() {
+        final int index = segmentSlab.create(segmentTestOrder);
+        segmentTestOrder.setKey("ABC123");
+        segmentSlabKeyStore.insert(index, segmentTestOrder);
+        final int removedKey = segmentSlabKeyStore.removeCodec(segmentTestOrder);
+        segmentSlab.removeAt(removedKey);
+    }
+
     @Benchmark
     public void baseline() {
         concreteTestOrder.getUnsafeAsciiString().set(lookupKey);
@@ -0,0 +1,119 @@
+package slab;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import utils.ProbeMode;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//--enable-preview
+//--add-opens
+//java.base/jdk.internal.misc=ALL-UNNAMED
+//-Dagrona.disable.bounds.checks=true
+//--add-modules
+//jdk.incubator.vector
+//-XX:MaxDirectMemorySize=4g
+//-Xmx4g
+//-Xms4g
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class KeyStoreLookupBenchmarkTests {
+
+    private static final int BOOK_SIZE = 4_000_000;
+    private static final int BATCH_SIZE = 64;
+
+    private final TestOrder testOrder = new TestOrder();
+    private final TestOrder[] lookups = new TestOrder[BATCH_SIZE];
+    private final TestOrder[] missingLookups = new TestOrder[BATCH_SIZE];
+    private final int[] out = new int[BATCH_SIZE];
+    private Slab<TestOrder> slab;
+    private SlabKeyStore<TestOrder> slabKeyStore;
+    private SwissSlabKeyStore<TestOrder> swissSlabKeyStore;
+    private SlabKeyStore<TestOrder> robinHoodSlabKeyStore;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.slab = new Slab<>((short) 256, BOOK_SIZE / 256, () -> this.testOrder);
+        this.slabKeyStore = new SlabKeyStore<>(BOOK_SIZE * 2, 0.65f, slab);
+        this.swissSlabKeyStore = new SwissSlabKeyStore<>(BOOK_SIZE, slab);
+        this.robinHoodSlabKeyStore = new SlabKeyStore<>(BOOK_SIZE * 2, 0.65f, slab, ProbeMode.ROBIN_HOOD);
+        for (int i = 0; i < BOOK_SIZE; i++) {
+            final int index = slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set(String.valueOf(i));
+            slabKeyStore.insert(index, testOrder);
+            swissSlabKeyStore.insert(index, testOrder);
+            robinHoodSlabKeyStore.insert(index, testOrder);
+        }
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            lookups[i] = new TestOrder();
+            lookups[i].wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+            missingLookups[i] = new TestOrder();
+            missingLookups[i].wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)),
+                    0, 40);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void pickKeys() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            lookups[i].getUnsafeAsciiString().set(String.valueOf(random.nextInt(BOOK_SIZE)));
+            missingLookups[i].getUnsafeAsciiString().set(String.valueOf(BOOK_SIZE + random.nextInt(BOOK_SIZE)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void testGetKey(final Blackhole blackhole) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            blackhole.consume(slabKeyStore.getKey(lookups[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void testGetKeys(final Blackhole blackhole) {
+        slabKeyStore.getKeys(lookups, BATCH_SIZE, out);
+        blackhole.consume(out);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void testSwissGetKey(final Blackhole blackhole) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            blackhole.consume(swissSlabKeyStore.getKey(lookups[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void testGetMissingKey(final Blackhole blackhole) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            blackhole.consume(slabKeyStore.getKey(missingLookups[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void testRobinHoodGetKey(final Blackhole blackhole) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            blackhole.consume(robinHoodSlabKeyStore.getKey(lookups[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void testRobinHoodGetMissingKey(final Blackhole blackhole) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            blackhole.consume(robinHoodSlabKeyStore.getKey(missingLookups[i]));
+        }
+    }
+}
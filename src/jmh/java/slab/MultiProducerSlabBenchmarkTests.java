@@ -0,0 +1,52 @@
+package slab;
+
+import org.openjdk.jmh.annotations.*;
+import unsafeSlab.MultiProducerUnsafeSlab;
+import unsafeSlab.UnsafeTestOrder;
+
+import java.util.concurrent.TimeUnit;
+
+//Run with -t 1, 2, 4... to check create/remove throughput scales with producer threads
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 2, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class MultiProducerSlabBenchmarkTests {
+
+    private MultiProducerUnsafeSlab<UnsafeTestOrder> slab = null;
+
+    @State(Scope.Thread)
+    public static class ProducerState {
+        private final UnsafeTestOrder unsafeTestOrder = new UnsafeTestOrder();
+        private MultiProducerUnsafeSlab<UnsafeTestOrder>.Producer producer;
+
+        @Setup(Level.Iteration)
+        public void setup(final MultiProducerSlabBenchmarkTests benchmark) {
+            this.producer = benchmark.slab.newProducer();
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            this.producer.close();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        this.slab = new MultiProducerUnsafeSlab<>((short) 256, 4096, 16384, UnsafeTestOrder::new);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        this.slab.close();
+    }
+
+    @Benchmark
+    public void testMultiProducerCreateRemove(final ProducerState producerState) {
+        final int index = producerState.producer.create(producerState.unsafeTestOrder);
+        slab.removeAt(index);
+    }
+}
@@ -3,6 +3,8 @@ package slab;
 import org.agrona.collections.IntArrayQueue;
 import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.infra.Blackhole;
+import segmentSlab.SegmentSlab;
+import segmentSlab.SegmentTestOrder;
 import unsafeSlab.UnsafeSlab;
 import unsafeSlab.UnsafeTestOrder;
 
@@ -30,13 +32,21 @@ public class SlabBenchmarkTests {
     private final IntArrayQueue intArrayQueue = new IntArrayQueue(256, -1);
     private boolean isDraining;
 
+    private static final int BURST_SIZE = 128;
+    private final int[] burst = new int[BURST_SIZE];
+    private int burstCount;
+
     private final UnsafeTestOrder unsafeTestOrder = new UnsafeTestOrder();
     private UnsafeSlab<UnsafeTestOrder> unsafeSlab = null;
 
+    private final SegmentTestOrder segmentTestOrder = new SegmentTestOrder();
+    private SegmentSlab<SegmentTestOrder> segmentSlab = null;
+
     @Setup(Level.Iteration)
     public void setup() {
         this.slab = new Slab<>((short) 256, 4096, () -> this.codec);
         this.unsafeSlab = new UnsafeSlab<>((short) 256, 4096, () -> this.unsafeTestOrder);
+        this.segmentSlab = new SegmentSlab<>((short) 256, 4096, () -> this.segmentTestOrder);
         System.gc();
         intArrayQueue.clear();
         isDraining = false;
@@ -45,6 +55,7 @@ public class SlabBenchmarkTests {
     @TearDown(Level.Iteration)
     public void tearDown() {
         this.unsafeSlab.close();
+        this.segmentSlab.close();
     }
 
     @Benchmark
@@ -79,6 +90,25 @@ public class SlabBenchmarkTests {
         }
     }
 
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public void testSlabBurst() {
+        for (int i = 0; i < BURST_SIZE; i++) {
+            burst[i] = slab.create(codec);
+        }
+        for (int i = 0; i < BURST_SIZE; i++) {
+            slab.removeAt(burst[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public void testSlabBatchBurst() {
+        burstCount = 0;
+        slab.createBatch(BURST_SIZE, handle -> burst[burstCount++] = handle);
+        slab.removeBatch(burst, BURST_SIZE);
+    }
+
     @Benchmark
     public void testUnsafeSlabInsertion(final Blackhole blackhole) {
         blackhole.consume(unsafeSlab.create(unsafeTestOrder));
@@ -110,4 +140,55 @@ public class SlabBenchmarkTests {
             intArrayQueue.addInt(unsafeSlab.create(unsafeTestOrder));
         }
     }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public void testUnsafeSlabBurst() {
+        for (int i = 0; i < BURST_SIZE; i++) {
+            burst[i] = unsafeSlab.create(unsafeTestOrder);
+        }
+        for (int i = 0; i < BURST_SIZE; i++) {
+            unsafeSlab.removeAt(burst[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public void testUnsafeSlabBatchBurst() {
+        burstCount = 0;
+        unsafeSlab.createBatch(BURST_SIZE, handle -> burst[burstCount++] = handle);
+        unsafeSlab.removeBatch(burst, BURST_SIZE);
+    }
+
+    @Benchmark
+    public void testSegmentSlabInsertion(final Blackhole blackhole) {
+        blackhole.consume(segmentSlab.create(segmentTestOrder));
+    }
+
+    @Benchmark
+    public void testSegmentSlabGet() {
+        final int index = segmentSlab.create(segmentTestOrder);
+        segmentSlab.getAt(index, segmentTestOrder);
+    }
+
+    @Benchmark
+    public void testSegmentSlabRemove() {
+        final int index = segmentSlab.create(segmentTestOrder);
+        segmentSlab.removeAt(index);
+    }
+
+    @Benchmark
+    public void testSegmentIncrementalRemoves() {
+        if (intArrayQueue.size() == 1024) {
+            isDraining = true;
+        }
+        if (intArrayQueue.isEmpty()) {
+            isDraining = false;
+        }
+        if (isDraining) {
+            segmentSlab.removeAt(intArrayQueue.poll());
+        } else {
+            intArrayQueue.addInt(segmentSlab.create(segmentTestOrder));
+        }
+    }
 }
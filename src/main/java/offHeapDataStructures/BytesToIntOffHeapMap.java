@@ -5,23 +5,35 @@ import org.agrona.collections.Hashing;
 import org.agrona.concurrent.UnsafeBuffer;
 import org.agrona.generation.DoNotSub;
 import utils.DirectBufferUtils;
+import utils.HugePageMemory;
+import utils.ProbeMode;
+import utils.SpareTable;
 import slab.Codec;
+import slab.CodecKeyHashGenerator;
 
 import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
 import java.util.Collection;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 import java.util.Set;
+import java.util.function.ObjIntConsumer;
 import java.util.function.Supplier;
 
 import static java.util.Objects.requireNonNull;
 
-public class BytesToIntOffHeapMap<T extends Codec> implements Map<T, Integer> {
+public class BytesToIntOffHeapMap<T extends Codec> implements Map<T, Integer>, AutoCloseable {
 
     private final UnsafeBuffer buffer;
     private final float loadFactor;
     private final int singleEntrySize;
     private final short codecSize;
+    private final Supplier<T> codecSupplier;
+    private final T forEachFlyweight;
+    private final CodecKeyHashGenerator hashGenerator;
 
     private int capacity;
     @DoNotSub private int nextResizeLimit;
@@ -31,6 +43,35 @@ public class BytesToIntOffHeapMap<T extends Codec> implements Map<T, Integer> {
     private static final int INT_SIZE = 4;
 
     private static final int MISSING_VALUE = -1;
+    //Robin Hood markers hold 1 + the probe distance, distances past MAX_MARKER - 1 are recomputed from the key
+    private static final int MAX_MARKER = 0xFE;
+    //Left in the old table by removals during a migration so its probe chains stay connected
+    private static final byte REMOVED_MARKER = (byte) 0xFF;
+
+    private final boolean useHugePages;
+    private final boolean isRobinHood;
+    private HugePageMemory hugePageTable;
+    //Robin Hood inserts carry the displaced entry here while it looks for a new slot
+    private UnsafeBuffer carriedEntry;
+    private UnsafeBuffer spareEntry;
+
+    //Incremental rehash state: old table slots below migrationIndex have moved to the new table
+    @DoNotSub private int migrationStep;
+    @DoNotSub private int activeMigrationStep;
+    private UnsafeBuffer oldBuffer;
+    private HugePageMemory oldHugePageTable;
+    @DoNotSub private int oldCapacity;
+    @DoNotSub private int migrationIndex;
+    //Tables swapped in by incremental resizes are native, like huge page tables they are freed by close
+    private SpareTable table;
+    private SpareTable oldTable;
+    //The next doubled table, cleared clearStep bytes per put and remove while the current one fills up
+    private SpareTable spareTable;
+    private int clearStep;
+
+    private KeySet keySet;
+    private ValueCollection valueCollection;
+    private EntrySet entrySet;
 
     public BytesToIntOffHeapMap(final Supplier<T> codecSupplier) {
         this(8, codecSupplier);
@@ -41,15 +82,33 @@ public class BytesToIntOffHeapMap<T extends Codec> implements Map<T, Integer> {
     }
 
     public BytesToIntOffHeapMap(final int capacity, final float loadFactor, final Supplier<T> codecSupplier) {
+        this(capacity, loadFactor, codecSupplier, false);
+    }
+
+    public BytesToIntOffHeapMap(final int capacity, final float loadFactor, final Supplier<T> codecSupplier,
+                                final boolean useHugePages) {
+        this(capacity, loadFactor, codecSupplier, useHugePages, ProbeMode.LINEAR);
+    }
+
+    public BytesToIntOffHeapMap(final int capacity, final float loadFactor, final Supplier<T> codecSupplier,
+                                final boolean useHugePages, final ProbeMode probeMode) {
+        this.useHugePages = useHugePages;
+        this.isRobinHood = probeMode == ProbeMode.ROBIN_HOOD;
         final int updatedCapacity = BitUtil.findNextPositivePowerOfTwo(capacity);
         this.capacity = updatedCapacity;
         this.loadFactor = loadFactor;
         this.nextResizeLimit = (int) (updatedCapacity * loadFactor);
 
-        final var tempCodec = codecSupplier.get();
-        this.codecSize = tempCodec.bufferSize();
+        this.codecSupplier = codecSupplier;
+        this.forEachFlyweight = codecSupplier.get();
+        this.hashGenerator = forEachFlyweight;
+        this.codecSize = forEachFlyweight.bufferSize();
         this.singleEntrySize = OCCUPIED_MARKER_SIZE + INT_SIZE + codecSize;
-        this.buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(singleEntrySize * updatedCapacity));
+        this.buffer = allocateTable(singleEntrySize * updatedCapacity);
+        if (isRobinHood) {
+            this.carriedEntry = new UnsafeBuffer(new byte[singleEntrySize]);
+            this.spareEntry = new UnsafeBuffer(new byte[singleEntrySize]);
+        }
     }
 
 
@@ -63,6 +122,31 @@ public class BytesToIntOffHeapMap<T extends Codec> implements Map<T, Integer> {
         return size == 0;
     }
 
+    //With a step above 0 a resize swaps in a spare table cleared by earlier puts and removes, keeps the old table
+    //and migrates at least that many of its slots on every put and remove, lookups check both tables until it is
+    //drained. Each resize raises the step as far as needed to drain the old table before the next resize, so no
+    //put moves or clears a whole table. 0 moves the whole table inside one put.
+    public void setIncrementalRehash(@DoNotSub final int migrationStep) {
+        if (migrationStep < 0) {
+            throw new IllegalArgumentException("Migration step must not be negative: " + migrationStep);
+        }
+        this.migrationStep = migrationStep;
+        if (migrationStep == 0) {
+            finishMigration();
+            closeSpareTable();
+        } else if (spareTable == null) {
+            reserveSpareTable();
+        }
+    }
+
+    public boolean isMigrating() {
+        return oldBuffer != null;
+    }
+
+    @DoNotSub int capacity() {
+        return capacity;
+    }
+
     @Override
     public boolean containsKey(final Object key) {
         return MISSING_VALUE != getInt(((T) key));
@@ -83,6 +167,16 @@ public class BytesToIntOffHeapMap<T extends Codec> implements Map<T, Integer> {
                 return true;
             }
         }
+        if (oldBuffer != null) {
+            for (int i = migrationIndex; i < oldCapacity; i++) {
+                final int startLocation = i * singleEntrySize;
+                final byte marker = oldBuffer.getByte(startLocation);
+                if (marker != 0 && marker != REMOVED_MARKER &&
+                        oldBuffer.getInt(startLocation + OCCUPIED_MARKER_SIZE + codecSize) == value) {
+                    return true;
+                }
+            }
+        }
         return false;
     }
 
@@ -94,8 +188,15 @@ public class BytesToIntOffHeapMap<T extends Codec> implements Map<T, Integer> {
 
     public int getInt(final T codec) {
         requireNonNull(codec);
+        if (isRobinHood) {
+            final int index = findRobinHood(codec);
+            if (index >= 0) {
+                return buffer.getInt(index * singleEntrySize + OCCUPIED_MARKER_SIZE + codecSize);
+            }
+            return oldBuffer != null ? getOld(codec) : MISSING_VALUE;
+        }
         @DoNotSub final int mask = this.capacity - 1;
-        @DoNotSub int index = Hashing.hash(codec, mask);
+        @DoNotSub int index = Hashing.hash(keyHash(codec), mask);
         int offset = index * singleEntrySize;
         while (buffer.getByte(offset) != 0) {
             if (DirectBufferUtils.bufferEquals(codec.buffer(), buffer, offset + OCCUPIED_MARKER_SIZE, codecSize)) {
@@ -104,7 +205,7 @@ public class BytesToIntOffHeapMap<T extends Codec> implements Map<T, Integer> {
             index = ++index & mask;
             offset = index * singleEntrySize;
         }
-        return MISSING_VALUE;
+        return oldBuffer != null ? getOld(codec) : MISSING_VALUE;
     }
 
     @Override
@@ -115,8 +216,21 @@ public class BytesToIntOffHeapMap<T extends Codec> implements Map<T, Integer> {
     //Try to optimize this through byte alignment
     public int putValue(final T codec, final int value) {
         requireNonNull(codec);
+        advanceRehash();
+        if (oldBuffer != null) {
+            final int oldIndex = findOld(codec);
+            if (oldIndex >= 0) {
+                final int valueOffset = oldIndex * singleEntrySize + OCCUPIED_MARKER_SIZE + codecSize;
+                final int oldValue = oldBuffer.getInt(valueOffset);
+                oldBuffer.putInt(valueOffset, value);
+                return oldValue;
+            }
+        }
+        if (isRobinHood) {
+            return putRobinHood(codec, value);
+        }
         @DoNotSub final int mask = capacity - 1;
-        @DoNotSub int index = Hashing.hash(codec, mask);
+        @DoNotSub int index = Hashing.hash(keyHash(codec), mask);
         int offset = index * singleEntrySize;
         while (buffer.getByte(offset) != 0) {
             if (DirectBufferUtils.bufferEquals(codec.buffer(), buffer, offset + OCCUPIED_MARKER_SIZE, codecSize)) {
@@ -146,21 +260,25 @@ public class BytesToIntOffHeapMap<T extends Codec> implements Map<T, Integer> {
 
     public int removeKey(final T codec) {
         requireNonNull(codec);
+        advanceRehash();
+        if (isRobinHood) {
+            final int removed = removeRobinHood(codec);
+            return removed == MISSING_VALUE && oldBuffer != null ? removeOld(codec) : removed;
+        }
         @DoNotSub final int mask = this.capacity - 1;
-        @DoNotSub int index = Hashing.hash(codec, mask);
+        @DoNotSub int index = Hashing.hash(keyHash(codec), mask);
         int offset = index * singleEntrySize;
         while (buffer.getByte(offset) != 0) {
             if (DirectBufferUtils.bufferEquals(codec.buffer(), buffer, offset + OCCUPIED_MARKER_SIZE, codecSize)) {
-                //mark empty
-                buffer.putByte(offset, (byte) 0);
-                size--;
-                tryCompact(index);
-                return buffer.getInt(offset + OCCUPIED_MARKER_SIZE + codecSize);
+                //Compaction may move another entry into this slot, so the value is read first
+                final int value = buffer.getInt(offset + OCCUPIED_MARKER_SIZE + codecSize);
+                removeSlot(index);
+                return value;
             }
             index = ++index & mask;
             offset = index * singleEntrySize;
         }
-        return MISSING_VALUE;
+        return oldBuffer != null ? removeOld(codec) : MISSING_VALUE;
     }
 
     @Override
@@ -174,21 +292,207 @@ public class BytesToIntOffHeapMap<T extends Codec> implements Map<T, Integer> {
     public void clear() {
         DirectBufferUtils.resetBuffer(buffer);
         size = 0;
+        dropOldTable();
     }
 
+    //Views and iterators reuse one flyweight key, and the entry set one mutable entry, so elements are only valid
+    //until the next call to next(). Starting an iteration finishes any incremental rehash in progress.
     @Override
-    public Set<T> keySet() {
-        return Set.of();
+    public KeySet keySet() {
+        if (keySet == null) {
+            keySet = new KeySet();
+        }
+        return keySet;
     }
 
     @Override
-    public Collection<Integer> values() {
-        return List.of();
+    public ValueCollection values() {
+        if (valueCollection == null) {
+            valueCollection = new ValueCollection();
+        }
+        return valueCollection;
     }
 
     @Override
-    public Set<Entry<T, Integer>> entrySet() {
-        return Set.of();
+    public EntrySet entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    //Primitive forEach, the key passed to the consumer is a flyweight over the table slot
+    public void forEachInt(final ObjIntConsumer<? super T> consumer) {
+        finishMigration();
+        for (@DoNotSub int i = 0; i < capacity; i++) {
+            final int offset = i * singleEntrySize;
+            if (buffer.getByte(offset) != 0) {
+                forEachFlyweight.wrap(buffer, offset + OCCUPIED_MARKER_SIZE, codecSize);
+                consumer.accept(forEachFlyweight, buffer.getInt(offset + OCCUPIED_MARKER_SIZE + codecSize));
+            }
+        }
+    }
+
+    //Robin Hood lookups stop at the first entry closer to its home slot than the key would be at that slot
+    private int findRobinHood(final T codec) {
+        @DoNotSub final int mask = this.capacity - 1;
+        @DoNotSub int index = Hashing.hash(keyHash(codec), mask);
+        int distance = 0;
+        int offset = index * singleEntrySize;
+        while (buffer.getByte(offset) != 0) {
+            final int existingDistance = probeDistance(buffer, offset, index, mask);
+            if (existingDistance < distance) {
+                return -1;
+            }
+            //Only an entry with the same home slot as the key can hold the same key
+            if (existingDistance == distance &&
+                    DirectBufferUtils.bufferEquals(codec.buffer(), buffer, offset + OCCUPIED_MARKER_SIZE, codecSize)) {
+                return index;
+            }
+            index = ++index & mask;
+            distance++;
+            offset = index * singleEntrySize;
+        }
+        return -1;
+    }
+
+    private int putRobinHood(final T codec, final int value) {
+        @DoNotSub final int mask = capacity - 1;
+        @DoNotSub int index = Hashing.hash(keyHash(codec), mask);
+        int distance = 0;
+        int offset = index * singleEntrySize;
+        while (buffer.getByte(offset) != 0) {
+            final int existingDistance = probeDistance(buffer, offset, index, mask);
+            if (existingDistance < distance) {
+                break;
+            }
+            if (existingDistance == distance &&
+                    DirectBufferUtils.bufferEquals(codec.buffer(), buffer, offset + OCCUPIED_MARKER_SIZE, codecSize)) {
+                final int oldValue = buffer.getInt(offset + OCCUPIED_MARKER_SIZE + codecSize);
+                buffer.putInt(offset + OCCUPIED_MARKER_SIZE + codecSize, value);
+                return oldValue;
+            }
+            index = ++index & mask;
+            distance++;
+            offset = index * singleEntrySize;
+        }
+
+        carriedEntry.putBytes(OCCUPIED_MARKER_SIZE, codec.buffer(), 0, codecSize);
+        carriedEntry.putInt(OCCUPIED_MARKER_SIZE + codecSize, value);
+        final int longestDistance = placeRobinHood(buffer, mask, index, distance);
+        size++;
+        if (size > nextResizeLimit ||
+                (longestDistance > ProbeMode.MAX_PROBE_DISTANCE && size >= capacity >>> 3 && canGrowEarly())) {
+            rehash();
+        }
+        return MISSING_VALUE;
+    }
+
+    //Places the carried entry starting at index, where it sits distance slots from home, swapping it with every
+    //entry closer to home on the way. Returns the longest distance an entry was placed at.
+    private int placeRobinHood(final UnsafeBuffer table, @DoNotSub final int mask, @DoNotSub int index,
+                               int distance) {
+        int longestDistance = 0;
+        int offset = index * singleEntrySize;
+        while (table.getByte(offset) != 0) {
+            final int existingDistance = probeDistance(table, offset, index, mask);
+            if (existingDistance < distance) {
+                spareEntry.putBytes(OCCUPIED_MARKER_SIZE, table, offset + OCCUPIED_MARKER_SIZE, codecSize + INT_SIZE);
+                writeEntry(table, offset, carriedEntry, distance);
+                longestDistance = Math.max(longestDistance, distance);
+                final UnsafeBuffer displaced = spareEntry;
+                spareEntry = carriedEntry;
+                carriedEntry = displaced;
+                distance = existingDistance;
+            }
+            index = ++index & mask;
+            distance++;
+            offset = index * singleEntrySize;
+        }
+        writeEntry(table, offset, carriedEntry, distance);
+        return Math.max(longestDistance, distance);
+    }
+
+    private int removeRobinHood(final T codec) {
+        final int index = findRobinHood(codec);
+        if (index < 0) {
+            return MISSING_VALUE;
+        }
+        final int value = buffer.getInt(index * singleEntrySize + OCCUPIED_MARKER_SIZE + codecSize);
+        removeSlot(index);
+        return value;
+    }
+
+    private void removeSlot(@DoNotSub final int index) {
+        size--;
+        if (isRobinHood) {
+            shiftBack(index);
+        } else {
+            buffer.putByte(index * singleEntrySize, (byte) 0);
+            tryCompact(index);
+        }
+    }
+
+    //Every entry is homed by its codec's key hash, the same hash resizes and compaction recompute from the table
+    private int keyHash(final T codec) {
+        return codec.keyHashCode();
+    }
+
+    private int keyHash(final UnsafeBuffer table, final int offset) {
+        return hashGenerator.generateKeyHashCode(table, offset + OCCUPIED_MARKER_SIZE);
+    }
+
+    //Robin Hood deletion: the rest of the run moves back one slot until an empty slot or an entry already home
+    private void shiftBack(@DoNotSub int index) {
+        @DoNotSub final int mask = capacity - 1;
+        @DoNotSub int next = (index + 1) & mask;
+        int nextOffset = next * singleEntrySize;
+        while (buffer.getByte(nextOffset) != 0) {
+            final int distance = probeDistance(buffer, nextOffset, next, mask);
+            if (distance == 0) {
+                break;
+            }
+            writeEntry(buffer, index * singleEntrySize, buffer, nextOffset, distance - 1);
+            index = next;
+            next = (next + 1) & mask;
+            nextOffset = next * singleEntrySize;
+        }
+        buffer.putByte(index * singleEntrySize, (byte) 0);
+    }
+
+    private void writeEntry(final UnsafeBuffer table, final int offset, final UnsafeBuffer entry, final int distance) {
+        writeEntry(table, offset, entry, 0, distance);
+    }
+
+    private void writeEntry(final UnsafeBuffer table, final int offset, final UnsafeBuffer source,
+                            final int sourceOffset, final int distance) {
+        table.putBytes(offset + OCCUPIED_MARKER_SIZE, source, sourceOffset + OCCUPIED_MARKER_SIZE,
+                codecSize + INT_SIZE);
+        table.putByte(offset, (byte) Math.min(distance + 1, MAX_MARKER));
+    }
+
+    private int probeDistance(final UnsafeBuffer table, final int offset, @DoNotSub final int index,
+                              @DoNotSub final int mask) {
+        final int marker = table.getByte(offset) & 0xFF;
+        if (marker < MAX_MARKER) {
+            return marker - 1;
+        }
+        final int home = Hashing.hash(keyHash(table, offset), mask);
+        return (index - home) & mask;
+    }
+
+    //Longest distance of any entry from its home slot, scans the table so not for the hot path
+    public int getMaxProbeDistance() {
+        @DoNotSub final int mask = capacity - 1;
+        int maxDistance = 0;
+        for (@DoNotSub int i = 0; i < capacity; i++) {
+            final int offset = i * singleEntrySize;
+            if (buffer.getByte(offset) != 0) {
+                final int home = Hashing.hash(keyHash(buffer, offset), mask);
+                maxDistance = Math.max(maxDistance, (i - home) & mask);
+            }
+        }
+        return maxDistance;
     }
 
     private void tryIncreaseCapacity() {
@@ -197,32 +501,218 @@ public class BytesToIntOffHeapMap<T extends Codec> implements Map<T, Integer> {
         }
     }
 
+    //Incremental mode has always drained the old table by the time the next resize comes, so finishMigration is
+    //only a safeguard there
     private void rehash() {
+        finishMigration();
         final int oldCapacity = this.capacity;
         this.capacity <<= 1;
         @DoNotSub final int mask = capacity - 1;
         this.nextResizeLimit = (int) (this.capacity * loadFactor);
+        if (migrationStep > 0) {
+            swapInSpareTable(oldCapacity);
+            return;
+        }
 
-        final UnsafeBuffer newBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(capacity * singleEntrySize));
+        final HugePageMemory oldHugePageTable = hugePageTable;
+        final UnsafeBuffer newBuffer = allocateTable(capacity * singleEntrySize);
         int offset = 0;
         for (@DoNotSub int i = 0; i < oldCapacity; i++) {
             if (buffer.getByte(offset) != 0) {
-                @DoNotSub int index = Hashing.hash(DirectBufferUtils.segmentHashCode(buffer, offset + OCCUPIED_MARKER_SIZE, codecSize), mask);
-                int newOffset = index * singleEntrySize;
-                while (newBuffer.getByte(newOffset) != 0) {
-                    index = ++index & mask;
-                    newOffset = index * singleEntrySize;
-                }
-
-                newBuffer.putByte(newOffset, (byte) 1);
-                newBuffer.putBytes(newOffset + OCCUPIED_MARKER_SIZE,
-                        buffer, offset + OCCUPIED_MARKER_SIZE, codecSize);
-                newBuffer.putInt(newOffset + OCCUPIED_MARKER_SIZE + codecSize,
-                        buffer.getInt(offset + OCCUPIED_MARKER_SIZE + codecSize));
+                placeEntry(buffer, offset, newBuffer, mask);
             }
             offset += singleEntrySize;
         }
         this.buffer.wrap(newBuffer, 0, newBuffer.capacity());
+        if (oldHugePageTable != null) {
+            oldHugePageTable.close();
+        }
+        if (table != null) {
+            table.close();
+            table = null;
+        }
+    }
+
+    //The migration step is raised so the old table drains within the puts left before the next resize
+    private void swapInSpareTable(@DoNotSub final int oldCapacity) {
+        if (spareTable == null || spareTable.length() != (long) capacity * singleEntrySize) {
+            closeSpareTable();
+            this.spareTable = SpareTable.allocate((long) capacity * singleEntrySize, (byte) 0, useHugePages);
+        }
+        //A no-op unless the spare missed its clearing budget
+        spareTable.clearAll();
+        this.oldBuffer = new UnsafeBuffer(buffer);
+        this.oldHugePageTable = hugePageTable;
+        this.hugePageTable = null;
+        this.oldTable = table;
+        this.oldCapacity = oldCapacity;
+        this.migrationIndex = 0;
+        this.table = spareTable;
+        this.spareTable = null;
+        this.buffer.wrap(table.address(), (int) table.length());
+        this.activeMigrationStep = Math.max(migrationStep,
+                (oldCapacity + remainingPuts() - 1) / remainingPuts());
+        reserveSpareTable();
+    }
+
+    //Copies an entry into a table that does not hold its key yet, homed by the hash of its key bytes
+    private void placeEntry(final UnsafeBuffer source, final int offset, final UnsafeBuffer table,
+                            @DoNotSub final int mask) {
+        @DoNotSub int index = Hashing.hash(keyHash(source, offset), mask);
+        if (isRobinHood) {
+            carriedEntry.putBytes(OCCUPIED_MARKER_SIZE, source, offset + OCCUPIED_MARKER_SIZE, codecSize + INT_SIZE);
+            placeRobinHood(table, mask, index, 0);
+            return;
+        }
+        int newOffset = index * singleEntrySize;
+        while (table.getByte(newOffset) != 0) {
+            index = ++index & mask;
+            newOffset = index * singleEntrySize;
+        }
+
+        table.putByte(newOffset, (byte) 1);
+        table.putBytes(newOffset + OCCUPIED_MARKER_SIZE, source, offset + OCCUPIED_MARKER_SIZE, codecSize);
+        table.putInt(newOffset + OCCUPIED_MARKER_SIZE + codecSize,
+                source.getInt(offset + OCCUPIED_MARKER_SIZE + codecSize));
+    }
+
+    //The old table is only probed linearly: Robin Hood tables are valid linear probing tables too, and slots
+    //that were migrated or removed are skipped without ending the probe
+    private int findOld(final T codec) {
+        @DoNotSub final int mask = oldCapacity - 1;
+        @DoNotSub int index = Hashing.hash(keyHash(codec), mask);
+        int offset = index * singleEntrySize;
+        byte marker;
+        while ((marker = oldBuffer.getByte(offset)) != 0) {
+            if (index >= migrationIndex && marker != REMOVED_MARKER &&
+                    DirectBufferUtils.bufferEquals(codec.buffer(), oldBuffer, offset + OCCUPIED_MARKER_SIZE, codecSize)) {
+                return index;
+            }
+            index = ++index & mask;
+            offset = index * singleEntrySize;
+        }
+        return -1;
+    }
+
+    private int getOld(final T codec) {
+        final int index = findOld(codec);
+        return index < 0 ? MISSING_VALUE : oldBuffer.getInt(index * singleEntrySize + OCCUPIED_MARKER_SIZE + codecSize);
+    }
+
+    private int removeOld(final T codec) {
+        final int index = findOld(codec);
+        if (index < 0) {
+            return MISSING_VALUE;
+        }
+        final int offset = index * singleEntrySize;
+        oldBuffer.putByte(offset, REMOVED_MARKER);
+        size--;
+        return oldBuffer.getInt(offset + OCCUPIED_MARKER_SIZE + codecSize);
+    }
+
+    private void migrate(@DoNotSub final int slotCount) {
+        if (oldBuffer == null) {
+            return;
+        }
+        @DoNotSub final int mask = capacity - 1;
+        @DoNotSub final int end = (int) Math.min(oldCapacity, (long) migrationIndex + slotCount);
+        for (@DoNotSub int i = migrationIndex; i < end; i++) {
+            final int offset = i * singleEntrySize;
+            final byte marker = oldBuffer.getByte(offset);
+            if (marker != 0 && marker != REMOVED_MARKER) {
+                placeEntry(oldBuffer, offset, buffer, mask);
+            }
+        }
+        migrationIndex = end;
+        if (end == oldCapacity) {
+            dropOldTable();
+        }
+    }
+
+    private void finishMigration() {
+        migrate(oldCapacity);
+    }
+
+    private void advanceRehash() {
+        migrate(activeMigrationStep);
+        if (spareTable != null) {
+            spareTable.clear(clearStep);
+        }
+    }
+
+    //An early Robin Hood grow waits for the running migration and the spare table, so it never drains or clears
+    //a table inline either
+    private boolean canGrowEarly() {
+        return migrationStep == 0 || (oldBuffer == null && spareTable != null && spareTable.isCleared());
+    }
+
+    //Puts left before the next size triggered resize
+    private int remainingPuts() {
+        return Math.max(1, nextResizeLimit - size);
+    }
+
+    private void reserveSpareTable() {
+        final long length = (long) capacity * 2 * singleEntrySize;
+        this.spareTable = SpareTable.allocate(length, (byte) 0, useHugePages);
+        this.clearStep = (int) ((length + remainingPuts() - 1) / remainingPuts());
+    }
+
+    private void closeSpareTable() {
+        if (spareTable != null) {
+            spareTable.close();
+            spareTable = null;
+        }
+    }
+
+    private void dropOldTable() {
+        oldBuffer = null;
+        if (oldHugePageTable != null) {
+            oldHugePageTable.close();
+            oldHugePageTable = null;
+        }
+        if (oldTable != null) {
+            oldTable.close();
+            oldTable = null;
+        }
+    }
+
+    //In huge page mode the table lives in its own 2MB aligned region advised for transparent huge pages
+    private UnsafeBuffer allocateTable(final int length) {
+        if (!useHugePages) {
+            return new UnsafeBuffer(ByteBuffer.allocateDirect(length));
+        }
+        hugePageTable = HugePageMemory.allocate(length);
+        return new UnsafeBuffer(hugePageTable.address(), length);
+    }
+
+    public boolean isHugePageBacked() {
+        if (table != null) {
+            return table.isHugePageBacked();
+        }
+        return hugePageTable != null && hugePageTable.isAdvised();
+    }
+
+    //Reads /proc/self/smaps, not for the hot path
+    public long getGrantedHugePageBytes() {
+        if (table != null) {
+            return table.grantedHugePageBytes();
+        }
+        return hugePageTable == null ? 0 : hugePageTable.grantedHugePageBytes();
+    }
+
+    //Only huge page and incremental mode tables need an explicit free, direct buffers are left to GC as before
+    @Override
+    public void close() {
+        dropOldTable();
+        closeSpareTable();
+        if (hugePageTable != null) {
+            hugePageTable.close();
+            hugePageTable = null;
+        }
+        if (table != null) {
+            table.close();
+            table = null;
+        }
     }
 
     private void tryCompact(int deleteIndex) {
@@ -237,7 +727,7 @@ public class BytesToIntOffHeapMap<T extends Codec> implements Map<T, Integer> {
                 return;
             }
 
-            @DoNotSub final int hash = Hashing.hash(DirectBufferUtils.segmentHashCode(buffer, offset + OCCUPIED_MARKER_SIZE, codecSize), mask);
+            @DoNotSub final int hash = Hashing.hash(keyHash(buffer, offset), mask);
 
             if ((index < hash && (hash <= deleteIndex || deleteIndex <= index)) ||
                     (hash <= deleteIndex && deleteIndex <= index)) {
@@ -254,4 +744,222 @@ public class BytesToIntOffHeapMap<T extends Codec> implements Map<T, Integer> {
             }
         }
     }
+
+    //Walks the table downwards from an empty slot, so the entries a removal shifts back into the removed slot
+    //have already been visited and none is seen twice or skipped
+    abstract class AbstractIterator {
+        @DoNotSub private int positionCounter;
+        @DoNotSub private int stopCounter;
+        @DoNotSub private int remaining;
+        private boolean isPositionValid;
+
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        protected final int nextOffset() {
+            if (remaining <= 0) {
+                throw new NoSuchElementException();
+            }
+            @DoNotSub final int mask = capacity - 1;
+            for (@DoNotSub int i = positionCounter - 1; i >= stopCounter; i--) {
+                if (buffer.getByte((i & mask) * singleEntrySize) != 0) {
+                    positionCounter = i;
+                    isPositionValid = true;
+                    remaining--;
+                    return (i & mask) * singleEntrySize;
+                }
+            }
+            throw new IllegalStateException("Map was modified outside the iterator");
+        }
+
+        protected final int valueOffset() {
+            return (positionCounter & (capacity - 1)) * singleEntrySize + OCCUPIED_MARKER_SIZE + codecSize;
+        }
+
+        public void remove() {
+            if (!isPositionValid) {
+                throw new IllegalStateException();
+            }
+            removeSlot(positionCounter & (capacity - 1));
+            isPositionValid = false;
+        }
+
+        void reset() {
+            finishMigration();
+            @DoNotSub int i = capacity;
+            if (buffer.getByte((capacity - 1) * singleEntrySize) != 0) {
+                for (i = 0; i < capacity; i++) {
+                    if (buffer.getByte(i * singleEntrySize) == 0) {
+                        break;
+                    }
+                }
+            }
+            stopCounter = i;
+            positionCounter = i + capacity;
+            remaining = size;
+            isPositionValid = false;
+        }
+    }
+
+    public final class KeyIterator extends AbstractIterator implements Iterator<T> {
+        private final T key = codecSupplier.get();
+
+        @Override
+        public T next() {
+            key.wrap(buffer, nextOffset() + OCCUPIED_MARKER_SIZE, codecSize);
+            return key;
+        }
+    }
+
+    public final class ValueIterator extends AbstractIterator implements PrimitiveIterator.OfInt {
+        @Override
+        public int nextInt() {
+            nextOffset();
+            return buffer.getInt(valueOffset());
+        }
+    }
+
+    public final class EntryIterator extends AbstractIterator implements Iterator<Entry<T, Integer>>, Entry<T, Integer> {
+        private final T key = codecSupplier.get();
+
+        @Override
+        public Entry<T, Integer> next() {
+            key.wrap(buffer, nextOffset() + OCCUPIED_MARKER_SIZE, codecSize);
+            return this;
+        }
+
+        @Override
+        public T getKey() {
+            return key;
+        }
+
+        @Override
+        public Integer getValue() {
+            return getIntValue();
+        }
+
+        public int getIntValue() {
+            return buffer.getInt(valueOffset());
+        }
+
+        @Override
+        public Integer setValue(final Integer value) {
+            final int oldValue = getIntValue();
+            buffer.putInt(valueOffset(), value);
+            return oldValue;
+        }
+
+        //Compares by key and value as Map.Entry specifies, so the entry set can be compared with any other map's
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof Entry<?, ?> entry && key.equals(entry.getKey()) &&
+                    entry.getValue() instanceof Integer value && getIntValue() == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Integer.hashCode(getIntValue());
+        }
+    }
+
+    public final class KeySet extends AbstractSet<T> {
+        private KeyIterator keyIterator;
+
+        @Override
+        public KeyIterator iterator() {
+            if (keyIterator == null) {
+                keyIterator = new KeyIterator();
+            }
+            keyIterator.reset();
+            return keyIterator;
+        }
+
+        @Override
+        @DoNotSub
+        public int size() {
+            return BytesToIntOffHeapMap.this.size();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public boolean remove(final Object o) {
+            if (!containsKey(o)) {
+                return false;
+            }
+            removeKey((T) o);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            BytesToIntOffHeapMap.this.clear();
+        }
+    }
+
+    public final class ValueCollection extends AbstractCollection<Integer> {
+        private ValueIterator valueIterator;
+
+        @Override
+        public ValueIterator iterator() {
+            if (valueIterator == null) {
+                valueIterator = new ValueIterator();
+            }
+            valueIterator.reset();
+            return valueIterator;
+        }
+
+        @Override
+        @DoNotSub
+        public int size() {
+            return BytesToIntOffHeapMap.this.size();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return containsValue(o);
+        }
+
+        @Override
+        public void clear() {
+            BytesToIntOffHeapMap.this.clear();
+        }
+    }
+
+    public final class EntrySet extends AbstractSet<Entry<T, Integer>> {
+        private EntryIterator entryIterator;
+
+        @Override
+        public EntryIterator iterator() {
+            if (entryIterator == null) {
+                entryIterator = new EntryIterator();
+            }
+            entryIterator.reset();
+            return entryIterator;
+        }
+
+        @Override
+        @DoNotSub
+        public int size() {
+            return BytesToIntOffHeapMap.this.size();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            if (!(o instanceof Entry<?, ?> entry) || !(entry.getValue() instanceof Integer value)) {
+                return false;
+            }
+            final int mapValue = getInt((T) entry.getKey());
+            return mapValue != MISSING_VALUE && mapValue == value;
+        }
+
+        @Override
+        public void clear() {
+            BytesToIntOffHeapMap.this.clear();
+        }
+    }
 }
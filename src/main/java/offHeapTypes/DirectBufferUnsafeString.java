@@ -11,8 +11,6 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.InputMismatchException;
 
-import static utils.DirectBufferUtils.segmentHashCodeShortCircuiting;
-
 public class DirectBufferUnsafeString implements CharSequence, Codec {
     @Getter
     private final MutableDirectBuffer buffer;
@@ -81,7 +79,7 @@ public class DirectBufferUnsafeString implements CharSequence, Codec {
 
     @Override
     public int hashCode() {
-        return segmentHashCodeShortCircuiting(this.buffer, 0, this.buffer.capacity());
+        return keyHashCode();
     }
 
     @Override
@@ -168,11 +166,6 @@ public class DirectBufferUnsafeString implements CharSequence, Codec {
         return this.buffer;
     }
 
-    @Override
-    public int generateKeyHashCode(final MutableDirectBuffer buffer, final int offset) {
-        return hashCode();
-    }
-
     @Override
     public int keyOffset() {
         return 0;
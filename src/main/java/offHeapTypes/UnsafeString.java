@@ -68,7 +68,7 @@ public class UnsafeString implements UnsafeCodec, CharSequence {
 
     @Override
     public int hashCode() {
-        return UnsafeBufferUtils.unsafeHashCodeShortCircuiting(memOffset, length);
+        return keyHashCode();
     }
 
     @Override
@@ -151,11 +151,6 @@ public class UnsafeString implements UnsafeCodec, CharSequence {
         return memOffset;
     }
 
-    @Override
-    public int generateKeyHashCode(long codecOffset) {
-        return hashCode();
-    }
-
     @Override
     public int keyOffset() {
         return 0;
@@ -0,0 +1,34 @@
+package segmentSlab;
+
+import utils.KeyHasher;
+
+import java.lang.foreign.MemorySegment;
+
+public interface SegmentCodec extends SegmentCodecKeyHashGenerator {
+
+    short bufferSize();
+
+    void wrap(final MemorySegment segment, final long offset);
+
+    MemorySegment segment();
+
+    long offset();
+
+    default int keyHashCode() {
+        return generateKeyHashCode(segment(), offset());
+    }
+
+    //Same contract as Codec.keyHasher
+    default KeyHasher keyHasher() {
+        return KeyHasher.DEFAULT;
+    }
+
+    @Override
+    default int generateKeyHashCode(final MemorySegment segment, final long codecOffset) {
+        return keyHasher().hash(segment, codecOffset + keyOffset(), keyLength());
+    }
+
+    int keyOffset();
+
+    int keyLength();
+}
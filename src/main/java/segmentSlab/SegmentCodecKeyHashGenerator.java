@@ -0,0 +1,8 @@
+package segmentSlab;
+
+import java.lang.foreign.MemorySegment;
+
+public interface SegmentCodecKeyHashGenerator {
+
+    int generateKeyHashCode(MemorySegment segment, long codecOffset);
+}
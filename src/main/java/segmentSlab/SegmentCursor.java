@@ -0,0 +1,54 @@
+package segmentSlab;
+
+import org.agrona.collections.IntArrayQueue;
+
+public class SegmentCursor<T extends SegmentCodec> {
+
+    public final int pageElementCount;
+    private final IntArrayQueue cleanPageIndices;
+    private final Runnable pageGenerator;
+    private SegmentSlabPage<T>[] pages;
+    private SegmentSlabPage<T> currentPage;
+    private int nextPageIndex = 0;
+    private int currPageIndex;
+
+    public SegmentCursor(final int pageElementCount, final IntArrayQueue cleanPageIndices,
+                         final Runnable pageGenerator, final SegmentSlabPage<T>[] pages) {
+        this.pageElementCount = pageElementCount;
+        this.cleanPageIndices = cleanPageIndices;
+        this.pageGenerator = pageGenerator;
+        this.pages = pages;
+        final int currIndex = cleanPageIndices.pollInt();
+        this.currentPage = pages[currIndex];
+        this.currPageIndex = currentPage.getPageIndex() * pageElementCount;
+    }
+
+    protected void setPages(final SegmentSlabPage<T>[] pages) {
+        this.pages = pages;
+    }
+
+    public void incrementCursor() {
+        if (++nextPageIndex < this.pageElementCount) {
+            return;
+        }
+        if (cleanPageIndices.isEmpty()) {
+            pageGenerator.run();
+        }
+        final int newIndex = cleanPageIndices.pollInt();
+        this.currentPage = pages[newIndex];
+        this.currPageIndex = currentPage.getPageIndex() * pageElementCount;
+        nextPageIndex = 0;
+    }
+
+    public int getCursorIndex() {
+        return currPageIndex + nextPageIndex;
+    }
+
+    public void wrapAtCursor(final T codec) {
+        this.currentPage.createAt(nextPageIndex, codec);
+    }
+
+    protected SegmentSlabPage<T> getCurrentPage() {
+        return this.currentPage;
+    }
+}
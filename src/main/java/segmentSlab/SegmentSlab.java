@@ -0,0 +1,140 @@
+package segmentSlab;
+
+import static segmentSlab.SegmentSlabPage.SLAB_PAGE_LIVE_PADDING_SIZE;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.function.Supplier;
+import org.agrona.BitUtil;
+import org.agrona.collections.IntArrayQueue;
+
+public class SegmentSlab<T extends SegmentCodec> implements AutoCloseable {
+
+    public static boolean RESET_BUFFER = !"true".equals(System.getProperty("slab.reset.buffer"));
+    private final Arena arena;
+    private final boolean isShared;
+    private final IntArrayQueue cleanPageIndices;
+    private final SegmentCursor<T> cursor;
+    private final int inPageIndexMask;
+    private final int shiftCount;
+    private final T reusableCodec;
+    private final long singlePageSize;
+    private int activePageCount = 0;
+    private SegmentSlabPage<T>[] pages;
+
+    public SegmentSlab(final short pageSize, final int initialPageCount, final Supplier<T> codecSupplier) {
+        this(pageSize, initialPageCount, codecSupplier, false);
+    }
+
+    //A shared arena allows reads from other threads, at the cost of a thread handshake on close
+    public SegmentSlab(final short pageSize, final int initialPageCount, final Supplier<T> codecSupplier,
+                       final boolean isShared) {
+        this.isShared = isShared;
+        this.arena = createArena(isShared);
+        this.reusableCodec = codecSupplier.get();
+        final short codecSize = reusableCodec.bufferSize();
+        final short alignedPageElementCount = (short) BitUtil.findNextPositivePowerOfTwo(pageSize);
+        this.inPageIndexMask = alignedPageElementCount - 1;
+        int pageIndexMask = inPageIndexMask;
+        int shiftCount = 1;
+        while ((pageIndexMask >>= 1) != 0) {
+            shiftCount++;
+        }
+        this.shiftCount = shiftCount;
+
+        this.singlePageSize = (long) alignedPageElementCount * (codecSize + SLAB_PAGE_LIVE_PADDING_SIZE);
+        final MemorySegment segment = arena.allocate(initialPageCount * singlePageSize, Long.BYTES);
+        this.cleanPageIndices = new IntArrayQueue(Math.max(initialPageCount, IntArrayQueue.MIN_CAPACITY), -1);
+        this.pages = new SegmentSlabPage[initialPageCount];
+        for (int i = 0; i < initialPageCount; i++) {
+            addPage(segment.asSlice(i * singlePageSize, singlePageSize), i);
+        }
+        this.cursor = new SegmentCursor<>(alignedPageElementCount, cleanPageIndices, this::addPage, pages);
+    }
+
+    static Arena createArena(final boolean isShared) {
+        return isShared ? Arena.ofShared() : Arena.ofConfined();
+    }
+
+    private void addPage() {
+        final MemorySegment segment = arena.allocate(singlePageSize, Long.BYTES);
+        if (activePageCount + 1 > pages.length) {
+            final SegmentSlabPage<T>[] newPages = new SegmentSlabPage[pages.length * 2];
+            System.arraycopy(pages, 0, newPages, 0, pages.length);
+            pages = newPages;
+            this.cursor.setPages(pages);
+        }
+        addPage(segment, activePageCount);
+    }
+
+    private void addPage(final MemorySegment segment, final int index) {
+        final SegmentSlabPage<T> slabPage = new SegmentSlabPage<>(segment, reusableCodec.bufferSize(),
+                activePageCount++);
+        pages[index] = slabPage;
+        this.cleanPageIndices.addInt(index);
+    }
+
+    public int create(final T codec) {
+        cursor.wrapAtCursor(codec);
+        final int newIndex = cursor.getCursorIndex();
+        cursor.incrementCursor();
+        return newIndex;
+    }
+
+    public void getAt(final int index, final T codec) {
+        final var inPageIndex = index & inPageIndexMask;
+        final var pageIndex = index >> shiftCount;
+        final var page = pages[pageIndex];
+        page.getAt(inPageIndex, codec);
+    }
+
+    public T get(final int index) {
+        final var inPageIndex = index & inPageIndexMask;
+        final var pageIndex = index >> shiftCount;
+        final var page = pages[pageIndex];
+        page.getAt(inPageIndex, reusableCodec);
+        return reusableCodec;
+    }
+
+    public boolean equalsUnderlying(final int index, final T codec) {
+        final int inPageIndex = index & inPageIndexMask;
+        final int pageIndex = index >> shiftCount;
+        final var page = pages[pageIndex];
+        return page.equalsUnderlying(inPageIndex, codec);
+    }
+
+    public int keyHashCode(final int index) {
+        final int inPageIndex = index & inPageIndexMask;
+        final int pageIndex = index >> shiftCount;
+        final var page = pages[pageIndex];
+        return page.keyHashCode(inPageIndex, reusableCodec);
+    }
+
+    public void removeAt(final int index) {
+        final var inPageIndex = index & inPageIndexMask;
+        final var pageIndex = index >> shiftCount;
+        final var page = pages[pageIndex];
+        final int remainingCount = page.removeAt(inPageIndex);
+        if (page == cursor.getCurrentPage() || remainingCount != 0) {
+            return;
+        }
+        freePage(page);
+    }
+
+    private void freePage(final SegmentSlabPage<T> slabPage) {
+        if (RESET_BUFFER) {
+            slabPage.cleanPage();
+        }
+        cleanPageIndices.addInt(slabPage.getPageIndex());
+    }
+
+    public boolean isShared() {
+        return isShared;
+    }
+
+    //Closing the arena releases every page at once, any codec still wrapping the slab will fail fast afterwards
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
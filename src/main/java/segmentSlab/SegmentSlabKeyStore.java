@@ -0,0 +1,163 @@
+package segmentSlab;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import org.agrona.BitUtil;
+import org.agrona.collections.Hashing;
+
+public class SegmentSlabKeyStore<T extends SegmentCodec> implements AutoCloseable {
+
+    private final float loadFactor;
+    private final SegmentSlab<T> slab;
+
+    private Arena arena;
+    private MemorySegment table;
+    private int capacity;
+    private int nextResizeLimit;
+    private int size;
+
+    private static final int MISSING_VALUE = -1;
+
+    public SegmentSlabKeyStore(final int capacity, final float loadFactor, final SegmentSlab<T> slab) {
+        this.capacity = BitUtil.findNextPositivePowerOfTwo(capacity);
+        this.loadFactor = loadFactor;
+        this.nextResizeLimit = (int) (this.capacity * loadFactor);
+        this.slab = slab;
+
+        this.arena = SegmentSlab.createArena(slab.isShared());
+        this.table = allocateTable(arena, this.capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void insert(final int slabIndex, final T codec) {
+        final int mask = this.capacity - 1;
+        int index = Hashing.hash(codec.keyHashCode(), mask);
+        int existingSlabIndex;
+        while ((existingSlabIndex = table.getAtIndex(ValueLayout.JAVA_INT, index)) != MISSING_VALUE) {
+            if (existingSlabIndex == slabIndex) {
+                return;
+            }
+            index = ++index & mask;
+        }
+
+        size++;
+        table.setAtIndex(ValueLayout.JAVA_INT, index, slabIndex);
+        tryIncreaseCapacity();
+    }
+
+    public int getKey(final T codec) {
+        final int mask = this.capacity - 1;
+        int index = Hashing.hash(codec.keyHashCode(), mask);
+        int existingSlabIndex;
+        while ((existingSlabIndex = table.getAtIndex(ValueLayout.JAVA_INT, index)) != MISSING_VALUE) {
+            if (slab.equalsUnderlying(existingSlabIndex, codec)) {
+                return existingSlabIndex;
+            }
+            index = ++index & mask;
+        }
+        return MISSING_VALUE;
+    }
+
+    public int removeCodec(final T codec) {
+        final int mask = this.capacity - 1;
+        int index = Hashing.hash(codec.keyHashCode(), mask);
+        int existingSlabIndex;
+        while ((existingSlabIndex = table.getAtIndex(ValueLayout.JAVA_INT, index)) != MISSING_VALUE) {
+            if (slab.equalsUnderlying(existingSlabIndex, codec)) {
+                table.setAtIndex(ValueLayout.JAVA_INT, index, MISSING_VALUE);
+                size--;
+                tryCompact(index);
+                return existingSlabIndex;
+            }
+            index = ++index & mask;
+        }
+        return MISSING_VALUE;
+    }
+
+    public boolean removeAt(final int slabIndex) {
+        final int mask = this.capacity - 1;
+        int index = Hashing.hash(slab.keyHashCode(slabIndex), mask);
+        int existingSlabIndex;
+        while ((existingSlabIndex = table.getAtIndex(ValueLayout.JAVA_INT, index)) != MISSING_VALUE) {
+            if (existingSlabIndex == slabIndex) {
+                table.setAtIndex(ValueLayout.JAVA_INT, index, MISSING_VALUE);
+                size--;
+                tryCompact(index);
+                return true;
+            }
+            index = ++index & mask;
+        }
+        return false;
+    }
+
+    private void tryIncreaseCapacity() {
+        if (size > nextResizeLimit) {
+            rehash();
+        }
+    }
+
+    //Each table lives in its own arena so the old one can be released as soon as the rehash completes
+    private void rehash() {
+        final int oldCapacity = this.capacity;
+        this.capacity <<= 1;
+
+        final Arena newArena = SegmentSlab.createArena(slab.isShared());
+        final MemorySegment newTable = allocateTable(newArena, capacity);
+        final int mask = capacity - 1;
+        this.nextResizeLimit = (int) (this.capacity * loadFactor);
+        for (int readIndex = 0; readIndex < oldCapacity; readIndex++) {
+            final int value = table.getAtIndex(ValueLayout.JAVA_INT, readIndex);
+            if (value != MISSING_VALUE) {
+                int index = Hashing.hash(slab.keyHashCode(value), mask);
+                while (newTable.getAtIndex(ValueLayout.JAVA_INT, index) != MISSING_VALUE) {
+                    index = ++index & mask;
+                }
+                newTable.setAtIndex(ValueLayout.JAVA_INT, index, value);
+            }
+        }
+        this.arena.close();
+        this.arena = newArena;
+        this.table = newTable;
+    }
+
+    private void tryCompact(int deleteIndex) {
+        final int mask = capacity - 1;
+        int index = deleteIndex;
+
+        while (true) {
+            index = ++index & mask;
+            final int newValue = table.getAtIndex(ValueLayout.JAVA_INT, index);
+            if (newValue == MISSING_VALUE) {
+                return;
+            }
+            final int hash = Hashing.hash(slab.keyHashCode(newValue), mask);
+
+            if ((index < hash && (hash <= deleteIndex || deleteIndex <= index)) ||
+                    (hash <= deleteIndex && deleteIndex <= index)) {
+
+                table.setAtIndex(ValueLayout.JAVA_INT, deleteIndex, newValue);
+                table.setAtIndex(ValueLayout.JAVA_INT, index, MISSING_VALUE);
+                deleteIndex = index;
+            }
+        }
+    }
+
+    private static MemorySegment allocateTable(final Arena arena, final int capacity) {
+        final MemorySegment table = arena.allocate((long) capacity * Integer.BYTES, Integer.BYTES);
+        table.fill((byte) MISSING_VALUE);
+        return table;
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
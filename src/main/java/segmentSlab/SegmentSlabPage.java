@@ -0,0 +1,73 @@
+package segmentSlab;
+
+import utils.MemorySegmentUtils;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+public class SegmentSlabPage<T extends SegmentCodec> {
+
+    protected static final int SLAB_PAGE_LIVE_PADDING_SIZE = 1;
+    private final MemorySegment pageSegment;
+    private final short unitSize;
+    private final int pageIndex;
+    private short liveCounter = 0;
+
+    public SegmentSlabPage(final MemorySegment pageSegment, final short codecSize, final int index) {
+        this.pageSegment = pageSegment;
+        this.unitSize = (short) (codecSize + SLAB_PAGE_LIVE_PADDING_SIZE);
+        this.pageIndex = index;
+    }
+
+    public void createAt(final int index, final T codec) {
+        final long offset = getOffset(index);
+        liveCounter++;
+        pageSegment.set(ValueLayout.JAVA_BYTE, offset, (byte) 1);
+        codec.wrap(pageSegment, offset + SLAB_PAGE_LIVE_PADDING_SIZE);
+    }
+
+    public void getAt(final int index, final T codec) {
+        codec.wrap(pageSegment, getOffset(index) + SLAB_PAGE_LIVE_PADDING_SIZE);
+    }
+
+    public boolean equalsUnderlying(final int index, final T codec) {
+        final long offset = getOffset(index) + SLAB_PAGE_LIVE_PADDING_SIZE;
+        return MemorySegmentUtils.segmentEquals(pageSegment, offset + codec.keyOffset(),
+                codec.segment(), codec.offset() + codec.keyOffset(), codec.keyLength());
+    }
+
+    public int keyHashCode(final int index, final SegmentCodecKeyHashGenerator hashGenerator) {
+        return hashGenerator.generateKeyHashCode(pageSegment, getOffset(index) + SLAB_PAGE_LIVE_PADDING_SIZE);
+    }
+
+    public int removeAt(final int index) {
+        final long offset = getOffset(index);
+        if (pageSegment.get(ValueLayout.JAVA_BYTE, offset) != 0) {
+            pageSegment.set(ValueLayout.JAVA_BYTE, offset, (byte) 0);
+            return --liveCounter;
+        }
+        return liveCounter;
+    }
+
+    protected void cleanPage() {
+        liveCounter = 0;
+        pageSegment.fill((byte) 0);
+    }
+
+    public int getPageIndex() {
+        return pageIndex;
+    }
+
+    public int getLiveCount() {
+        return liveCounter;
+    }
+
+    private long getOffset(final int index) {
+        return (long) index * unitSize;
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentSlabPage{Index=" + this.getPageIndex() + ", Counter=" + this.getLiveCount() + '}';
+    }
+}
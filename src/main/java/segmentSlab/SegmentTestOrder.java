@@ -0,0 +1,56 @@
+package segmentSlab;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+public class SegmentTestOrder implements SegmentCodec {
+
+    public static final short ASCII_OFFSET = 0;
+    public static final short ASCII_LENGTH = 40;
+
+    private MemorySegment segment;
+    private long offset;
+
+    @Override
+    public short bufferSize() {
+        return 256;
+    }
+
+    @Override
+    public void wrap(final MemorySegment segment, final long offset) {
+        this.segment = segment;
+        this.offset = offset;
+    }
+
+    @Override
+    public MemorySegment segment() {
+        return segment;
+    }
+
+    @Override
+    public long offset() {
+        return offset;
+    }
+
+    @Override
+    public int keyOffset() {
+        return ASCII_OFFSET;
+    }
+
+    @Override
+    public int keyLength() {
+        return ASCII_LENGTH;
+    }
+
+    public void setKey(final CharSequence charSequence) {
+        if (charSequence.length() > ASCII_LENGTH) {
+            throw new IndexOutOfBoundsException("CharSequence too long!");
+        }
+        final long keyOffset = offset + ASCII_OFFSET;
+        int i = 0;
+        for (; i < charSequence.length(); i++) {
+            segment.set(ValueLayout.JAVA_BYTE, keyOffset + i, (byte) charSequence.charAt(i));
+        }
+        segment.asSlice(keyOffset + i, ASCII_LENGTH - i).fill((byte) 0);
+    }
+}
@@ -0,0 +1,54 @@
+package slab;
+
+import org.agrona.BitUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.util.function.Supplier;
+
+//Slab laid out as BitmapSlabPage pages: no live byte in front of records, which start on an 8 byte boundary,
+//or on a cache line when the codec is at least a cache line long and padding it costs at most an eighth.
+//Word sized fields at aligned codec offsets are read aligned and large records never straddle an extra line.
+public class BitmapSlab<T extends Codec> extends Slab<T> {
+
+    public static final int WORD_ALIGNMENT = Long.BYTES;
+    public static final int CACHE_LINE_ALIGNMENT = 64;
+
+    private final int recordAlignment;
+
+    public BitmapSlab(final short pageSize, final int initialPageCount, final Supplier<T> codecSupplier) {
+        this(pageSize, initialPageCount, codecSupplier, new DirectSlabPageAllocator());
+    }
+
+    public BitmapSlab(final short pageSize, final int initialPageCount, final Supplier<T> codecSupplier,
+                      final SlabPageAllocator pageAllocator) {
+        this(pageSize, initialPageCount, codecSupplier, pageAllocator,
+                recordAlignment(codecSupplier.get().bufferSize()));
+    }
+
+    private BitmapSlab(final short pageSize, final int initialPageCount, final Supplier<T> codecSupplier,
+                       final SlabPageAllocator pageAllocator, final int recordAlignment) {
+        super(pageSize, initialPageCount, codecSupplier, pageAllocator, 0, recordAlignment,
+                BitmapSlabPage.bitmapHeaderSize(BitUtil.findNextPositivePowerOfTwo(pageSize), recordAlignment));
+        this.recordAlignment = recordAlignment;
+    }
+
+    public static int recordAlignment(final short codecSize) {
+        if (codecSize >= CACHE_LINE_ALIGNMENT) {
+            final int padding = BitUtil.align(codecSize, CACHE_LINE_ALIGNMENT) - codecSize;
+            if (padding * 8 <= codecSize + padding) {
+                return CACHE_LINE_ALIGNMENT;
+            }
+        }
+        return WORD_ALIGNMENT;
+    }
+
+    @Override
+    protected SlabPage<T> newPage(final UnsafeBuffer buffer, final int pageIndex) {
+        return new BitmapSlabPage<>(buffer, getReusableCodec().bufferSize(), pageIndex, getUnitSize(),
+                getPageHeaderSize());
+    }
+
+    public int getRecordAlignment() {
+        return recordAlignment;
+    }
+}
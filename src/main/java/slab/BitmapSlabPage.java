@@ -0,0 +1,92 @@
+package slab;
+
+import org.agrona.concurrent.UnsafeBuffer;
+
+//Slab page without per-slot headers, liveness is kept in a bitmap at the start of the page.
+//Records are padded to the slab's record alignment, and scans skip dead slots a whole word at a time.
+public class BitmapSlabPage<T extends Codec> extends SlabPage<T> {
+
+    private final UnsafeBuffer pageBuffer;
+    private final int elementCount;
+    private final int wordCount;
+
+    public BitmapSlabPage(final UnsafeBuffer parentBuffer, final short codecSize, final int index,
+                          final int unitSize, final int pageHeaderSize) {
+        super(parentBuffer, codecSize, index, 0, unitSize, pageHeaderSize);
+        this.pageBuffer = parentBuffer;
+        this.elementCount = getElementCount();
+        this.wordCount = wordCount(elementCount);
+    }
+
+    //Bitmap words rounded up so the first record starts on the record alignment
+    public static int bitmapHeaderSize(final int elementCount, final int recordAlignment) {
+        final int bitmapSize = wordCount(elementCount) * Long.BYTES;
+        return (bitmapSize + recordAlignment - 1) / recordAlignment * recordAlignment;
+    }
+
+    private static int wordCount(final int elementCount) {
+        return (elementCount + Long.SIZE - 1) >>> 6;
+    }
+
+    @Override
+    protected boolean isLive(final int index, final int slotOffset) {
+        return (pageBuffer.getLong(wordOffset(index)) & (1L << index)) != 0;
+    }
+
+    @Override
+    protected void markLive(final int index, final int slotOffset) {
+        final int wordOffset = wordOffset(index);
+        pageBuffer.putLong(wordOffset, pageBuffer.getLong(wordOffset) | (1L << index));
+    }
+
+    @Override
+    protected void markDead(final int index, final int slotOffset) {
+        final int wordOffset = wordOffset(index);
+        pageBuffer.putLong(wordOffset, pageBuffer.getLong(wordOffset) & ~(1L << index));
+    }
+
+    //Sets the run's bits a word at a time
+    @Override
+    protected void createRun(final int fromIndex, final int count) {
+        final int end = fromIndex + count;
+        int index = fromIndex;
+        while (index < end) {
+            final int bitCount = Math.min(end, (index | (Long.SIZE - 1)) + 1) - index;
+            final long mask = bitCount == Long.SIZE ? -1L : ((1L << bitCount) - 1) << index;
+            final int wordOffset = wordOffset(index);
+            pageBuffer.putLong(wordOffset, pageBuffer.getLong(wordOffset) | mask);
+            index += bitCount;
+        }
+        setLiveCount(getLiveCount() + count);
+    }
+
+    @Override
+    public int nextLiveIndex(final int fromIndex) {
+        if (fromIndex >= elementCount) {
+            return -1;
+        }
+        int wordIndex = fromIndex >>> 6;
+        long word = pageBuffer.getLong(wordIndex << 3) & (-1L << fromIndex);
+        while (word == 0) {
+            if (++wordIndex == wordCount) {
+                return -1;
+            }
+            word = pageBuffer.getLong(wordIndex << 3);
+        }
+        return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    @Override
+    protected int recoverLiveCount() {
+        int liveCount = 0;
+        for (int i = 0; i < wordCount; i++) {
+            liveCount += Long.bitCount(pageBuffer.getLong(i << 3));
+        }
+        setLiveCount(liveCount);
+        return liveCount;
+    }
+
+    private static int wordOffset(final int index) {
+        return (index >>> 6) << 3;
+    }
+}
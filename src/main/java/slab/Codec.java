@@ -1,6 +1,7 @@
 package slab;
 
 import org.agrona.MutableDirectBuffer;
+import utils.KeyHasher;
 
 public interface Codec extends CodecKeyHashGenerator {
 
@@ -14,6 +15,16 @@ public interface Codec extends CodecKeyHashGenerator {
         return generateKeyHashCode(buffer(), 0);
     }
 
+    //Override to key the codec's tables with another hasher, the key bytes are hashed the same everywhere
+    default KeyHasher keyHasher() {
+        return KeyHasher.DEFAULT;
+    }
+
+    @Override
+    default int generateKeyHashCode(final MutableDirectBuffer buffer, final int offset) {
+        return keyHasher().hash(buffer, offset + keyOffset(), keyLength());
+    }
+
     int keyOffset();
 
     int keyLength();
@@ -0,0 +1,278 @@
+package slab;
+
+import org.agrona.BitUtil;
+import org.agrona.collections.Hashing;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+//SlabKeyStore variant that can be read while other threads write.
+//Readers are wait-free: they only do acquire loads on the slot array, probe the old table to its first empty slot
+//and only then follow the next table if the key was not found and a MOVED slot was passed on the way.
+//Writers CAS slots and deletes leave tombstones. Resizing is a blocking cooperative resize: every writer that runs
+//into it migrates chunks of the old table into the new one, freezing live slots while they are being copied, and
+//then waits until all chunks are migrated before carrying on.
+//Keys of indexed records must not change while they are in the store, and slab indices must stay below 2^30.
+public class ConcurrentSlabKeyStore<T extends Codec> {
+
+    private static final int MISSING_VALUE = -1;
+    private static final int EMPTY = -1;
+    private static final int TOMBSTONE = -2;
+    private static final int MOVED = -3;
+    private static final int FROZEN_BIT = 1 << 30;
+    private static final int MIGRATION_CHUNK_SIZE = 1024;
+
+    private final float loadFactor;
+    private final Slab<T> slab;
+    private final AtomicReference<Table> currentTable;
+    private final AtomicInteger size = new AtomicInteger();
+
+    public ConcurrentSlabKeyStore(final int capacity, final float loadFactor, final Slab<T> slab) {
+        this.loadFactor = loadFactor;
+        this.slab = slab;
+        this.currentTable = new AtomicReference<>(new Table(BitUtil.findNextPositivePowerOfTwo(capacity), loadFactor));
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    public int getKey(final T codec) {
+        final int hash = codec.keyHashCode();
+        Table table = currentTable.get();
+        while (true) {
+            final int mask = table.capacity - 1;
+            int index = Hashing.hash(hash, mask);
+            boolean isMoved = false;
+            for (int probes = 0; probes < table.capacity; probes++) {
+                final int value = table.slots.getIntVolatile(index << 2);
+                if (value == EMPTY) {
+                    break;
+                }
+                //Slots further down the chain may not have been copied yet, so keep probing this table
+                //unless the whole table has already been migrated
+                if (value == MOVED) {
+                    isMoved = true;
+                    if (table.migratedCount.get() == table.capacity) {
+                        break;
+                    }
+                } else if (value >= 0) {
+                    final int slabIndex = value & ~FROZEN_BIT;
+                    if (equalsUnderlying(slabIndex, codec)) {
+                        return slabIndex;
+                    }
+                }
+                index = ++index & mask;
+            }
+            if (!isMoved) {
+                return MISSING_VALUE;
+            }
+            table = table.next.get();
+        }
+    }
+
+    public void insert(final int slabIndex, final T codec) {
+        if ((slabIndex & FROZEN_BIT) != 0 || slabIndex < 0) {
+            throw new IllegalArgumentException("Slab index out of range: " + slabIndex);
+        }
+        final int hash = codec.keyHashCode();
+        while (true) {
+            final Table table = helpResize();
+            final int result = table.tryInsert(slabIndex, hash);
+            if (result == Table.INSERTED) {
+                size.incrementAndGet();
+                if (table.used.get() > table.resizeLimit) {
+                    startResize(table);
+                }
+                return;
+            }
+            if (result == Table.PRESENT) {
+                return;
+            }
+            startResize(table);
+        }
+    }
+
+    public int removeCodec(final T codec) {
+        final int hash = codec.keyHashCode();
+        while (true) {
+            final Table table = helpResize();
+            final int mask = table.capacity - 1;
+            int index = Hashing.hash(hash, mask);
+            boolean isRetry = false;
+            for (int probes = 0; probes < table.capacity; probes++) {
+                final int value = table.slots.getIntVolatile(index << 2);
+                if (value == EMPTY) {
+                    return MISSING_VALUE;
+                }
+                if (value == MOVED || (value >= 0 && (value & FROZEN_BIT) != 0)) {
+                    isRetry = true;
+                    break;
+                }
+                if (value >= 0 && equalsUnderlying(value, codec)) {
+                    if (table.slots.compareAndSetInt(index << 2, value, TOMBSTONE)) {
+                        size.decrementAndGet();
+                        return value;
+                    }
+                    isRetry = true;
+                    break;
+                }
+                index = ++index & mask;
+            }
+            if (!isRetry) {
+                return MISSING_VALUE;
+            }
+        }
+    }
+
+    public boolean removeAt(final int slabIndex) {
+        final int hash = keyHashCode(slabIndex);
+        while (true) {
+            final Table table = helpResize();
+            final int mask = table.capacity - 1;
+            int index = Hashing.hash(hash, mask);
+            boolean isRetry = false;
+            for (int probes = 0; probes < table.capacity; probes++) {
+                final int value = table.slots.getIntVolatile(index << 2);
+                if (value == EMPTY) {
+                    return false;
+                }
+                if (value == MOVED || value == (slabIndex | FROZEN_BIT)) {
+                    isRetry = true;
+                    break;
+                }
+                if (value == slabIndex) {
+                    if (table.slots.compareAndSetInt(index << 2, value, TOMBSTONE)) {
+                        size.decrementAndGet();
+                        return true;
+                    }
+                    isRetry = true;
+                    break;
+                }
+                index = ++index & mask;
+            }
+            if (!isRetry) {
+                return false;
+            }
+        }
+    }
+
+    //Completes any migration in flight, so writers always act on a table nobody is copying from
+    private Table helpResize() {
+        Table table = currentTable.get();
+        Table next;
+        while ((next = table.next.get()) != null) {
+            migrate(table, next);
+            currentTable.compareAndSet(table, next);
+            table = currentTable.get();
+        }
+        return table;
+    }
+
+    private void startResize(final Table table) {
+        if (table.next.get() != null) {
+            return;
+        }
+        //Mostly tombstones means the same capacity is enough, the migration drops them
+        final int liveCount = size.get();
+        final int newCapacity = liveCount * 2 > table.resizeLimit ? table.capacity << 1 : table.capacity;
+        table.next.compareAndSet(null, new Table(newCapacity, loadFactor));
+    }
+
+    private void migrate(final Table table, final Table next) {
+        int chunkStart;
+        while ((chunkStart = table.migrationCursor.getAndAdd(MIGRATION_CHUNK_SIZE)) < table.capacity) {
+            final int chunkEnd = Math.min(chunkStart + MIGRATION_CHUNK_SIZE, table.capacity);
+            for (int index = chunkStart; index < chunkEnd; index++) {
+                migrateSlot(table, next, index);
+            }
+            table.migratedCount.addAndGet(chunkEnd - chunkStart);
+        }
+        while (table.migratedCount.get() < table.capacity) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private void migrateSlot(final Table table, final Table next, final int index) {
+        final int offset = index << 2;
+        while (true) {
+            final int value = table.slots.getIntVolatile(offset);
+            if (value == EMPTY || value == TOMBSTONE) {
+                if (table.slots.compareAndSetInt(offset, value, MOVED)) {
+                    return;
+                }
+                continue;
+            }
+            //Readers keep matching a frozen slot, removers wait for it to land in the next table
+            if (table.slots.compareAndSetInt(offset, value, value | FROZEN_BIT)) {
+                //Nothing is inserted into next before it is current and it holds at least as many slots as this table,
+                //so every migrated key finds a free slot
+                if (next.tryInsert(value, keyHashCode(value)) != Table.INSERTED) {
+                    throw new IllegalStateException("Migration found no free slot for slab index " + value);
+                }
+                table.slots.putIntOrdered(offset, MOVED);
+                return;
+            }
+        }
+    }
+
+    private boolean equalsUnderlying(final int slabIndex, final T codec) {
+        return slab.getPageAcquire(slabIndex).equalsUnderlying(slab.inPageIndex(slabIndex), codec);
+    }
+
+    private int keyHashCode(final int slabIndex) {
+        return slab.getPageAcquire(slabIndex).keyHashCode(slab.inPageIndex(slabIndex), slab.getReusableCodec());
+    }
+
+    private static final class Table {
+
+        private static final int INSERTED = 0;
+        private static final int PRESENT = 1;
+        private static final int FULL = 2;
+
+        private final UnsafeBuffer slots;
+        private final int capacity;
+        private final int resizeLimit;
+        private final AtomicInteger used = new AtomicInteger();
+        private final AtomicReference<Table> next = new AtomicReference<>();
+        private final AtomicInteger migrationCursor = new AtomicInteger();
+        private final AtomicInteger migratedCount = new AtomicInteger();
+
+        private Table(final int capacity, final float loadFactor) {
+            this.capacity = capacity;
+            this.resizeLimit = (int) (capacity * loadFactor);
+            this.slots = new UnsafeBuffer(ByteBuffer.allocateDirect(capacity * Integer.BYTES));
+            this.slots.setMemory(0, slots.capacity(), (byte) EMPTY);
+        }
+
+        private int tryInsert(final int slabIndex, final int hash) {
+            final int mask = capacity - 1;
+            int index = Hashing.hash(hash, mask);
+            for (int probes = 0; probes < capacity; probes++) {
+                final int offset = index << 2;
+                final int value = slots.getIntVolatile(offset);
+                if (value == EMPTY) {
+                    if (slots.compareAndSetInt(offset, EMPTY, slabIndex)) {
+                        used.incrementAndGet();
+                        return INSERTED;
+                    }
+                    continue;
+                }
+                if (value == MOVED || value >= 0 && (value & FROZEN_BIT) != 0) {
+                    return FULL;
+                }
+                if (value == slabIndex) {
+                    return PRESENT;
+                }
+                index = ++index & mask;
+            }
+            return FULL;
+        }
+    }
+}
@@ -42,6 +42,15 @@ public class Cursor<T extends Codec> {
         nextPageIndex = 0;
     }
 
+    //Creates up to count slots on the current page in one step and moves past them, returns how many it took
+    public int createRun(final int count) {
+        final int run = Math.min(count, pageElementCount - nextPageIndex);
+        currentPage.createRun(nextPageIndex, run);
+        nextPageIndex += run - 1;
+        incrementCursor();
+        return run;
+    }
+
     public int getCursorIndex() {
         return currPageIndex + nextPageIndex;
     }
@@ -54,4 +63,13 @@ public class Cursor<T extends Codec> {
         return this.currentPage;
     }
 
+    protected int getInPageIndex() {
+        return this.nextPageIndex;
+    }
+
+    protected void resetTo(final SlabPage<T> page, final int inPageIndex) {
+        this.currentPage = page;
+        this.currPageIndex = page.getPageIndex() * pageElementCount;
+        this.nextPageIndex = inPageIndex;
+    }
 }
@@ -0,0 +1,33 @@
+package slab;
+
+import org.agrona.BufferUtil;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+
+public class DirectSlabPageAllocator implements SlabPageAllocator {
+
+    //Direct buffers are only malloc aligned, pages start on a cache line so aligned record layouts stay aligned
+    private static final int PAGE_ALIGNMENT = 64;
+
+    @Override
+    public MutableDirectBuffer allocate(final int firstPageIndex, final int pageCount, final int singlePageSize) {
+        final int capacity = pageCount * singlePageSize;
+        final ByteBuffer byteBuffer = ByteBuffer.allocateDirect(capacity + PAGE_ALIGNMENT);
+        final UnsafeBuffer buffer = new UnsafeBuffer(byteBuffer);
+        final long address = buffer.addressOffset();
+        final int adjustment = (int) (((address + PAGE_ALIGNMENT - 1) & -PAGE_ALIGNMENT) - address);
+        return new UnsafeBuffer(byteBuffer, adjustment, capacity);
+    }
+
+    //Runs the direct buffer's cleaner now instead of waiting for GC
+    @Override
+    public boolean release(final MutableDirectBuffer pageBuffer) {
+        if (pageBuffer.byteBuffer() == null) {
+            return false;
+        }
+        BufferUtil.free(pageBuffer.byteBuffer());
+        return true;
+    }
+}
@@ -0,0 +1,145 @@
+package slab;
+
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.util.function.Supplier;
+
+import static slab.GenerationalSlabPage.GENERATION_HEADER_SIZE;
+
+//Slab handing out handles that pack the slot's generation above the index. Accessors validate the handle
+//against the slot header, so a handle kept past removeAt is caught once the slot is reused instead of silently
+//reading the new record. Generations wrap after 2^generationBits reuses of the same slot.
+public class GenerationalSlab<T extends Codec> extends Slab<T> {
+
+    public static final int DEFAULT_GENERATION_BITS = 8;
+
+    private final int indexBits;
+    private final int indexMask;
+    private final int generationMask;
+    private final int headerMask;
+
+    public GenerationalSlab(final short pageSize, final int initialPageCount, final Supplier<T> codecSupplier) {
+        this(pageSize, initialPageCount, codecSupplier, DEFAULT_GENERATION_BITS, new DirectSlabPageAllocator());
+    }
+
+    public GenerationalSlab(final short pageSize, final int initialPageCount, final Supplier<T> codecSupplier,
+                            final int generationBits, final SlabPageAllocator pageAllocator) {
+        super(pageSize, initialPageCount, codecSupplier, pageAllocator, GENERATION_HEADER_SIZE,
+                GENERATION_HEADER_SIZE);
+        if (generationBits < 1 || generationBits > 16) {
+            throw new IllegalArgumentException("Generation bits must be between 1 and 16: " + generationBits);
+        }
+        //Sign bit stays clear so handles never collide with the -1 missing value of the key stores
+        this.indexBits = Integer.SIZE - 1 - generationBits;
+        this.indexMask = (1 << indexBits) - 1;
+        this.generationMask = (1 << generationBits) - 1;
+        this.headerMask = generationMask << 1 | 1;
+    }
+
+    @Override
+    protected SlabPage<T> newPage(final UnsafeBuffer buffer, final int pageIndex) {
+        return new GenerationalSlabPage<>(buffer, getReusableCodec().bufferSize(), pageIndex, getUnitSize());
+    }
+
+    //A refilled page would restart generations at zero and let stale handles validate again
+    @Override
+    protected boolean isReleasable(final SlabPage<T> slabPage) {
+        return false;
+    }
+
+    @Override
+    public int create(final T codec) {
+        return handleOf(super.create(codec));
+    }
+
+    @Override
+    protected int handleOf(final int index) {
+        if ((index & ~indexMask) != 0) {
+            throw new IllegalStateException("Slab index does not fit in a handle: " + index);
+        }
+        final int generation = page(index).getGeneration(inPageIndex(index)) & generationMask;
+        return generation << indexBits | index;
+    }
+
+    //Each handle is validated on its own, a stale one throws like getAt
+    @Override
+    public void getBatch(final int[] handles, final T[] codecs, final int count) {
+        for (int i = 0; i < count; i++) {
+            getAt(handles[i], codecs[i]);
+        }
+    }
+
+    //Stale handles are skipped like in removeAt, so the batch falls back to per-handle removal
+    @Override
+    public void removeBatch(final int[] handles, final int count) {
+        for (int i = 0; i < count; i++) {
+            removeAt(handles[i]);
+        }
+    }
+
+    public boolean isValid(final int handle) {
+        final int index = handle & indexMask;
+        return page(index).isCurrent(inPageIndex(index), headerMask, expectedHeader(handle));
+    }
+
+    //Returns false and leaves the codec untouched for a stale handle
+    public boolean tryGetAt(final int handle, final T codec) {
+        final int index = handle & indexMask;
+        final GenerationalSlabPage<T> page = page(index);
+        if (!page.isCurrent(inPageIndex(index), headerMask, expectedHeader(handle))) {
+            return false;
+        }
+        page.getAt(inPageIndex(index), codec);
+        return true;
+    }
+
+    @Override
+    public void getAt(final int handle, final T codec) {
+        if (!tryGetAt(handle, codec)) {
+            throw new IllegalStateException("Stale slab handle: " + handle);
+        }
+    }
+
+    //Returns null for a stale handle
+    @Override
+    public T get(final int handle) {
+        final T codec = getReusableCodec();
+        return tryGetAt(handle, codec) ? codec : null;
+    }
+
+    @Override
+    public boolean equalsUnderlying(final int handle, final T codec) {
+        final int index = handle & indexMask;
+        final GenerationalSlabPage<T> page = page(index);
+        final int inPageIndex = inPageIndex(index);
+        return page.isCurrent(inPageIndex, headerMask, expectedHeader(handle)) &&
+                page.equalsUnderlying(inPageIndex, codec);
+    }
+
+    //Key stores rehash through here, the handle was validated when it was inserted
+    @Override
+    public int keyHashCode(final int handle) {
+        return super.keyHashCode(handle & indexMask);
+    }
+
+    //Removing through a stale handle is a no-op so it can never free the slot's new occupant
+    @Override
+    public void removeAt(final int handle) {
+        if (isValid(handle)) {
+            super.removeAt(handle & indexMask);
+        }
+    }
+
+    @Override
+    protected int indexOf(final int handle) {
+        return handle & indexMask;
+    }
+
+    private int expectedHeader(final int handle) {
+        return (handle >>> indexBits) << 1 | 1;
+    }
+
+    private GenerationalSlabPage<T> page(final int index) {
+        return (GenerationalSlabPage<T>) getPage(pageIndexOf(index));
+    }
+}
@@ -0,0 +1,53 @@
+package slab;
+
+import org.agrona.concurrent.UnsafeBuffer;
+
+//Slab page whose 4 byte slot header holds a live bit and a generation bumped on every create.
+//The generation survives removal and page cleaning so a handle from an earlier life of the slot never matches.
+public class GenerationalSlabPage<T extends Codec> extends SlabPage<T> {
+
+    protected static final int GENERATION_HEADER_SIZE = Integer.BYTES;
+    private static final int LIVE = 1;
+
+    private final UnsafeBuffer pageBuffer;
+
+    public GenerationalSlabPage(final UnsafeBuffer parentBuffer, final short codecSize, final int index,
+                                final int unitSize) {
+        super(parentBuffer, codecSize, index, GENERATION_HEADER_SIZE, unitSize);
+        this.pageBuffer = parentBuffer;
+    }
+
+    @Override
+    protected void markLive(final int index, final int slotOffset) {
+        pageBuffer.putInt(slotOffset, ((pageBuffer.getInt(slotOffset) >>> 1) + 1) << 1 | LIVE);
+    }
+
+    @Override
+    protected void markDead(final int index, final int slotOffset) {
+        pageBuffer.putInt(slotOffset, pageBuffer.getInt(slotOffset) & ~LIVE);
+    }
+
+    @Override
+    protected boolean isLive(final int index, final int slotOffset) {
+        return (pageBuffer.getInt(slotOffset) & LIVE) != 0;
+    }
+
+    public int getGeneration(final int index) {
+        return pageBuffer.getInt(getOffset(index)) >>> 1;
+    }
+
+    //Single compare of the masked header against the live header a handle expects
+    public boolean isCurrent(final int index, final int headerMask, final int expectedHeader) {
+        return (pageBuffer.getInt(getOffset(index)) & headerMask) == expectedHeader;
+    }
+
+    @Override
+    protected void cleanPage() {
+        final int unitSize = getUnitSize();
+        final int slotCount = pageBuffer.capacity() / unitSize;
+        for (int i = 0; i < slotCount; i++) {
+            pageBuffer.setMemory(i * unitSize + GENERATION_HEADER_SIZE, unitSize - GENERATION_HEADER_SIZE, (byte) 0);
+        }
+        resetLiveCount();
+    }
+}
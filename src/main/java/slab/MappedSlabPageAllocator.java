@@ -0,0 +1,103 @@
+package slab;
+
+import org.agrona.IoUtil;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+//Pages live in a memory-mapped file so the slab contents survive a process restart.
+//File layout: [magic][singlePageSize][pageCount][unitSize] header, followed by the pages back to back.
+public class MappedSlabPageAllocator implements SlabPageAllocator {
+
+    private static final long MAGIC = 0x534C41424D415031L;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int PAGE_SIZE_OFFSET = 8;
+    private static final int PAGE_COUNT_OFFSET = 12;
+    private static final int UNIT_SIZE_OFFSET = 16;
+    private static final int HEADER_SIZE = 64;
+
+    private final FileChannel fileChannel;
+    private final MappedByteBuffer headerByteBuffer;
+    private final UnsafeBuffer header;
+    private final List<MappedByteBuffer> mappedRegions = new ArrayList<>();
+
+    public MappedSlabPageAllocator(final Path path) {
+        try {
+            this.fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.headerByteBuffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            this.header = new UnsafeBuffer(headerByteBuffer);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int recoveredPageCount(final int singlePageSize, final int unitSize) {
+        if (header.getLong(MAGIC_OFFSET) != MAGIC) {
+            header.putLong(MAGIC_OFFSET, MAGIC);
+            header.putInt(PAGE_SIZE_OFFSET, singlePageSize);
+            header.putInt(PAGE_COUNT_OFFSET, 0);
+            header.putInt(UNIT_SIZE_OFFSET, unitSize);
+            return 0;
+        }
+        final int storedPageSize = header.getInt(PAGE_SIZE_OFFSET);
+        if (storedPageSize != singlePageSize) {
+            throw new IllegalStateException("Slab file page size " + storedPageSize +
+                    " does not match requested page size " + singlePageSize);
+        }
+        //Same page size with another record size would read every record at the wrong offset
+        final int storedUnitSize = header.getInt(UNIT_SIZE_OFFSET);
+        if (storedUnitSize != unitSize) {
+            throw new IllegalStateException("Slab file record size " + storedUnitSize +
+                    " does not match requested record size " + unitSize);
+        }
+        return header.getInt(PAGE_COUNT_OFFSET);
+    }
+
+    @Override
+    public MutableDirectBuffer allocate(final int firstPageIndex, final int pageCount, final int singlePageSize) {
+        final long position = HEADER_SIZE + (long) firstPageIndex * singlePageSize;
+        final long length = (long) pageCount * singlePageSize;
+        final MappedByteBuffer region;
+        try {
+            region = fileChannel.map(FileChannel.MapMode.READ_WRITE, position, length);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        mappedRegions.add(region);
+        //Only publish the new page count once the region backing it exists
+        header.putIntOrdered(PAGE_COUNT_OFFSET, Math.max(header.getInt(PAGE_COUNT_OFFSET), firstPageIndex + pageCount));
+        return new UnsafeBuffer(region);
+    }
+
+    public void force() {
+        for (final MappedByteBuffer region : mappedRegions) {
+            region.force();
+        }
+        headerByteBuffer.force();
+    }
+
+    @Override
+    public void close() {
+        force();
+        for (final MappedByteBuffer region : mappedRegions) {
+            IoUtil.unmap(region);
+        }
+        mappedRegions.clear();
+        IoUtil.unmap(headerByteBuffer);
+        try {
+            fileChannel.close();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
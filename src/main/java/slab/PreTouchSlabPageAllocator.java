@@ -0,0 +1,97 @@
+package slab;
+
+import org.agrona.MutableDirectBuffer;
+import utils.PageReserve;
+import utils.PreTouch;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//Decorates another allocator so every page is touched, and optionally mlocked, before the slab hands it out.
+//With eagerPageCount > 0 single page growth is served from a reserve a background thread keeps pre-faulted,
+//which needs a delegate that is thread safe and ignores page indices, like DirectSlabPageAllocator.
+public class PreTouchSlabPageAllocator implements SlabPageAllocator {
+
+    private final SlabPageAllocator delegate;
+    private final PreTouch preTouch;
+    private final int eagerPageCount;
+    private final int lowWaterMark;
+    private final AtomicBoolean isLockFailed = new AtomicBoolean();
+    private PageReserve<MutableDirectBuffer> reserve;
+
+    public PreTouchSlabPageAllocator(final SlabPageAllocator delegate, final PreTouch preTouch) {
+        this(delegate, preTouch, 0);
+    }
+
+    public PreTouchSlabPageAllocator(final SlabPageAllocator delegate, final PreTouch preTouch,
+                                     final int eagerPageCount) {
+        this(delegate, preTouch, Math.max(1, eagerPageCount / 2), eagerPageCount);
+    }
+
+    //The reserve thread refills up to eagerPageCount whenever fewer than lowWaterMark pages are left
+    public PreTouchSlabPageAllocator(final SlabPageAllocator delegate, final PreTouch preTouch,
+                                     final int lowWaterMark, final int eagerPageCount) {
+        this.delegate = delegate;
+        this.preTouch = preTouch;
+        this.lowWaterMark = lowWaterMark;
+        this.eagerPageCount = eagerPageCount;
+    }
+
+    @Override
+    public MutableDirectBuffer allocate(final int firstPageIndex, final int pageCount, final int singlePageSize) {
+        if (eagerPageCount > 0) {
+            if (reserve == null) {
+                reserve = new PageReserve<>("slab-page-reserve", lowWaterMark, eagerPageCount,
+                        () -> prepare(delegate.allocate(-1, 1, singlePageSize)), this::release);
+            } else if (pageCount == 1) {
+                final MutableDirectBuffer page = reserve.poll();
+                if (page != null) {
+                    return page;
+                }
+            }
+        }
+        return prepare(delegate.allocate(firstPageIndex, pageCount, singlePageSize));
+    }
+
+    private MutableDirectBuffer prepare(final MutableDirectBuffer buffer) {
+        if (!preTouch.prepare(buffer.addressOffset(), buffer.capacity())) {
+            isLockFailed.set(true);
+        }
+        return buffer;
+    }
+
+    @Override
+    public int recoveredPageCount(final int singlePageSize, final int unitSize) {
+        return delegate.recoveredPageCount(singlePageSize, unitSize);
+    }
+
+    @Override
+    public boolean release(final MutableDirectBuffer pageBuffer) {
+        preTouch.release(pageBuffer.addressOffset(), pageBuffer.capacity());
+        if (delegate.release(pageBuffer)) {
+            return true;
+        }
+        prepare(pageBuffer);
+        return false;
+    }
+
+    //False once any mlock was refused, e.g. over RLIMIT_MEMLOCK
+    public boolean isLocked() {
+        return preTouch == PreTouch.TOUCH_AND_LOCK && !isLockFailed.get();
+    }
+
+    public long getReserveExhaustedCount() {
+        return reserve == null ? 0 : reserve.getExhaustedCount();
+    }
+
+    int getReserveSize() {
+        return reserve == null ? 0 : reserve.size();
+    }
+
+    @Override
+    public void close() {
+        if (reserve != null) {
+            reserve.close();
+        }
+        delegate.close();
+    }
+}
@@ -0,0 +1,102 @@
+package slab;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static slab.SeqLockSlabPage.VERSION_HEADER_SIZE;
+
+//Single writer, multi reader slab. The writer uses the usual Slab API plus beginWrite/endWrite around in place
+//updates, readers on other threads never lock: they copy or validate a record against its per-slot seqlock
+//and retry when the writer got in between.
+public class SeqLockSlab<T extends Codec> extends Slab<T> {
+
+    public SeqLockSlab(final short pageSize, final int initialPageCount, final Supplier<T> codecSupplier) {
+        this(pageSize, initialPageCount, codecSupplier, new DirectSlabPageAllocator());
+    }
+
+    public SeqLockSlab(final short pageSize, final int initialPageCount, final Supplier<T> codecSupplier,
+                       final SlabPageAllocator pageAllocator) {
+        //Aligning slots to the version word keeps every version access a single aligned 8 byte load or store
+        super(pageSize, initialPageCount, codecSupplier, pageAllocator, VERSION_HEADER_SIZE, VERSION_HEADER_SIZE);
+    }
+
+    @Override
+    protected SlabPage<T> newPage(final UnsafeBuffer buffer, final int pageIndex) {
+        return new SeqLockSlabPage<>(buffer, getReusableCodec().bufferSize(), pageIndex, getUnitSize());
+    }
+
+    //Readers on other threads may still be looking at an emptied page
+    @Override
+    protected boolean isReleasable(final SlabPage<T> slabPage) {
+        return false;
+    }
+
+    //Compaction copies into a freshly created slot, which is only published to readers once the copy is complete
+    @Override
+    protected int relocateRecord(final int fromIndex) {
+        final int toIndex = super.relocateRecord(fromIndex);
+        endWrite(toIndex);
+        return toIndex;
+    }
+
+    //Writer side: a created slot stays invisible to readers until endWrite is called for it
+    public void beginWrite(final int index, final T codec) {
+        final SeqLockSlabPage<T> page = page(index);
+        page.beginWrite(inPageIndex(index));
+        page.getAt(inPageIndex(index), codec);
+    }
+
+    public void endWrite(final int index) {
+        page(index).endWrite(inPageIndex(index));
+    }
+
+    //Prefer these over pairing beginWrite/endWrite by hand: the slot is published in a finally, so a throwing
+    //update can not leave it mid-write with readers spinning on it forever
+    public int create(final T codec, final Consumer<? super T> initializer) {
+        final int index = create(codec);
+        try {
+            initializer.accept(codec);
+        } finally {
+            endWrite(index);
+        }
+        return index;
+    }
+
+    public void write(final int index, final T codec, final Consumer<? super T> update) {
+        beginWrite(index, codec);
+        try {
+            update.accept(codec);
+        } finally {
+            endWrite(index);
+        }
+    }
+
+    //Reader side
+    public boolean read(final int index, final MutableDirectBuffer destination, final int destinationOffset) {
+        return page(index).read(inPageIndex(index), destination, destinationOffset);
+    }
+
+    //Wraps the codec over the live record for zero copy reads, the values read are only valid if validateRead
+    //succeeds with the returned version afterwards
+    public long beginRead(final int index, final T codec) {
+        final SeqLockSlabPage<T> page = page(index);
+        final long version = page.readVersion(inPageIndex(index));
+        page.getAt(inPageIndex(index), codec);
+        return version;
+    }
+
+    public boolean validateRead(final int index, final long version) {
+        return page(index).validate(inPageIndex(index), version);
+    }
+
+    public static boolean isLive(final long version) {
+        return SeqLockSlabPage.isLiveVersion(version);
+    }
+
+    private SeqLockSlabPage<T> page(final int index) {
+        return (SeqLockSlabPage<T>) getPageAcquire(index);
+    }
+}
@@ -0,0 +1,106 @@
+package slab;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.lang.invoke.VarHandle;
+
+//Slab page whose slot header is an 8 byte version word used as a seqlock.
+//Bit 0 is set while the writer is mid-update, bit 1 marks the slot live and the remaining bits count writes,
+//so a version never repeats and readers can detect torn or recycled reads by comparing it before and after.
+public class SeqLockSlabPage<T extends Codec> extends SlabPage<T> {
+
+    protected static final int VERSION_HEADER_SIZE = Long.BYTES;
+    private static final long WRITING = 1;
+    private static final long LIVE = 2;
+    private static final long WRITE_INCREMENT = 4;
+
+    private final UnsafeBuffer pageBuffer;
+
+    public SeqLockSlabPage(final UnsafeBuffer parentBuffer, final short codecSize, final int index,
+                           final int unitSize) {
+        super(parentBuffer, codecSize, index, VERSION_HEADER_SIZE, unitSize);
+        this.pageBuffer = parentBuffer;
+    }
+
+    //Creation leaves the slot mid-write, it becomes readable once the writer calls endWrite
+    @Override
+    protected void markLive(final int index, final int slotOffset) {
+        pageBuffer.putLong(slotOffset, pageBuffer.getLong(slotOffset) | WRITING | LIVE);
+        VarHandle.storeStoreFence();
+    }
+
+    @Override
+    protected void markDead(final int index, final int slotOffset) {
+        final long version = pageBuffer.getLong(slotOffset);
+        pageBuffer.putLong(slotOffset, version | WRITING);
+        VarHandle.storeStoreFence();
+        pageBuffer.putLongOrdered(slotOffset, ((version & ~(WRITING | LIVE)) + WRITE_INCREMENT));
+    }
+
+    @Override
+    protected boolean isLive(final int index, final int slotOffset) {
+        return (pageBuffer.getLong(slotOffset) & LIVE) != 0;
+    }
+
+    public void beginWrite(final int index) {
+        final int slotOffset = getOffset(index);
+        pageBuffer.putLong(slotOffset, pageBuffer.getLong(slotOffset) | WRITING);
+        VarHandle.storeStoreFence();
+    }
+
+    public void endWrite(final int index) {
+        final int slotOffset = getOffset(index);
+        final long version = pageBuffer.getLong(slotOffset);
+        pageBuffer.putLongOrdered(slotOffset, (version & ~WRITING) + WRITE_INCREMENT);
+    }
+
+    //Spins past an in-flight write and returns a stable version, check it with isLiveVersion and validate
+    public long readVersion(final int index) {
+        final int slotOffset = getOffset(index);
+        long version;
+        while (((version = pageBuffer.getLongVolatile(slotOffset)) & WRITING) != 0) {
+            Thread.onSpinWait();
+        }
+        return version;
+    }
+
+    public boolean validate(final int index, final long version) {
+        VarHandle.loadLoadFence();
+        return pageBuffer.getLongVolatile(getOffset(index)) == version;
+    }
+
+    //Copies the record into destination, retrying until the copy is not torn. Returns false for a dead slot.
+    public boolean read(final int index, final MutableDirectBuffer destination, final int destinationOffset) {
+        final int slotOffset = getOffset(index);
+        while (true) {
+            final long version = readVersion(index);
+            if ((version & LIVE) == 0) {
+                return false;
+            }
+            destination.putBytes(destinationOffset, pageBuffer, slotOffset + VERSION_HEADER_SIZE, getCodecSize());
+            if (validate(index, version)) {
+                return true;
+            }
+        }
+    }
+
+    public static boolean isLiveVersion(final long version) {
+        return (version & LIVE) != 0;
+    }
+
+    //Record bodies are cleared under the seqlock and versions keep counting, resetting them would let a
+    //reader holding an old version validate against a recycled slot
+    @Override
+    protected void cleanPage() {
+        final int unitSize = getUnitSize();
+        final int slotCount = pageBuffer.capacity() / unitSize;
+        for (int i = 0; i < slotCount; i++) {
+            final int slotOffset = i * unitSize;
+            beginWrite(i);
+            pageBuffer.setMemory(slotOffset + VERSION_HEADER_SIZE, unitSize - VERSION_HEADER_SIZE, (byte) 0);
+            endWrite(i);
+        }
+        resetLiveCount();
+    }
+}
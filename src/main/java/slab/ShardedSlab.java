@@ -0,0 +1,199 @@
+package slab;
+
+import org.agrona.BitUtil;
+import org.agrona.collections.Hashing;
+
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+//Routes keys by hash onto independent Slab + SlabKeyStore pairs so each shard can be owned by its own worker.
+//Handles carry the shard in their high bits, everything within a shard keeps the single threaded hot path.
+public class ShardedSlab<T extends Codec> implements AutoCloseable {
+
+    private static final int MISSING_VALUE = -1;
+
+    private final Shard<T>[] shards;
+    private final int shardBits;
+    private final int localIndexShift;
+    private final int localIndexMask;
+
+    @SuppressWarnings("unchecked")
+    public ShardedSlab(final int shardCount, final short pageSize, final int initialPageCount,
+                       final int keyStoreCapacity, final float loadFactor, final Supplier<T> codecSupplier) {
+        if (shardCount < 1 || !BitUtil.isPowerOfTwo(shardCount)) {
+            throw new IllegalArgumentException("Shard count must be a positive power of two: " + shardCount);
+        }
+        this.shardBits = Integer.numberOfTrailingZeros(shardCount);
+        //Top bit stays clear so a handle is never confused with the missing value
+        this.localIndexShift = Integer.SIZE - 1 - shardBits;
+        this.localIndexMask = (1 << localIndexShift) - 1;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            final Slab<T> slab = new Slab<>(pageSize, initialPageCount, codecSupplier);
+            this.shards[i] = new Shard<>(i, slab, new SlabKeyStore<>(keyStoreCapacity, loadFactor, slab));
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public Shard<T> getShard(final int shardIndex) {
+        return shards[shardIndex];
+    }
+
+    //Uses the top bits of the mixed hash, the key stores probe from the low bits
+    public int shardFor(final T codec) {
+        return shardForHash(codec.keyHashCode());
+    }
+
+    public int shardForHash(final int keyHashCode) {
+        return shardBits == 0 ? 0 : Hashing.hash(keyHashCode) >>> (Integer.SIZE - shardBits);
+    }
+
+    public int shardOf(final int handle) {
+        return handle >>> localIndexShift;
+    }
+
+    public int localIndexOf(final int handle) {
+        return handle & localIndexMask;
+    }
+
+    public int toHandle(final int shardIndex, final int localIndex) {
+        if ((localIndex & ~localIndexMask) != 0) {
+            throw new IllegalStateException("Local index does not fit in handle: " + localIndex);
+        }
+        return shardIndex << localIndexShift | localIndex;
+    }
+
+    //Callers route first with shardFor on a key codec, then set the key on the codec wrapped here
+    public int create(final int shardIndex, final T codec) {
+        return toHandle(shardIndex, shards[shardIndex].slab.create(codec));
+    }
+
+    public void insert(final int handle, final T codec) {
+        shards[shardOf(handle)].keyStore.insert(localIndexOf(handle), codec);
+    }
+
+    public void getAt(final int handle, final T codec) {
+        shards[shardOf(handle)].slab.getAt(localIndexOf(handle), codec);
+    }
+
+    public T get(final int handle) {
+        return shards[shardOf(handle)].slab.get(localIndexOf(handle));
+    }
+
+    public boolean equalsUnderlying(final int handle, final T codec) {
+        return shards[shardOf(handle)].slab.equalsUnderlying(localIndexOf(handle), codec);
+    }
+
+    public int getKey(final T codec) {
+        final int shardIndex = shardFor(codec);
+        final int localIndex = shards[shardIndex].keyStore.getKey(codec);
+        return localIndex == MISSING_VALUE ? MISSING_VALUE : shardIndex << localIndexShift | localIndex;
+    }
+
+    //Removes from both the key store and the slab
+    public int removeCodec(final T codec) {
+        final int shardIndex = shardFor(codec);
+        final Shard<T> shard = shards[shardIndex];
+        final int localIndex = shard.keyStore.removeCodec(codec);
+        if (localIndex == MISSING_VALUE) {
+            return MISSING_VALUE;
+        }
+        shard.slab.removeAt(localIndex);
+        return shardIndex << localIndexShift | localIndex;
+    }
+
+    public void removeAt(final int handle) {
+        final Shard<T> shard = shards[shardOf(handle)];
+        final int localIndex = localIndexOf(handle);
+        shard.keyStore.removeAt(localIndex);
+        shard.slab.removeAt(localIndex);
+    }
+
+    public void route(final T[] codecs, final int count, final int[] shardIndicesOut) {
+        for (int i = 0; i < count; i++) {
+            shardIndicesOut[i] = shardFor(codecs[i]);
+        }
+    }
+
+    //Counting sort of batch positions by shard: positions of shard s end up in
+    //positionsOut[shardOffsetsOut[s], shardOffsetsOut[s + 1]), ready to hand to that shard's worker
+    public void partition(final T[] codecs, final int count, final int[] shardIndicesOut,
+                          final int[] positionsOut, final int[] shardOffsetsOut) {
+        final int shardCount = shards.length;
+        for (int i = 0; i <= shardCount; i++) {
+            shardOffsetsOut[i] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            final int shardIndex = shardFor(codecs[i]);
+            shardIndicesOut[i] = shardIndex;
+            shardOffsetsOut[shardIndex + 1]++;
+        }
+        for (int i = 0; i < shardCount; i++) {
+            shardOffsetsOut[i + 1] += shardOffsetsOut[i];
+        }
+        //Offsets double as write cursors, leaving each one at the start of the next shard
+        for (int i = 0; i < count; i++) {
+            positionsOut[shardOffsetsOut[shardIndicesOut[i]]++] = i;
+        }
+        for (int i = shardCount; i > 0; i--) {
+            shardOffsetsOut[i] = shardOffsetsOut[i - 1];
+        }
+        shardOffsetsOut[0] = 0;
+    }
+
+    public int size() {
+        int size = 0;
+        for (final Shard<T> shard : shards) {
+            size += shard.keyStore.size();
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    //Not safe against concurrent shard writers, intended for quiescent points or the owning worker
+    public void forEachHandle(final IntConsumer consumer) {
+        for (final Shard<T> shard : shards) {
+            final int shardPrefix = shard.index << localIndexShift;
+            shard.keyStore.forEach(localIndex -> consumer.accept(shardPrefix | localIndex));
+        }
+    }
+
+    @Override
+    public void close() {
+        for (final Shard<T> shard : shards) {
+            shard.keyStore.close();
+            shard.slab.close();
+        }
+    }
+
+    public static final class Shard<T extends Codec> {
+
+        private final int index;
+        private final Slab<T> slab;
+        private final SlabKeyStore<T> keyStore;
+
+        private Shard(final int index, final Slab<T> slab, final SlabKeyStore<T> keyStore) {
+            this.index = index;
+            this.slab = slab;
+            this.keyStore = keyStore;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Slab<T> getSlab() {
+            return slab;
+        }
+
+        public SlabKeyStore<T> getKeyStore() {
+            return keyStore;
+        }
+    }
+}
@@ -3,15 +3,22 @@ package slab;
 import org.agrona.BitUtil;
 import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.IntArrayList;
 import org.agrona.collections.IntArrayQueue;
 import org.agrona.concurrent.UnsafeBuffer;
 
-import java.nio.ByteBuffer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 import static slab.SlabPage.SLAB_PAGE_LIVE_PADDING_SIZE;
 
-public class Slab<T extends Codec> {
+public class Slab<T extends Codec> implements AutoCloseable {
 
     private int activePagesCount = 0;
     private SlabPage<T>[] pages;
@@ -23,11 +30,54 @@ public class Slab<T extends Codec> {
     private final int shiftCount;
 
     private final T reusableCodec;
+    private final int slotHeaderSize;
+    private final int pageHeaderSize;
+    private final int unitSize;
     private final int singlePageSize;
+    private final SlabPageAllocator pageAllocator;
+
+    //Released pages leave a hole in the directory, their indices are reused before the directory grows again.
+    //Pages carved out of the initial allocation share one buffer and are never released individually.
+    private final IntArrayList releasedPageIndices = new IntArrayList();
+    private final int sharedBlockPageCount;
+    private int maxRetainedCleanPages = Integer.MAX_VALUE;
 
     public static boolean RESET_BUFFER = !"true".equals(System.getProperty("slab.reset.buffer"));
 
+    //Pages are published with release stores so a reader acquiring the directory never sees a half built page
+    private static final VarHandle PAGES;
+    private static final VarHandle PAGES_ARRAY = MethodHandles.arrayElementVarHandle(SlabPage[].class);
+
+    static {
+        try {
+            PAGES = MethodHandles.lookup().findVarHandle(Slab.class, "pages", SlabPage[].class);
+        } catch (final ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     public Slab(final short pageSize, final int initialPageCount, final Supplier<T> codecSupplier) {
+        this(pageSize, initialPageCount, codecSupplier, new DirectSlabPageAllocator());
+    }
+
+    public Slab(final short pageSize, final int initialPageCount, final Supplier<T> codecSupplier,
+                final SlabPageAllocator pageAllocator) {
+        this(pageSize, initialPageCount, codecSupplier, pageAllocator, SLAB_PAGE_LIVE_PADDING_SIZE, 1);
+    }
+
+    //Subclasses with a different slot header pass its size, records are padded so every slot starts aligned
+    protected Slab(final short pageSize, final int initialPageCount, final Supplier<T> codecSupplier,
+                   final SlabPageAllocator pageAllocator, final int slotHeaderSize, final int slotAlignment) {
+        this(pageSize, initialPageCount, codecSupplier, pageAllocator, slotHeaderSize, slotAlignment, 0);
+    }
+
+    //pageHeaderSize bytes in front of the first slot of every page are left to the page, e.g. for a live bitmap
+    protected Slab(final short pageSize, final int initialPageCount, final Supplier<T> codecSupplier,
+                   final SlabPageAllocator pageAllocator, final int slotHeaderSize, final int slotAlignment,
+                   final int pageHeaderSize) {
+        this.pageAllocator = pageAllocator;
+        this.slotHeaderSize = slotHeaderSize;
+        this.pageHeaderSize = pageHeaderSize;
         this.reusableCodec = codecSupplier.get();
         final short codecSize = reusableCodec.bufferSize();
         final short alignedPageElementCount = (short) BitUtil.findNextPositivePowerOfTwo(pageSize);
@@ -39,36 +89,69 @@ public class Slab<T extends Codec> {
         }
         this.shiftCount = shiftCount;
 
-        this.singlePageSize = alignedPageElementCount * (codecSize + SLAB_PAGE_LIVE_PADDING_SIZE);
-        final UnsafeBuffer unsafeBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(
-                initialPageCount * singlePageSize));
-        this.cleanPageIndices = new IntArrayQueue(Math.max(initialPageCount, IntArrayQueue.MIN_CAPACITY), -1);
-        this.pages = new SlabPage[initialPageCount];
-        for (int i = 0; i < initialPageCount; i++) {
-            addPage(unsafeBuffer, i * singlePageSize, i);
+        this.unitSize = BitUtil.align(codecSize + slotHeaderSize, slotAlignment);
+        this.singlePageSize = pageHeaderSize + alignedPageElementCount * unitSize;
+        final int recoveredPageCount = pageAllocator.recoveredPageCount(singlePageSize, unitSize);
+        final int pageCount = Math.max(initialPageCount, recoveredPageCount);
+        final MutableDirectBuffer buffer = pageAllocator.allocate(0, pageCount, singlePageSize);
+        this.cleanPageIndices = new IntArrayQueue(Math.max(pageCount, IntArrayQueue.MIN_CAPACITY), -1);
+        this.pages = new SlabPage[pageCount];
+        this.sharedBlockPageCount = pageCount;
+        for (int i = 0; i < pageCount; i++) {
+            addPage(buffer, i * singlePageSize, i, i < recoveredPageCount);
+        }
+        if (cleanPageIndices.isEmpty()) {
+            addPage();
         }
         this.cursor = new Cursor<>(alignedPageElementCount, cleanPageIndices, this::addPage, pages);
     }
 
+    //Grows the page directory up front so later page additions never copy it on the writer thread
+    public void reserveDirectoryCapacity(final int pageCount) {
+        if (pageCount > pages.length) {
+            final SlabPage<T>[] newPages = new SlabPage[pageCount];
+            System.arraycopy(pages, 0, newPages, 0, pages.length);
+            PAGES.setRelease(this, newPages);
+            this.cursor.setPages(pages);
+        }
+    }
+
     private void addPage() {
-        final UnsafeBuffer buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(singlePageSize));
+        if (!releasedPageIndices.isEmpty()) {
+            final int pageIndex = releasedPageIndices.popInt();
+            addPage(pageAllocator.allocate(pageIndex, 1, singlePageSize), 0, pageIndex, false);
+            return;
+        }
+        final MutableDirectBuffer buffer = pageAllocator.allocate(activePagesCount, 1, singlePageSize);
         if (activePagesCount + 1 > pages.length) {
-            final SlabPage<T>[] newPages = new SlabPage[pages.length * 2];
+            final SlabPage<T>[] newPages = new SlabPage[Math.max(pages.length * 2, 1)];
             System.arraycopy(pages, 0, newPages, 0, pages.length);
-            pages = newPages;
-            this.cursor.setPages(pages);
+            PAGES.setRelease(this, newPages);
+            //Recovery can grow the directory before the cursor exists, the cursor then picks up the new array
+            if (this.cursor != null) {
+                this.cursor.setPages(pages);
+            }
         }
-        addPage(buffer, 0, activePagesCount);
+        addPage(buffer, 0, activePagesCount, false);
     }
 
-    private void addPage(final MutableDirectBuffer buffer, final int offset, final int index) {
+    private void addPage(final MutableDirectBuffer buffer, final int offset, final int index,
+                         final boolean isRecovered) {
         final UnsafeBuffer newBuffer = new UnsafeBuffer(buffer, offset, singlePageSize);
-        final SlabPage<T> slabPage = new SlabPage<>(newBuffer, reusableCodec.bufferSize(), activePagesCount);
-        pages[index] = slabPage;
-        activePagesCount++;
+        final SlabPage<T> slabPage = newPage(newBuffer, index);
+        PAGES_ARRAY.setRelease(pages, index, slabPage);
+        activePagesCount = Math.max(activePagesCount, index + 1);
+        //Recovered pages holding live records stay out of the clean queue until their last record is removed
+        if (isRecovered && slabPage.recoverLiveCount() != 0) {
+            return;
+        }
         this.cleanPageIndices.addInt(index);
     }
 
+    protected SlabPage<T> newPage(final UnsafeBuffer buffer, final int pageIndex) {
+        return new SlabPage<>(buffer, reusableCodec.bufferSize(), pageIndex, slotHeaderSize, unitSize);
+    }
+
     public int create(final T codec) {
         cursor.wrapAtCursor(codec);
         final int newIndex = cursor.getCursorIndex();
@@ -76,6 +159,20 @@ public class Slab<T extends Codec> {
         return newIndex;
     }
 
+    //Creates count records, a page's worth of slots at a time, and passes each new handle to the consumer.
+    //Read the records through getAt, the consumer runs after the whole run on a page has been created.
+    public void createBatch(final int count, final IntConsumer consumer) {
+        int remaining = count;
+        while (remaining > 0) {
+            final int first = cursor.getCursorIndex();
+            final int run = cursor.createRun(remaining);
+            for (int i = 0; i < run; i++) {
+                consumer.accept(handleOf(first + i));
+            }
+            remaining -= run;
+        }
+    }
+
     public void getAt(final int index, final T codec) {
         final var inPageIndex = index & inPageIndexMask;
         final var pageIndex = index >> shiftCount;
@@ -83,6 +180,13 @@ public class Slab<T extends Codec> {
         page.getAt(inPageIndex, codec);
     }
 
+    public void getBatch(final int[] indices, final T[] codecs, final int count) {
+        for (int i = 0; i < count; i++) {
+            final int index = indices[i];
+            pages[index >> shiftCount].getAt(index & inPageIndexMask, codecs[i]);
+        }
+    }
+
     public T get(final int index) {
         final var inPageIndex = index & inPageIndexMask;
         final var pageIndex = index >> shiftCount;
@@ -106,6 +210,11 @@ public class Slab<T extends Codec> {
     }
 
     public void removeAt(final int index) {
+        removeIndex(index);
+    }
+
+    //Raw slab index counterpart of removeAt, for slabs whose public handles encode more than the index
+    protected void removeIndex(final int index) {
         final var inPageIndex = index & inPageIndexMask;
         final var pageIndex = index >> shiftCount;
         final var page = pages[pageIndex];
@@ -116,10 +225,227 @@ public class Slab<T extends Codec> {
         freePage(page);
     }
 
+    //Visits the handle of every live record in index order, skipping empty pages by their live count.
+    //Writer thread only, the visited record may be removed from the consumer.
+    public void forEachLive(final IntConsumer consumer) {
+        final int pageCount = activePagesCount;
+        for (int pageIndex = 0; pageIndex < pageCount; pageIndex++) {
+            final SlabPage<T> page = pages[pageIndex];
+            if (page == null) {
+                continue;
+            }
+            final int pageBase = pageIndex << shiftCount;
+            int remaining = page.getLiveCount();
+            int slot = 0;
+            while (remaining-- > 0 && (slot = page.nextLiveIndex(slot)) >= 0) {
+                consumer.accept(handleOf(pageBase | slot));
+                slot++;
+            }
+        }
+    }
+
+    //Same walk as forEachLive(IntConsumer), wrapping the flyweight over each live record
+    public void forEachLive(final T flyweight, final Consumer<? super T> consumer) {
+        final int pageCount = activePagesCount;
+        for (int pageIndex = 0; pageIndex < pageCount; pageIndex++) {
+            final SlabPage<T> page = pages[pageIndex];
+            if (page == null) {
+                continue;
+            }
+            int remaining = page.getLiveCount();
+            int slot = 0;
+            while (remaining-- > 0 && (slot = page.nextLiveIndex(slot)) >= 0) {
+                page.getAt(slot, flyweight);
+                consumer.accept(flyweight);
+                slot++;
+            }
+        }
+    }
+
+    //Keep the iterator and reset it between sweeps, iterating allocates nothing
+    public SlabLiveIterator<T> liveIterator() {
+        return new SlabLiveIterator<>(this);
+    }
+
+    //Splits on page boundaries for parallel sweeps, the slab must not be written while it is in use
+    public Spliterator.OfInt liveSpliterator() {
+        return new SlabSpliterator<>(this);
+    }
+
+    //Call .parallel() to fan the sweep out, consumers read through their own flyweights rather than get()
+    public IntStream liveHandles() {
+        return StreamSupport.intStream(liveSpliterator(), false);
+    }
+
+    //Removes the first count indices. Consecutive indices on the same page update that page's counter once,
+    //so callers removing in index order get the most out of it.
+    public void removeBatch(final int[] indices, final int count) {
+        int from = 0;
+        while (from < count) {
+            final int pageIndex = indices[from] >> shiftCount;
+            int to = from + 1;
+            while (to < count && indices[to] >> shiftCount == pageIndex) {
+                to++;
+            }
+            final SlabPage<T> page = pages[pageIndex];
+            if (page.removeBatch(indices, from, to, inPageIndexMask) != 0 && page.getLiveCount() == 0 &&
+                    page != cursor.getCurrentPage()) {
+                freePage(page);
+            }
+            from = to;
+        }
+    }
+
     private void freePage(final SlabPage<T> slabPage) {
+        if (cleanPageIndices.size() >= maxRetainedCleanPages && releasePage(slabPage)) {
+            return;
+        }
         if (RESET_BUFFER) {
             slabPage.cleanPage();
         }
         cleanPageIndices.addInt(slabPage.getPageIndex());
     }
+
+    //Clean pages beyond this many are handed back to the allocator as they empty
+    public void setMaxRetainedCleanPages(final int maxRetainedCleanPages) {
+        if (maxRetainedCleanPages < 0) {
+            throw new IllegalArgumentException("Max retained clean pages must not be negative: " +
+                    maxRetainedCleanPages);
+        }
+        this.maxRetainedCleanPages = maxRetainedCleanPages;
+    }
+
+    //Trims the clean queue down to the retention limit now, e.g. after a burst. Returns the pages released.
+    public int releaseExcessCleanPages() {
+        int released = 0;
+        int remaining = cleanPageIndices.size();
+        while (remaining-- > 0 && cleanPageIndices.size() > maxRetainedCleanPages) {
+            final int pageIndex = cleanPageIndices.pollInt();
+            if (releasePage(pages[pageIndex])) {
+                released++;
+            } else {
+                cleanPageIndices.addInt(pageIndex);
+            }
+        }
+        return released;
+    }
+
+    public int getResidentPageCount() {
+        return activePagesCount - releasedPageIndices.size();
+    }
+
+    private boolean releasePage(final SlabPage<T> slabPage) {
+        if (!isReleasable(slabPage)) {
+            return false;
+        }
+        final int pageIndex = slabPage.getPageIndex();
+        PAGES_ARRAY.setRelease(pages, pageIndex, null);
+        if (!pageAllocator.release(slabPage.getPageBuffer())) {
+            PAGES_ARRAY.setRelease(pages, pageIndex, slabPage);
+            return false;
+        }
+        releasedPageIndices.addInt(pageIndex);
+        return true;
+    }
+
+    //Slabs whose readers or handles depend on slot headers outliving the page override this to keep their pages
+    protected boolean isReleasable(final SlabPage<T> slabPage) {
+        return slabPage.getPageIndex() >= sharedBlockPageCount;
+    }
+
+    //Acquiring counterpart of the page publication in addPage, for threads other than the writer
+    @SuppressWarnings("unchecked")
+    protected SlabPage<T> getPageAcquire(final int index) {
+        final SlabPage<T>[] pages = (SlabPage<T>[]) PAGES.getAcquire(this);
+        return (SlabPage<T>) PAGES_ARRAY.getAcquire(pages, index >> shiftCount);
+    }
+
+    //Handle handed to iteration callbacks for a slab index, subclasses encoding more into handles override this
+    protected int handleOf(final int index) {
+        return index;
+    }
+
+    //Moves the live record at a raw slab index into a new slot at the cursor and returns the new raw index.
+    //The old slot stays live until removeIndex, so indexes can be patched while both copies exist.
+    protected int relocateRecord(final int fromIndex) {
+        cursor.wrapAtCursor(reusableCodec);
+        final int toIndex = cursor.getCursorIndex();
+        cursor.incrementCursor();
+        pages[fromIndex >> shiftCount].copyRecordTo(fromIndex & inPageIndexMask, pages[toIndex >> shiftCount],
+                toIndex & inPageIndexMask);
+        return toIndex;
+    }
+
+    //Inverse of handleOf
+    protected int indexOf(final int handle) {
+        return handle;
+    }
+
+    protected int inPageIndex(final int index) {
+        return index & inPageIndexMask;
+    }
+
+    protected int pageIndexOf(final int index) {
+        return index >> shiftCount;
+    }
+
+    protected int getShiftCount() {
+        return shiftCount;
+    }
+
+    protected int getUnitSize() {
+        return unitSize;
+    }
+
+    protected int getPageHeaderSize() {
+        return pageHeaderSize;
+    }
+
+    protected T getReusableCodec() {
+        return reusableCodec;
+    }
+
+    protected int getPageCount() {
+        return activePagesCount;
+    }
+
+    //Null for a released page
+    protected SlabPage<T> getPage(final int pageIndex) {
+        return pages[pageIndex];
+    }
+
+    protected int getSinglePageSize() {
+        return singlePageSize;
+    }
+
+    protected IntArrayQueue getCleanPageIndices() {
+        return cleanPageIndices;
+    }
+
+    protected Cursor<T> getCursor() {
+        return cursor;
+    }
+
+    protected IntArrayList getReleasedPageIndices() {
+        return releasedPageIndices;
+    }
+
+    //Also refills any released pages below pageCount
+    protected void ensurePageCount(final int pageCount) {
+        for (int i = releasedPageIndices.size() - 1; i >= 0; i--) {
+            final int pageIndex = releasedPageIndices.getInt(i);
+            if (pageIndex < pageCount) {
+                releasedPageIndices.fastUnorderedRemove(i);
+                addPage(pageAllocator.allocate(pageIndex, 1, singlePageSize), 0, pageIndex, false);
+            }
+        }
+        while (activePagesCount < pageCount) {
+            addPage();
+        }
+    }
+
+    @Override
+    public void close() {
+        pageAllocator.close();
+    }
 }
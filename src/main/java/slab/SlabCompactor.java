@@ -0,0 +1,116 @@
+package slab;
+
+//Incremental defragmenter for a single writer Slab. Each call moves a bounded number of live records out of
+//sparse pages into the cursor page, reporting every move so key stores and other indexes can be patched, and the
+//source page goes back to the clean queue through the usual removeAt path once its last record has left.
+//Runs on the writer thread between events, never concurrently with it.
+public class SlabCompactor<T extends Codec> {
+
+    private static final int DEADLINE_CHECK_INTERVAL = 16;
+
+    private final Slab<T> slab;
+    private final RelocationListener relocationListener;
+    private final SlabJournal<T> journal;
+    private final int sparseLiveCount;
+    private final int pageElementCount;
+
+    private SlabPage<T> sourcePage;
+    private int sourceInPageIndex;
+    private int nextScanPageIndex;
+    private long relocatedCount;
+
+    //Pages at or below sparseFraction of their capacity are candidates
+    public SlabCompactor(final Slab<T> slab, final RelocationListener relocationListener,
+                         final float sparseFraction) {
+        this(slab, relocationListener, sparseFraction, null);
+    }
+
+    //Every move is also logged to the journal, so replaying it reproduces the compacted indices
+    public SlabCompactor(final Slab<T> slab, final RelocationListener relocationListener,
+                         final float sparseFraction, final SlabJournal<T> journal) {
+        if (sparseFraction <= 0 || sparseFraction >= 1) {
+            throw new IllegalArgumentException("Sparse fraction must be between 0 and 1: " + sparseFraction);
+        }
+        this.slab = slab;
+        this.relocationListener = relocationListener;
+        this.journal = journal;
+        this.pageElementCount = slab.getCursor().pageElementCount;
+        this.sparseLiveCount = Math.max(1, (int) (pageElementCount * sparseFraction));
+    }
+
+    //Moves at most maxMoves records, stopping early once timeBudgetNanos has elapsed. Returns the number moved.
+    public int compact(final int maxMoves, final long timeBudgetNanos) {
+        final long deadline = System.nanoTime() + timeBudgetNanos;
+        int moves = 0;
+        int steps = 0;
+        while (moves < maxMoves) {
+            if (!isSourceUsable() && !selectSourcePage()) {
+                break;
+            }
+            if (++steps % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline >= 0) {
+                break;
+            }
+            final int inPageIndex = sourceInPageIndex++;
+            if (!sourcePage.isLiveAt(inPageIndex)) {
+                continue;
+            }
+            relocate(sourcePage, inPageIndex);
+            moves++;
+        }
+        relocatedCount += moves;
+        return moves;
+    }
+
+    public long getRelocatedCount() {
+        return relocatedCount;
+    }
+
+    private void relocate(final SlabPage<T> page, final int inPageIndex) {
+        //The move runs on raw indices, the listener and the journal see the slab's public handles for both slots
+        final int fromIndex = page.getPageIndex() * pageElementCount + inPageIndex;
+        final int fromHandle = slab.handleOf(fromIndex);
+        final int toHandle = slab.handleOf(slab.relocateRecord(fromIndex));
+        if (journal != null) {
+            journal.logRelocate(fromHandle, toHandle);
+        }
+        relocationListener.onRelocate(fromHandle, toHandle);
+        slab.removeIndex(fromIndex);
+    }
+
+    //A source drops out once scanned, emptied (it may already be back in the clean queue), picked up by the
+    //cursor or refilled past the threshold by the writer
+    private boolean isSourceUsable() {
+        return sourcePage != null && sourceInPageIndex < pageElementCount && isSparse(sourcePage);
+    }
+
+    private boolean selectSourcePage() {
+        sourcePage = null;
+        final int pageCount = slab.getPageCount();
+        for (int scanned = 0; scanned < pageCount; scanned++) {
+            final int pageIndex = nextScanPageIndex;
+            nextScanPageIndex = (nextScanPageIndex + 1) % pageCount;
+            final SlabPage<T> page = slab.getPage(pageIndex);
+            if (isSparse(page)) {
+                sourcePage = page;
+                sourceInPageIndex = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Released pages leave null holes in the directory
+    private boolean isSparse(final SlabPage<T> page) {
+        if (page == null) {
+            return false;
+        }
+        final int liveCount = page.getLiveCount();
+        return liveCount > 0 && liveCount <= sparseLiveCount && page != slab.getCursor().getCurrentPage();
+    }
+
+    //Both identifiers are what the slab hands out from create, generation-tagged handles on a GenerationalSlab
+    @FunctionalInterface
+    public interface RelocationListener {
+        void onRelocate(int fromIndex, int toIndex);
+    }
+}
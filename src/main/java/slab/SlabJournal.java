@@ -0,0 +1,288 @@
+package slab;
+
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+//Append-only write-ahead log of slab mutations, kept in fixed size memory-mapped segments of one file.
+//The writer only copies bytes into the mapped segment and bumps its position; a background thread
+//forces everything written since the last flush in one go (group commit) and maps the next segment ahead of time.
+//Record layout: [int length][int type][int slabIndex][int fieldOffset][payload], aligned to 4 bytes.
+//Relocations carry the destination in the fieldOffset word and no payload.
+//The length is written last, so a record is only visible to replay once it is complete.
+public class SlabJournal<T extends Codec> implements AutoCloseable {
+
+    private static final long MAGIC = 0x534C41424A524E4CL;
+    private static final int FILE_HEADER_SIZE = 64;
+    private static final int SEGMENT_SIZE_OFFSET = 8;
+
+    private static final int LENGTH_OFFSET = 0;
+    private static final int TYPE_OFFSET = 4;
+    private static final int SLAB_INDEX_OFFSET = 8;
+    private static final int FIELD_OFFSET_OFFSET = 12;
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final int RECORD_ALIGNMENT = 4;
+    private static final int PADDING_LENGTH = -1;
+
+    private static final int TYPE_CREATE = 1;
+    private static final int TYPE_UPDATE = 2;
+    private static final int TYPE_REMOVE = 3;
+    private static final int TYPE_RELOCATE = 4;
+
+    private final FileChannel fileChannel;
+    private final int segmentSize;
+    private final CopyOnWriteArrayList<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private final UnsafeBuffer segmentBuffer = new UnsafeBuffer(0, 0);
+    private final AtomicLong position = new AtomicLong();
+    private final AtomicLong flushedPosition = new AtomicLong();
+    private final Thread flusherThread;
+    private final long flushIntervalNanos;
+
+    private int segmentIndex;
+    private int segmentOffset;
+    private volatile boolean isRunning = true;
+
+    public SlabJournal(final Path path, final int segmentSize) {
+        this(path, segmentSize, TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    public SlabJournal(final Path path, final int segmentSize, final long flushIntervalNanos) {
+        if ((segmentSize & (RECORD_ALIGNMENT - 1)) != 0 || segmentSize <= FILE_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size must be a multiple of " + RECORD_ALIGNMENT +
+                    " and larger than " + FILE_HEADER_SIZE);
+        }
+        this.segmentSize = segmentSize;
+        this.flushIntervalNanos = flushIntervalNanos;
+        try {
+            this.fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            final long existingSegments = (fileChannel.size() + segmentSize - 1) / segmentSize;
+            for (int i = 0; i < Math.max(1, existingSegments); i++) {
+                mapSegment(i);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        final UnsafeBuffer fileHeader = new UnsafeBuffer(segments.get(0));
+        if (fileHeader.getLong(0) != MAGIC) {
+            fileHeader.putInt(SEGMENT_SIZE_OFFSET, segmentSize);
+            fileHeader.putLong(0, MAGIC);
+        } else if (fileHeader.getInt(SEGMENT_SIZE_OFFSET) != segmentSize) {
+            throw new IllegalStateException("Journal segment size " + fileHeader.getInt(SEGMENT_SIZE_OFFSET) +
+                    " does not match requested segment size " + segmentSize);
+        }
+
+        scan(null);
+        segments.forEach(MappedByteBuffer::force);
+        this.flushedPosition.set(position.get());
+
+        this.flusherThread = new Thread(this::runFlusher, "slab-journal-flusher");
+        this.flusherThread.setDaemon(true);
+        this.flusherThread.start();
+    }
+
+    public void logCreate(final int slabIndex, final T codec) {
+        append(TYPE_CREATE, slabIndex, 0, codec.buffer(), codec.bufferSize());
+    }
+
+    //Logs fieldLength bytes of the record starting at fieldOffset, after they were updated in place
+    public void logUpdate(final int slabIndex, final T codec, final int fieldOffset, final int fieldLength) {
+        append(TYPE_UPDATE, slabIndex, fieldOffset, codec.buffer(), fieldLength);
+    }
+
+    public void logRemove(final int slabIndex) {
+        append(TYPE_REMOVE, slabIndex, 0, null, 0);
+    }
+
+    //Logs a compactor move, replay repeats it so the indices created after it still line up
+    public void logRelocate(final int fromIndex, final int toIndex) {
+        append(TYPE_RELOCATE, fromIndex, toIndex, null, 0);
+    }
+
+    private void append(final int type, final int slabIndex, final int fieldOffset,
+                        final DirectBuffer source, final int payloadLength) {
+        final int length = RECORD_HEADER_SIZE + payloadLength;
+        final int alignedLength = BitUtil.align(length, RECORD_ALIGNMENT);
+        if (segmentOffset + alignedLength > segmentSize) {
+            rollSegment(alignedLength);
+        }
+        final int offset = segmentOffset;
+        segmentBuffer.putInt(offset + TYPE_OFFSET, type);
+        segmentBuffer.putInt(offset + SLAB_INDEX_OFFSET, slabIndex);
+        segmentBuffer.putInt(offset + FIELD_OFFSET_OFFSET, fieldOffset);
+        if (payloadLength != 0) {
+            segmentBuffer.putBytes(offset + RECORD_HEADER_SIZE, source, fieldOffset, payloadLength);
+        }
+        segmentBuffer.putIntOrdered(offset + LENGTH_OFFSET, length);
+        segmentOffset += alignedLength;
+        position.lazySet((long) segmentIndex * segmentSize + segmentOffset);
+    }
+
+    private void rollSegment(final int alignedLength) {
+        if (alignedLength > segmentSize) {
+            throw new IllegalArgumentException("Record of " + alignedLength +
+                    " bytes does not fit a journal segment of " + segmentSize);
+        }
+        if (segmentOffset < segmentSize) {
+            segmentBuffer.putIntOrdered(segmentOffset + LENGTH_OFFSET, PADDING_LENGTH);
+        }
+        //The flusher normally maps the next segment ahead of time, this only maps when it fell behind
+        mapSegment(segmentIndex + 1);
+        moveToSegment(segmentIndex + 1, 0);
+    }
+
+    private void moveToSegment(final int segmentIndex, final int segmentOffset) {
+        this.segmentIndex = segmentIndex;
+        this.segmentOffset = segmentOffset;
+        this.segmentBuffer.wrap(segments.get(segmentIndex));
+    }
+
+    private synchronized void mapSegment(final int index) {
+        if (index < segments.size()) {
+            return;
+        }
+        try {
+            segments.add(fileChannel.map(FileChannel.MapMode.READ_WRITE, (long) index * segmentSize, segmentSize));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //Replays every complete record into a freshly constructed slab, configured like the one that was journaled
+    public int replay(final Slab<T> slab) {
+        return scan(slab);
+    }
+
+    private int scan(final Slab<T> slab) {
+        final UnsafeBuffer readBuffer = new UnsafeBuffer(0, 0);
+        int recordCount = 0;
+        int readSegment = 0;
+        int readOffset = FILE_HEADER_SIZE;
+        readBuffer.wrap(segments.get(readSegment));
+        while (true) {
+            final int length = readOffset < segmentSize ? readBuffer.getIntVolatile(readOffset + LENGTH_OFFSET) : 0;
+            if (length == PADDING_LENGTH || (readOffset == segmentSize && readSegment + 1 < segments.size())) {
+                readSegment++;
+                readOffset = 0;
+                readBuffer.wrap(segments.get(readSegment));
+                continue;
+            }
+            if (length == 0) {
+                break;
+            }
+            if (slab != null) {
+                apply(slab, readBuffer, readOffset, length);
+            }
+            recordCount++;
+            readOffset += BitUtil.align(length, RECORD_ALIGNMENT);
+        }
+        if (slab == null) {
+            moveToSegment(readSegment, readOffset);
+            position.set((long) readSegment * segmentSize + readOffset);
+        }
+        return recordCount;
+    }
+
+    private void apply(final Slab<T> slab, final UnsafeBuffer readBuffer, final int offset, final int length) {
+        final int slabIndex = readBuffer.getInt(offset + SLAB_INDEX_OFFSET);
+        final int fieldOffset = readBuffer.getInt(offset + FIELD_OFFSET_OFFSET);
+        final int payloadLength = length - RECORD_HEADER_SIZE;
+        switch (readBuffer.getInt(offset + TYPE_OFFSET)) {
+            case TYPE_CREATE -> {
+                final T codec = slab.getReusableCodec();
+                final int createdIndex = slab.create(codec);
+                if (createdIndex != slabIndex) {
+                    throw new IllegalStateException("Replay created index " + createdIndex +
+                            " but the journal recorded " + slabIndex);
+                }
+                codec.buffer().putBytes(0, readBuffer, offset + RECORD_HEADER_SIZE, payloadLength);
+            }
+            case TYPE_UPDATE -> slab.get(slabIndex).buffer()
+                    .putBytes(fieldOffset, readBuffer, offset + RECORD_HEADER_SIZE, payloadLength);
+            case TYPE_REMOVE -> slab.removeAt(slabIndex);
+            case TYPE_RELOCATE -> {
+                final int fromIndex = slab.indexOf(slabIndex);
+                final int relocatedIndex = slab.handleOf(slab.relocateRecord(fromIndex));
+                if (relocatedIndex != fieldOffset) {
+                    throw new IllegalStateException("Replay relocated " + slabIndex + " to " + relocatedIndex +
+                            " but the journal recorded " + fieldOffset);
+                }
+                slab.removeIndex(fromIndex);
+            }
+            default -> throw new IllegalStateException("Unknown journal record type at offset " + offset);
+        }
+    }
+
+    public long getPosition() {
+        return position.get();
+    }
+
+    //Everything below this position has been forced to storage
+    public long getFlushedPosition() {
+        return flushedPosition.get();
+    }
+
+    private void runFlusher() {
+        while (isRunning) {
+            flush();
+            if (segments.size() <= segmentIndexOf(position.get()) + 1) {
+                mapSegment(segments.size());
+            }
+            LockSupport.parkNanos(flushIntervalNanos);
+        }
+    }
+
+    private void flush() {
+        final long writePosition = position.get();
+        long flushed = flushedPosition.get();
+        while (flushed < writePosition) {
+            final int index = segmentIndexOf(flushed);
+            final int from = (int) (flushed - (long) index * segmentSize);
+            final int to = (int) Math.min(segmentSize, writePosition - (long) index * segmentSize);
+            segments.get(index).force(from, to - from);
+            flushed = (long) index * segmentSize + to;
+            if (to == segmentSize) {
+                continue;
+            }
+            break;
+        }
+        flushedPosition.set(flushed);
+    }
+
+    private int segmentIndexOf(final long position) {
+        return (int) (position / segmentSize);
+    }
+
+    @Override
+    public void close() {
+        isRunning = false;
+        LockSupport.unpark(flusherThread);
+        try {
+            flusherThread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        for (final MappedByteBuffer segment : segments) {
+            IoUtil.unmap(segment);
+        }
+        try {
+            fileChannel.close();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
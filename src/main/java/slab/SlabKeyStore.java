@@ -4,28 +4,61 @@ import org.agrona.BitUtil;
 import org.agrona.DirectBuffer;
 import org.agrona.collections.Hashing;
 import org.agrona.concurrent.UnsafeBuffer;
+import utils.ProbeMode;
+import utils.SpareTable;
 
 import java.nio.ByteBuffer;
+import java.util.function.IntConsumer;
 
-public class SlabKeyStore<T extends Codec> {
+public class SlabKeyStore<T extends Codec> implements AutoCloseable {
 
     private final UnsafeBuffer buffer;
     private final float loadFactor;
     private final Slab<T> slab;
+    private final boolean isRobinHood;
 
     private int capacity;
     private int nextResizeLimit;
     private int size;
 
     private static final int MISSING_VALUE = -1;
+    private static final long MISSING_SLOT = -1L;
+    //Left behind in the old table by removals during a migration so its probe chains stay connected
+    private static final long REMOVED_SLOT = -2L;
+    //Each slot keeps the key's hash code next to the slab index so probes and resizes never touch the slab
+    protected static final int SLOT_SIZE = Long.BYTES;
+
+    //Lookups per group in getKeys, enough independent misses to fill the core's outstanding load slots
+    private static final int LOOKUP_GROUP_SIZE = 16;
+    private final int[] groupHashes = new int[LOOKUP_GROUP_SIZE];
+    private final long[] groupSlots = new long[LOOKUP_GROUP_SIZE];
+
+    //Incremental rehash state: old table slots below migrationIndex have moved to the new table
+    private int migrationStep;
+    private int activeMigrationStep;
+    private UnsafeBuffer oldBuffer;
+    private int oldCapacity;
+    private int migrationIndex;
+    //Tables swapped in by incremental resizes are native and freed by close, the constructor's buffer is left to GC
+    private SpareTable table;
+    private SpareTable oldTable;
+    //The next doubled table, cleared clearStep bytes per insert and remove while the current one fills up
+    private SpareTable spareTable;
+    private int clearStep;
 
     public SlabKeyStore(final int capacity, final float loadFactor, final Slab<T> slab) {
+        this(capacity, loadFactor, slab, ProbeMode.LINEAR);
+    }
+
+    //In ROBIN_HOOD mode probe distances are derived from the stored hashes, so they cost no extra slot space
+    public SlabKeyStore(final int capacity, final float loadFactor, final Slab<T> slab, final ProbeMode probeMode) {
+        this.isRobinHood = probeMode == ProbeMode.ROBIN_HOOD;
         this.capacity = BitUtil.findNextPositivePowerOfTwo(capacity);
         this.loadFactor = loadFactor;
         this.nextResizeLimit = (int) (this.capacity * loadFactor);
         this.slab = slab;
 
-        this.buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(Integer.BYTES * this.capacity));
+        this.buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(SLOT_SIZE * this.capacity));
         this.buffer.setMemory(0, this.buffer.capacity(), (byte) MISSING_VALUE);
     }
 
@@ -37,92 +70,440 @@ public class SlabKeyStore<T extends Codec> {
         return size == 0;
     }
 
+    //With a step above 0 a resize swaps in a spare table cleared by earlier inserts and removes, keeps the old table
+    //and migrates at least that many of its slots on every insert and remove, lookups check both tables until it is
+    //drained. Each resize raises the step as far as needed to drain the old table before the next resize, so no
+    //insert moves or clears a whole table. 0 moves the whole table inside one insert.
+    public void setIncrementalRehash(final int migrationStep) {
+        if (migrationStep < 0) {
+            throw new IllegalArgumentException("Migration step must not be negative: " + migrationStep);
+        }
+        this.migrationStep = migrationStep;
+        if (migrationStep == 0) {
+            finishMigration();
+            closeSpareTable();
+        } else if (spareTable == null) {
+            reserveSpareTable();
+        }
+    }
+
+    public boolean isMigrating() {
+        return oldBuffer != null;
+    }
+
     public void insert(final int slabIndex, final T codec) {
+        advanceRehash();
         final int mask = this.capacity - 1;
-        int index = Hashing.hash(codec.keyHashCode(), mask);
-        int existingSlabIndex;
-        while ((existingSlabIndex = buffer.getInt(index << 2)) != -1) {
-            if (existingSlabIndex == slabIndex) {
+        final int keyHash = codec.keyHashCode();
+        if (oldBuffer != null && findOldIndex(keyHash, slabIndex) >= 0) {
+            return;
+        }
+        if (isRobinHood) {
+            final int distance = placeRobinHood(buffer, mask, slot(keyHash, slabIndex));
+            if (distance >= 0) {
+                size++;
+                if (size > nextResizeLimit ||
+                        (distance > ProbeMode.MAX_PROBE_DISTANCE && size >= capacity >>> 3 && canGrowEarly())) {
+                    rehash();
+                }
+            }
+            return;
+        }
+        int index = Hashing.hash(keyHash, mask);
+        long slot;
+        while (slabIndex(slot = buffer.getLong(index << 3)) != MISSING_VALUE) {
+            if (slabIndex(slot) == slabIndex) {
                 return;
             }
             index = ++index & mask;
         }
 
         size++;
-        buffer.putInt(index << 2, slabIndex);
+        buffer.putLong(index << 3, slot(keyHash, slabIndex));
         tryIncreaseCapacity();
     }
 
     public int getKey(final T codec) {
         final int mask = this.capacity - 1;
-        int index = Hashing.hash(codec.keyHashCode(), mask);
-        int existingSlabIndex;
-        while ((existingSlabIndex = buffer.getInt(index << 2)) != MISSING_VALUE) {
-            if (slab.equalsUnderlying(existingSlabIndex, codec)) {
-                return existingSlabIndex;
+        final int keyHash = codec.keyHashCode();
+        final int slabIndex = probe(Hashing.hash(keyHash, mask), mask, keyHash, codec);
+        return slabIndex == MISSING_VALUE && oldBuffer != null ? getOld(keyHash, codec) : slabIndex;
+    }
+
+    //Looks up the first count codecs, writing each slab index or -1 to out. Keys are taken a group at a time:
+    //the whole group is hashed, then its home slots are loaded, then the candidates are compared, so the
+    //cache misses of one stage are independent of each other and overlap instead of chaining per key.
+    public void getKeys(final T[] codecs, final int count, final int[] out) {
+        final int mask = this.capacity - 1;
+        final int[] groupHashes = this.groupHashes;
+        final long[] groupSlots = this.groupSlots;
+        for (int groupStart = 0; groupStart < count; groupStart += LOOKUP_GROUP_SIZE) {
+            final int groupSize = Math.min(LOOKUP_GROUP_SIZE, count - groupStart);
+            for (int i = 0; i < groupSize; i++) {
+                groupHashes[i] = codecs[groupStart + i].keyHashCode();
+            }
+            for (int i = 0; i < groupSize; i++) {
+                groupSlots[i] = buffer.getLong(Hashing.hash(groupHashes[i], mask) << 3);
+            }
+            for (int i = 0; i < groupSize; i++) {
+                final long slot = groupSlots[i];
+                final int keyHash = groupHashes[i];
+                final T codec = codecs[groupStart + i];
+                final int candidate = slabIndex(slot);
+                if (candidate == MISSING_VALUE ||
+                        (keyHash(slot) == keyHash && slab.equalsUnderlying(candidate, codec))) {
+                    out[groupStart + i] = candidate;
+                } else {
+                    out[groupStart + i] = probe((Hashing.hash(keyHash, mask) + 1) & mask, mask, keyHash, codec);
+                }
+                if (out[groupStart + i] == MISSING_VALUE && oldBuffer != null) {
+                    out[groupStart + i] = getOld(keyHash, codec);
+                }
+            }
+        }
+    }
+
+    //Slots whose stored hash differs are skipped without reading the slab
+    private int probe(final int startIndex, final int mask, final int keyHash, final T codec) {
+        final int index = findSlot(startIndex, mask, keyHash, codec);
+        return index < 0 ? MISSING_VALUE : slabIndex(buffer.getLong(index << 3));
+    }
+
+    private int findSlot(final int startIndex, final int mask, final int keyHash, final T codec) {
+        int index = startIndex;
+        int distance = (startIndex - Hashing.hash(keyHash, mask)) & mask;
+        long slot;
+        while (slabIndex(slot = buffer.getLong(index << 3)) != MISSING_VALUE) {
+            if (keyHash(slot) == keyHash && slab.equalsUnderlying(slabIndex(slot), codec)) {
+                return index;
+            }
+            if (isRobinHood && probeDistance(slot, index, mask) < distance) {
+                return -1;
             }
             index = ++index & mask;
+            distance++;
         }
-        return MISSING_VALUE;
+        return -1;
+    }
+
+    //Places the entry keeping runs ordered by probe distance. Returns the longest distance an entry was placed
+    //at, or -1 if the slab index was already present.
+    private static int placeRobinHood(final UnsafeBuffer table, final int mask, final long newSlot) {
+        long entry = newSlot;
+        int index = Hashing.hash(keyHash(entry), mask);
+        int distance = 0;
+        int longestDistance = 0;
+        boolean isDisplacing = false;
+        long existing;
+        while (slabIndex(existing = table.getLong(index << 3)) != MISSING_VALUE) {
+            if (!isDisplacing && slabIndex(existing) == slabIndex(entry)) {
+                return -1;
+            }
+            final int existingDistance = probeDistance(existing, index, mask);
+            if (existingDistance < distance) {
+                //The entry closer to home gives up its slot and carries on down the run
+                table.putLong(index << 3, entry);
+                longestDistance = Math.max(longestDistance, distance);
+                entry = existing;
+                distance = existingDistance;
+                isDisplacing = true;
+            }
+            index = ++index & mask;
+            distance++;
+        }
+        table.putLong(index << 3, entry);
+        return Math.max(longestDistance, distance);
+    }
+
+    private static int probeDistance(final long slot, final int index, final int mask) {
+        return (index - Hashing.hash(keyHash(slot), mask)) & mask;
+    }
+
+    //Longest distance of any entry from its home slot, scans the table so not for the hot path
+    public int getMaxProbeDistance() {
+        final int mask = capacity - 1;
+        int maxDistance = 0;
+        for (int i = 0; i < capacity; i++) {
+            final long slot = buffer.getLong(i << 3);
+            if (slabIndex(slot) != MISSING_VALUE) {
+                maxDistance = Math.max(maxDistance, probeDistance(slot, i, mask));
+            }
+        }
+        return maxDistance;
     }
 
     public int removeCodec(final T codec) {
+        advanceRehash();
+        final int mask = this.capacity - 1;
+        final int keyHash = codec.keyHashCode();
+        final int index = findSlot(Hashing.hash(keyHash, mask), mask, keyHash, codec);
+        if (index < 0) {
+            return oldBuffer != null ? removeOld(findOld(keyHash, codec)) : MISSING_VALUE;
+        }
+        final int slabIndex = slabIndex(buffer.getLong(index << 3));
+        removeSlot(index);
+        return slabIndex;
+    }
+
+    public boolean removeAt(final int slabIndex) {
+        advanceRehash();
         final int mask = this.capacity - 1;
-        int index = Hashing.hash(codec.keyHashCode(), mask);
-        int existingSlabIndex;
-        while ((existingSlabIndex = buffer.getInt(index << 2)) != MISSING_VALUE) {
-            if (slab.equalsUnderlying(existingSlabIndex, codec)) {
-                buffer.putInt(index << 2, MISSING_VALUE);
-                size--;
-                tryCompact(index);
-                return existingSlabIndex;
+        final int keyHash = slab.keyHashCode(slabIndex);
+        int index = Hashing.hash(keyHash, mask);
+        int distance = 0;
+        long slot;
+        while (slabIndex(slot = buffer.getLong(index << 3)) != MISSING_VALUE) {
+            if (slabIndex(slot) == slabIndex) {
+                removeSlot(index);
+                return true;
+            }
+            if (isRobinHood && probeDistance(slot, index, mask) < distance) {
+                break;
             }
             index = ++index & mask;
+            distance++;
         }
-        return MISSING_VALUE;
+        return oldBuffer != null && removeOld(findOldIndex(keyHash, slabIndex)) != MISSING_VALUE;
     }
 
-    public boolean removeAt(final int slabIndex) {
+    private void removeSlot(final int index) {
+        size--;
+        if (isRobinHood) {
+            shiftBack(index);
+        } else {
+            buffer.putLong(index << 3, MISSING_SLOT);
+            tryCompact(index);
+        }
+    }
+
+    //Robin Hood deletion: the rest of the run moves back one slot until an empty slot or an entry already home
+    private void shiftBack(int index) {
+        final int mask = capacity - 1;
+        int next = (index + 1) & mask;
+        long slot;
+        while (slabIndex(slot = buffer.getLong(next << 3)) != MISSING_VALUE &&
+                probeDistance(slot, next, mask) != 0) {
+            buffer.putLong(index << 3, slot);
+            index = next;
+            next = (next + 1) & mask;
+        }
+        buffer.putLong(index << 3, MISSING_SLOT);
+    }
+
+    //Repoints the entry of a record the compactor moved, the key bytes at toIndex are the same as at fromIndex
+    public boolean relocate(final int fromIndex, final int toIndex) {
         final int mask = this.capacity - 1;
-        int index = Hashing.hash(slab.keyHashCode(slabIndex), mask);
-        int existingSlabIndex;
-        while ((existingSlabIndex = buffer.getInt(index << 2)) != MISSING_VALUE) {
-            if (existingSlabIndex == slabIndex) {
-                buffer.putInt(index << 2, MISSING_VALUE);
-                size--;
-                tryCompact(index);
+        final int keyHash = slab.keyHashCode(toIndex);
+        int index = Hashing.hash(keyHash, mask);
+        int distance = 0;
+        long slot;
+        while (slabIndex(slot = buffer.getLong(index << 3)) != MISSING_VALUE) {
+            if (slabIndex(slot) == fromIndex) {
+                buffer.putLong(index << 3, slot(keyHash(slot), toIndex));
                 return true;
             }
+            if (isRobinHood && probeDistance(slot, index, mask) < distance) {
+                break;
+            }
             index = ++index & mask;
+            distance++;
+        }
+        if (oldBuffer != null) {
+            final int oldIndex = findOldIndex(keyHash, fromIndex);
+            if (oldIndex >= 0) {
+                oldBuffer.putLong(oldIndex << 3, slot(keyHash, toIndex));
+                return true;
+            }
         }
         return false;
     }
 
+    public void forEach(final IntConsumer consumer) {
+        for (int i = 0; i < capacity; i++) {
+            final int slabIndex = slabIndex(buffer.getLong(i << 3));
+            if (slabIndex != MISSING_VALUE) {
+                consumer.accept(slabIndex);
+            }
+        }
+        if (oldBuffer != null) {
+            for (int i = migrationIndex; i < oldCapacity; i++) {
+                final int slabIndex = slabIndex(oldBuffer.getLong(i << 3));
+                if (slabIndex >= 0) {
+                    consumer.accept(slabIndex);
+                }
+            }
+        }
+    }
+
+    //The old table is only probed linearly: Robin Hood tables are valid linear probing tables too, and slots
+    //that were migrated or removed are skipped without ending the probe
+    private int findOld(final int keyHash, final T codec) {
+        final int mask = oldCapacity - 1;
+        int index = Hashing.hash(keyHash, mask);
+        long slot;
+        while (slabIndex(slot = oldBuffer.getLong(index << 3)) != MISSING_VALUE) {
+            if (index >= migrationIndex && slabIndex(slot) >= 0 && keyHash(slot) == keyHash &&
+                    slab.equalsUnderlying(slabIndex(slot), codec)) {
+                return index;
+            }
+            index = ++index & mask;
+        }
+        return -1;
+    }
+
+    private int findOldIndex(final int keyHash, final int slabIndex) {
+        final int mask = oldCapacity - 1;
+        int index = Hashing.hash(keyHash, mask);
+        long slot;
+        while (slabIndex(slot = oldBuffer.getLong(index << 3)) != MISSING_VALUE) {
+            if (index >= migrationIndex && slabIndex(slot) == slabIndex) {
+                return index;
+            }
+            index = ++index & mask;
+        }
+        return -1;
+    }
+
+    private int getOld(final int keyHash, final T codec) {
+        final int index = findOld(keyHash, codec);
+        return index < 0 ? MISSING_VALUE : slabIndex(oldBuffer.getLong(index << 3));
+    }
+
+    private int removeOld(final int index) {
+        if (index < 0) {
+            return MISSING_VALUE;
+        }
+        final int slabIndex = slabIndex(oldBuffer.getLong(index << 3));
+        oldBuffer.putLong(index << 3, REMOVED_SLOT);
+        size--;
+        return slabIndex;
+    }
+
+    private void migrate(final int slotCount) {
+        if (oldBuffer == null) {
+            return;
+        }
+        final int mask = capacity - 1;
+        final int end = (int) Math.min(oldCapacity, (long) migrationIndex + slotCount);
+        for (int i = migrationIndex; i < end; i++) {
+            final long slot = oldBuffer.getLong(i << 3);
+            if (slabIndex(slot) >= 0) {
+                place(buffer, mask, slot);
+            }
+        }
+        migrationIndex = end;
+        if (end == oldCapacity) {
+            dropOldTable();
+        }
+    }
+
+    private void finishMigration() {
+        migrate(oldCapacity);
+    }
+
+    private void advanceRehash() {
+        migrate(activeMigrationStep);
+        if (spareTable != null) {
+            spareTable.clear(clearStep);
+        }
+    }
+
+    //An early Robin Hood grow waits for the running migration and the spare table, so it never drains or clears
+    //a table inline either
+    private boolean canGrowEarly() {
+        return migrationStep == 0 || (oldBuffer == null && spareTable != null && spareTable.isCleared());
+    }
+
+    //Inserts left before the next size triggered resize
+    private int remainingInserts() {
+        return Math.max(1, nextResizeLimit - size);
+    }
+
+    private void reserveSpareTable() {
+        final long length = (long) capacity * 2 * SLOT_SIZE;
+        this.spareTable = SpareTable.allocate(length, (byte) MISSING_VALUE, false);
+        this.clearStep = (int) ((length + remainingInserts() - 1) / remainingInserts());
+    }
+
+    private void closeSpareTable() {
+        if (spareTable != null) {
+            spareTable.close();
+            spareTable = null;
+        }
+    }
+
+    private void dropOldTable() {
+        oldBuffer = null;
+        if (oldTable != null) {
+            oldTable.close();
+            oldTable = null;
+        }
+    }
+
     private void tryIncreaseCapacity() {
         if (size > nextResizeLimit) {
             rehash();
         }
     }
 
+    //Places entries by their stored hash, the slab is never read. Incremental mode has always drained the old
+    //table by the time the next resize comes, so finishMigration is only a safeguard there.
     private void rehash() {
+        finishMigration();
         final int oldCapacity = this.capacity;
         this.capacity <<= 1;
+        this.nextResizeLimit = (int) (this.capacity * loadFactor);
+        if (migrationStep > 0) {
+            swapInSpareTable(oldCapacity);
+            return;
+        }
 
-        final UnsafeBuffer newBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(capacity * Integer.BYTES));
+        final UnsafeBuffer newBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(capacity * SLOT_SIZE));
         newBuffer.setMemory(0, newBuffer.capacity(), (byte) MISSING_VALUE);
         final int mask = capacity - 1;
-        this.nextResizeLimit = (int) (this.capacity * loadFactor);
         for (int readIndex = 0; readIndex < oldCapacity; readIndex++) {
-            final int value = buffer.getInt(readIndex << 2);
-            if (value != MISSING_VALUE) {
-                int index = Hashing.hash(slab.keyHashCode(value), mask);
-                while (newBuffer.getInt(index << 2) != MISSING_VALUE) {
-                    index = ++index & mask;
-                }
-                newBuffer.putInt(index << 2, value);
+            final long slot = buffer.getLong(readIndex << 3);
+            if (slabIndex(slot) != MISSING_VALUE) {
+                place(newBuffer, mask, slot);
             }
         }
         this.buffer.wrap(newBuffer, 0, newBuffer.capacity());
+        if (table != null) {
+            table.close();
+            table = null;
+        }
+    }
+
+    //The migration step is raised so the old table drains within the inserts left before the next resize
+    private void swapInSpareTable(final int oldCapacity) {
+        if (spareTable == null || spareTable.length() != (long) capacity * SLOT_SIZE) {
+            closeSpareTable();
+            this.spareTable = SpareTable.allocate((long) capacity * SLOT_SIZE, (byte) MISSING_VALUE, false);
+        }
+        //A no-op unless the spare missed its clearing budget
+        spareTable.clearAll();
+        this.oldBuffer = new UnsafeBuffer(buffer);
+        this.oldTable = table;
+        this.oldCapacity = oldCapacity;
+        this.migrationIndex = 0;
+        this.table = spareTable;
+        this.spareTable = null;
+        this.buffer.wrap(table.address(), (int) table.length());
+        this.activeMigrationStep = Math.max(migrationStep,
+                (oldCapacity + remainingInserts() - 1) / remainingInserts());
+        reserveSpareTable();
+    }
+
+    private void place(final UnsafeBuffer table, final int mask, final long slot) {
+        if (isRobinHood) {
+            placeRobinHood(table, mask, slot);
+            return;
+        }
+        int index = Hashing.hash(keyHash(slot), mask);
+        while (slabIndex(table.getLong(index << 3)) != MISSING_VALUE) {
+            index = ++index & mask;
+        }
+        table.putLong(index << 3, slot);
     }
 
     private void tryCompact(int deleteIndex) {
@@ -131,27 +512,83 @@ public class SlabKeyStore<T extends Codec> {
 
         while (true) {
             index = ++index & mask;
-            final int newValue = buffer.getInt(index << 2);
-            if (newValue == MISSING_VALUE) {
+            final long newSlot = buffer.getLong(index << 3);
+            if (slabIndex(newSlot) == MISSING_VALUE) {
                 return;
             }
-            final int hash = Hashing.hash(slab.keyHashCode(newValue), mask);
+            final int hash = Hashing.hash(keyHash(newSlot), mask);
 
             if ((index < hash && (hash <= deleteIndex || deleteIndex <= index)) ||
                     (hash <= deleteIndex && deleteIndex <= index)) {
 
-                buffer.putInt(deleteIndex << 2, newValue);
-                buffer.putInt(index << 2, MISSING_VALUE);
+                buffer.putLong(deleteIndex << 3, newSlot);
+                buffer.putLong(index << 3, MISSING_SLOT);
                 deleteIndex = index;
             }
         }
     }
 
+    //Low half is the slab index, high half the key's unmixed hash code
+    private static long slot(final int keyHash, final int slabIndex) {
+        return (long) keyHash << 32 | (slabIndex & 0xFFFF_FFFFL);
+    }
+
+    private static int slabIndex(final long slot) {
+        return (int) slot;
+    }
+
+    private static int keyHash(final long slot) {
+        return (int) (slot >>> 32);
+    }
+
+    protected int capacity() {
+        return capacity;
+    }
+
+    protected ProbeMode getProbeMode() {
+        return isRobinHood ? ProbeMode.ROBIN_HOOD : ProbeMode.LINEAR;
+    }
+
+    protected UnsafeBuffer getBuffer() {
+        finishMigration();
+        return buffer;
+    }
+
+    //Sizes the table for a snapshot, the caller then fills the slot array directly without rehashing
+    protected void restore(final int capacity, final int size) {
+        this.capacity = capacity;
+        this.size = size;
+        this.nextResizeLimit = (int) (this.capacity * loadFactor);
+        dropOldTable();
+        if (this.buffer.capacity() != capacity * SLOT_SIZE) {
+            this.buffer.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(capacity * SLOT_SIZE)));
+            if (table != null) {
+                table.close();
+                table = null;
+            }
+        }
+        if (spareTable != null) {
+            closeSpareTable();
+            reserveSpareTable();
+        }
+    }
+
+    //Frees the native tables of incremental mode, the key store must not be used afterwards
+    @Override
+    public void close() {
+        dropOldTable();
+        closeSpareTable();
+        if (table != null) {
+            table.close();
+            table = null;
+        }
+    }
+
     public String printDataStore() {
         final StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append("[");
         for (int i = 0; i < capacity; i++) {
-            stringBuilder.append(buffer.getInt(i << 2));
+            stringBuilder.append(slabIndex(buffer.getLong(i << 3)));
             if (i != capacity - 1) {
                 stringBuilder.append(", ");
             }
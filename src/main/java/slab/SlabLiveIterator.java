@@ -0,0 +1,52 @@
+package slab;
+
+//Cursor over the live records of a slab: call next() until it returns false, reading the current record
+//through getHandle or getAt in between. reset() rewinds it so one instance serves every sweep.
+//Writer thread only, the current record may be removed before the next call to next().
+public class SlabLiveIterator<T extends Codec> {
+
+    private final Slab<T> slab;
+    private SlabPage<T> page;
+    private int pageIndex;
+    private int pageBase;
+    private int slot;
+    private int remaining;
+
+    public SlabLiveIterator(final Slab<T> slab) {
+        this.slab = slab;
+        reset();
+    }
+
+    public void reset() {
+        this.page = null;
+        this.pageIndex = -1;
+        this.slot = -1;
+        this.remaining = 0;
+    }
+
+    public boolean next() {
+        while (true) {
+            if (remaining > 0 && (slot = page.nextLiveIndex(slot + 1)) >= 0) {
+                remaining--;
+                return true;
+            }
+            if (pageIndex + 1 >= slab.getPageCount()) {
+                remaining = 0;
+                return false;
+            }
+            pageIndex++;
+            page = slab.getPage(pageIndex);
+            pageBase = pageIndex << slab.getShiftCount();
+            remaining = page == null ? 0 : page.getLiveCount();
+            slot = -1;
+        }
+    }
+
+    public int getHandle() {
+        return slab.handleOf(pageBase | slot);
+    }
+
+    public void getAt(final T codec) {
+        page.getAt(slot, codec);
+    }
+}
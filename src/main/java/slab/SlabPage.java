@@ -8,56 +8,153 @@ public class SlabPage<T extends Codec> {
 
     private final UnsafeBuffer pageBuffer;
     private final short codecSize;
+    private final short headerSize;
     private final short unitSize;
+    private final int pageHeaderSize;
     private short liveCounter = 0;
     private final int pageIndex;
 
     protected static final int SLAB_PAGE_LIVE_PADDING_SIZE = 1;
 
     public SlabPage(final UnsafeBuffer parentBuffer, final short codecSize, final int index) {
+        this(parentBuffer, codecSize, index, SLAB_PAGE_LIVE_PADDING_SIZE, codecSize + SLAB_PAGE_LIVE_PADDING_SIZE);
+    }
+
+    protected SlabPage(final UnsafeBuffer parentBuffer, final short codecSize, final int index,
+                       final int headerSize, final int unitSize) {
+        this(parentBuffer, codecSize, index, headerSize, unitSize, 0);
+    }
+
+    //Pages with per-page metadata, like a live bitmap, reserve pageHeaderSize bytes in front of the first slot
+    protected SlabPage(final UnsafeBuffer parentBuffer, final short codecSize, final int index,
+                       final int headerSize, final int unitSize, final int pageHeaderSize) {
         this.pageBuffer = parentBuffer;
         this.codecSize = codecSize;
-        this.unitSize = (short) (codecSize + SLAB_PAGE_LIVE_PADDING_SIZE);
+        this.headerSize = (short) headerSize;
+        this.unitSize = (short) unitSize;
+        this.pageHeaderSize = pageHeaderSize;
         this.pageIndex = index;
     }
 
     public void createAt(final int index, final T codec) {
         final int pageOffset = getOffset(index);
         liveCounter++;
-        this.pageBuffer.putByte(pageOffset, (byte) 1);
-        codec.wrap(pageBuffer, pageOffset + SLAB_PAGE_LIVE_PADDING_SIZE, codecSize);
+        markLive(index, pageOffset);
+        codec.wrap(pageBuffer, pageOffset + headerSize, codecSize);
+    }
+
+    //Marks count consecutive slots live and bumps the live counter once
+    protected void createRun(final int fromIndex, final int count) {
+        final int end = fromIndex + count;
+        for (int i = fromIndex; i < end; i++) {
+            markLive(i, getOffset(i));
+        }
+        liveCounter += count;
     }
 
     public void getAt(final int index, final T codec) {
-        final int codecOffset = getOffset(index) + SLAB_PAGE_LIVE_PADDING_SIZE;
+        final int codecOffset = getOffset(index) + headerSize;
         codec.wrap(pageBuffer, codecOffset, codecSize);
     }
 
     public boolean equalsUnderlying(final int index, final T codec) {
-        final int codecOffset = getOffset(index) + SLAB_PAGE_LIVE_PADDING_SIZE;
+        final int codecOffset = getOffset(index) + headerSize;
         return DirectBufferUtils.bufferEquals(pageBuffer, codecOffset + codec.keyOffset(),
                 codec.buffer(), codec.keyOffset(), codec.keyLength());
     }
 
     public int keyHashCode(final int index, final CodecKeyHashGenerator hashGenerator) {
-        final int codecOffset = getOffset(index) + SLAB_PAGE_LIVE_PADDING_SIZE;
+        final int codecOffset = getOffset(index) + headerSize;
         return hashGenerator.generateKeyHashCode(pageBuffer, codecOffset);
     }
 
     public int removeAt(final int index) {
         final int pageOffset = getOffset(index);
-        if (pageBuffer.getByte(pageOffset) != 0) {
+        if (isLive(index, pageOffset)) {
             liveCounter--;
-            this.pageBuffer.putByte(pageOffset, (byte) 0);
+            markDead(index, pageOffset);
         }
         return liveCounter;
     }
 
+    //Removes the slots of handles[from, to), which all sit on this page, and returns how many were live
+    protected int removeBatch(final int[] handles, final int from, final int to, final int inPageIndexMask) {
+        int removed = 0;
+        for (int i = from; i < to; i++) {
+            final int index = handles[i] & inPageIndexMask;
+            final int slotOffset = getOffset(index);
+            if (isLive(index, slotOffset)) {
+                markDead(index, slotOffset);
+                removed++;
+            }
+        }
+        liveCounter -= removed;
+        return removed;
+    }
+
+    protected boolean isLiveAt(final int index) {
+        return isLive(index, getOffset(index));
+    }
+
+    //First live slot at or after fromIndex, -1 when there is none
+    public int nextLiveIndex(final int fromIndex) {
+        final int elementCount = getElementCount();
+        for (int i = fromIndex; i < elementCount; i++) {
+            if (isLive(i, getOffset(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //Copies the record body only, the destination slot keeps the header it got from createAt
+    protected void copyRecordTo(final int index, final SlabPage<T> destination, final int destinationIndex) {
+        destination.pageBuffer.putBytes(destination.getOffset(destinationIndex) + destination.headerSize,
+                pageBuffer, getOffset(index) + headerSize, codecSize);
+    }
+
+    protected boolean isLive(final int index, final int slotOffset) {
+        return pageBuffer.getByte(slotOffset) != 0;
+    }
+
+    protected void markLive(final int index, final int slotOffset) {
+        pageBuffer.putByte(slotOffset, (byte) 1);
+    }
+
+    protected void markDead(final int index, final int slotOffset) {
+        pageBuffer.putByte(slotOffset, (byte) 0);
+    }
+
+    //Rebuilds the live counter from the per-record live bytes, used when a page is reopened from a file
+    protected int recoverLiveCount() {
+        final int elementCount = getElementCount();
+        short liveCount = 0;
+        for (int i = 0; i < elementCount; i++) {
+            if (isLive(i, getOffset(i))) {
+                liveCount++;
+            }
+        }
+        this.liveCounter = liveCount;
+        return liveCount;
+    }
+
+    protected void resetLiveCount() {
+        liveCounter = 0;
+    }
+
+    protected void setLiveCount(final int liveCount) {
+        liveCounter = (short) liveCount;
+    }
+
     protected void cleanPage() {
         liveCounter = 0;
         DirectBufferUtils.resetBuffer(pageBuffer);
     }
 
+    protected UnsafeBuffer getPageBuffer() {
+        return pageBuffer;
+    }
+
     public int getPageIndex() {
         return pageIndex;
     }
@@ -66,8 +163,28 @@ public class SlabPage<T extends Codec> {
         return liveCounter;
     }
 
-    private int getOffset(final int index) {
-        return index * unitSize;
+    protected short getCodecSize() {
+        return codecSize;
+    }
+
+    protected short getHeaderSize() {
+        return headerSize;
+    }
+
+    protected short getUnitSize() {
+        return unitSize;
+    }
+
+    protected int getPageHeaderSize() {
+        return pageHeaderSize;
+    }
+
+    protected int getElementCount() {
+        return (pageBuffer.capacity() - pageHeaderSize) / unitSize;
+    }
+
+    protected int getOffset(final int index) {
+        return pageHeaderSize + index * unitSize;
     }
 
     @Override
@@ -0,0 +1,23 @@
+package slab;
+
+import org.agrona.MutableDirectBuffer;
+
+public interface SlabPageAllocator extends AutoCloseable {
+
+    //Returns a single buffer spanning pageCount pages, starting at firstPageIndex
+    MutableDirectBuffer allocate(int firstPageIndex, int pageCount, int singlePageSize);
+
+    //Number of leading pages that already hold records from a previous run, unitSize is the size of one record slot
+    default int recoveredPageCount(final int singlePageSize, final int unitSize) {
+        return 0;
+    }
+
+    //Frees a buffer obtained from a single page allocate call, false when the memory cannot be given back
+    default boolean release(final MutableDirectBuffer pageBuffer) {
+        return false;
+    }
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,279 @@
+package slab;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+import org.agrona.BitUtil;
+import org.agrona.collections.Hashing;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.IntConsumer;
+
+//SlabKeyStore alternative laid out as groups of 16 control bytes, each the 7 bit tag of its slot's hash or an
+//empty/deleted marker, next to 8 byte slots holding the key hash and slab index as in SlabKeyStore.
+//A probe compares a whole group's tags with one vector compare and only reads the slab for matching lanes,
+//so probe sequences stay short at load factors well above what linear probing tolerates.
+public class SwissSlabKeyStore<T extends Codec> {
+
+    public static final float DEFAULT_LOAD_FACTOR = 0.875f;
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_128;
+    private static final int GROUP_SIZE = 16;
+    private static final int GROUP_SHIFT = 4;
+    private static final int TAG_BITS = 7;
+    private static final byte EMPTY = (byte) 0x80;
+    private static final byte DELETED = (byte) 0xFE;
+    private static final int MISSING_VALUE = -1;
+
+    private final float loadFactor;
+    private final Slab<T> slab;
+
+    private MemorySegment controls;
+    private UnsafeBuffer slots;
+    private int capacity;
+    private int groupMask;
+    private int growthLimit;
+    private int size;
+    private int deletedCount;
+
+    public SwissSlabKeyStore(final int capacity, final Slab<T> slab) {
+        this(capacity, DEFAULT_LOAD_FACTOR, slab);
+    }
+
+    public SwissSlabKeyStore(final int capacity, final float loadFactor, final Slab<T> slab) {
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("Load factor must be between 0 and 1: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        this.slab = slab;
+        allocate(Math.max(GROUP_SIZE, BitUtil.findNextPositivePowerOfTwo(capacity)));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void insert(final int slabIndex, final T codec) {
+        final int keyHash = codec.keyHashCode();
+        final int hash = Hashing.hash(keyHash);
+        final byte tag = tag(hash);
+        int group = hash >>> TAG_BITS & groupMask;
+        int insertSlot = -1;
+        for (int step = 1; ; step++) {
+            final ByteVector controlGroup = loadGroup(group);
+            long matches = controlGroup.eq(tag).toLong();
+            while (matches != 0) {
+                final int slot = group << GROUP_SHIFT | Long.numberOfTrailingZeros(matches);
+                if (slabIndex(slots.getLong(slot << 3)) == slabIndex) {
+                    return;
+                }
+                matches &= matches - 1;
+            }
+            if (insertSlot < 0) {
+                final long free = controlGroup.eq(EMPTY).or(controlGroup.eq(DELETED)).toLong();
+                if (free != 0) {
+                    insertSlot = group << GROUP_SHIFT | Long.numberOfTrailingZeros(free);
+                }
+            }
+            if (controlGroup.eq(EMPTY).anyTrue()) {
+                break;
+            }
+            group = group + step & groupMask;
+        }
+
+        if (controlAt(insertSlot) == DELETED) {
+            deletedCount--;
+        } else if (size + deletedCount >= growthLimit) {
+            //Only slots that were empty use up growth, a full table is rebuilt and the insert probes again
+            resize();
+            place(keyHash, hash, slabIndex);
+            size++;
+            return;
+        }
+        setControl(insertSlot, tag);
+        slots.putLong(insertSlot << 3, slot(keyHash, slabIndex));
+        size++;
+    }
+
+    public int getKey(final T codec) {
+        final int keyHash = codec.keyHashCode();
+        final int slot = find(keyHash, codec);
+        return slot < 0 ? MISSING_VALUE : slabIndex(slots.getLong(slot << 3));
+    }
+
+    public int removeCodec(final T codec) {
+        final int slot = find(codec.keyHashCode(), codec);
+        if (slot < 0) {
+            return MISSING_VALUE;
+        }
+        final int slabIndex = slabIndex(slots.getLong(slot << 3));
+        delete(slot);
+        return slabIndex;
+    }
+
+    public boolean removeAt(final int slabIndex) {
+        final int slot = findIndex(slab.keyHashCode(slabIndex), slabIndex);
+        if (slot < 0) {
+            return false;
+        }
+        delete(slot);
+        return true;
+    }
+
+    //Repoints the entry of a record the compactor moved, the key bytes at toIndex are the same as at fromIndex
+    public boolean relocate(final int fromIndex, final int toIndex) {
+        final int slot = findIndex(slab.keyHashCode(toIndex), fromIndex);
+        if (slot < 0) {
+            return false;
+        }
+        slots.putLong(slot << 3, slot(keyHash(slots.getLong(slot << 3)), toIndex));
+        return true;
+    }
+
+    public void forEach(final IntConsumer consumer) {
+        for (int i = 0; i < capacity; i++) {
+            if (isFull(controlAt(i))) {
+                consumer.accept(slabIndex(slots.getLong(i << 3)));
+            }
+        }
+    }
+
+    private int find(final int keyHash, final T codec) {
+        final int hash = Hashing.hash(keyHash);
+        final byte tag = tag(hash);
+        int group = hash >>> TAG_BITS & groupMask;
+        for (int step = 1; ; step++) {
+            final ByteVector controlGroup = loadGroup(group);
+            long matches = controlGroup.eq(tag).toLong();
+            while (matches != 0) {
+                final int slot = group << GROUP_SHIFT | Long.numberOfTrailingZeros(matches);
+                final long entry = slots.getLong(slot << 3);
+                if (keyHash(entry) == keyHash && slab.equalsUnderlying(slabIndex(entry), codec)) {
+                    return slot;
+                }
+                matches &= matches - 1;
+            }
+            if (controlGroup.eq(EMPTY).anyTrue()) {
+                return -1;
+            }
+            group = group + step & groupMask;
+        }
+    }
+
+    private int findIndex(final int keyHash, final int slabIndex) {
+        final int hash = Hashing.hash(keyHash);
+        final byte tag = tag(hash);
+        int group = hash >>> TAG_BITS & groupMask;
+        for (int step = 1; ; step++) {
+            final ByteVector controlGroup = loadGroup(group);
+            long matches = controlGroup.eq(tag).toLong();
+            while (matches != 0) {
+                final int slot = group << GROUP_SHIFT | Long.numberOfTrailingZeros(matches);
+                if (slabIndex(slots.getLong(slot << 3)) == slabIndex) {
+                    return slot;
+                }
+                matches &= matches - 1;
+            }
+            if (controlGroup.eq(EMPTY).anyTrue()) {
+                return -1;
+            }
+            group = group + step & groupMask;
+        }
+    }
+
+    //Probes stop at the first group with an empty slot, so a slot can go back to empty only when its group
+    //already has one and no probe can have passed through it
+    private void delete(final int slot) {
+        final ByteVector controlGroup = loadGroup(slot >>> GROUP_SHIFT);
+        if (controlGroup.eq(EMPTY).anyTrue()) {
+            setControl(slot, EMPTY);
+        } else {
+            setControl(slot, DELETED);
+            deletedCount++;
+        }
+        size--;
+    }
+
+    //Doubles when mostly live, otherwise rebuilds at the same capacity to drop deleted markers
+    private void resize() {
+        final MemorySegment oldControls = controls;
+        final UnsafeBuffer oldSlots = slots;
+        final int oldCapacity = capacity;
+        allocate(size >= growthLimit >>> 1 ? capacity << 1 : capacity);
+        for (int i = 0; i < oldCapacity; i++) {
+            if (isFull(oldControls.get(ValueLayout.JAVA_BYTE, i))) {
+                final long entry = oldSlots.getLong(i << 3);
+                place(keyHash(entry), Hashing.hash(keyHash(entry)), slabIndex(entry));
+            }
+        }
+    }
+
+    //Puts an entry known to be absent into the first empty slot of its probe sequence, used while rebuilding
+    private void place(final int keyHash, final int hash, final int slabIndex) {
+        int group = hash >>> TAG_BITS & groupMask;
+        for (int step = 1; ; step++) {
+            final long empty = loadGroup(group).eq(EMPTY).toLong();
+            if (empty != 0) {
+                final int slot = group << GROUP_SHIFT | Long.numberOfTrailingZeros(empty);
+                setControl(slot, tag(hash));
+                slots.putLong(slot << 3, slot(keyHash, slabIndex));
+                return;
+            }
+            group = group + step & groupMask;
+        }
+    }
+
+    private void allocate(final int capacity) {
+        this.capacity = capacity;
+        this.groupMask = (capacity >>> GROUP_SHIFT) - 1;
+        this.growthLimit = (int) (capacity * loadFactor);
+        this.deletedCount = 0;
+        final ByteBuffer controlBuffer = ByteBuffer.allocateDirect(capacity);
+        this.controls = MemorySegment.ofBuffer(controlBuffer);
+        this.controls.fill(EMPTY);
+        this.slots = new UnsafeBuffer(ByteBuffer.allocateDirect(capacity * Long.BYTES));
+    }
+
+    private ByteVector loadGroup(final int group) {
+        return ByteVector.fromMemorySegment(SPECIES, controls, (long) group << GROUP_SHIFT, ByteOrder.nativeOrder());
+    }
+
+    private byte controlAt(final int slot) {
+        return controls.get(ValueLayout.JAVA_BYTE, slot);
+    }
+
+    private void setControl(final int slot, final byte control) {
+        controls.set(ValueLayout.JAVA_BYTE, slot, control);
+    }
+
+    protected int capacity() {
+        return capacity;
+    }
+
+    private static boolean isFull(final byte control) {
+        return control >= 0;
+    }
+
+    private static byte tag(final int hash) {
+        return (byte) (hash & 0x7F);
+    }
+
+    private static long slot(final int keyHash, final int slabIndex) {
+        return (long) keyHash << 32 | (slabIndex & 0xFFFF_FFFFL);
+    }
+
+    private static int slabIndex(final long slot) {
+        return (int) slot;
+    }
+
+    private static int keyHash(final long slot) {
+        return (int) (slot >>> 32);
+    }
+}
@@ -23,11 +23,6 @@ public class TestCodec implements Codec {
         return buffer;
     }
 
-    @Override
-    public int generateKeyHashCode(MutableDirectBuffer buffer, int offset) {
-        return buffer.hashCode();
-    }
-
     @Override
     public int keyOffset() {
         return 0;
@@ -40,7 +35,7 @@ public class TestCodec implements Codec {
 
     @Override
     public int hashCode() {
-        return buffer.hashCode();
+        return keyHashCode();
     }
 
     public int getId() {
@@ -3,7 +3,6 @@ package slab;
 import offHeapTypes.DirectBufferUnsafeString;
 import org.agrona.MutableDirectBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
-import utils.DirectBufferUtils;
 
 public class TestOrder implements Codec {
 
@@ -29,11 +28,6 @@ public class TestOrder implements Codec {
         return buffer;
     }
 
-    @Override
-    public int generateKeyHashCode(final MutableDirectBuffer buffer, final int offset) {
-        return DirectBufferUtils.segmentHashCodeShortCircuiting(buffer, offset + ASCII_OFFSET, ASCII_LENGTH);
-    }
-
     @Override
     public int keyOffset() {
         return ASCII_OFFSET;
@@ -0,0 +1,207 @@
+package unsafeSlab;
+
+import org.agrona.BitUtil;
+import org.agrona.UnsafeApi;
+import utils.UnsafeBufferUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import static unsafeSlab.UnsafeSlabPage.SLAB_PAGE_LIVE_PADDING_SIZE;
+
+//Slab shared by many producer threads. Each thread creates through its own Producer, which claims a whole page
+//from a lock-free free page stack and then bump allocates inside it without touching shared state.
+//A claimed page's live counter starts at every slot plus one owner reference, so creates never need an atomic;
+//removes from any thread decrement it and the page is recycled by whichever thread brings it to zero.
+public class MultiProducerUnsafeSlab<T extends UnsafeCodec> implements AutoCloseable {
+
+    public static boolean RESET_BUFFER = !"true".equals(System.getProperty("slab.reset.buffer"));
+    //Keeps each page's counter on its own cache line
+    private static final int COUNTER_STRIDE_SHIFT = 4;
+    private static final int EMPTY_STACK = -1;
+
+    private final long memOffset;
+    private final int initialPageCount;
+    private final int maxPageCount;
+    private final int pageElementCount;
+    private final int inPageIndexMask;
+    private final int shiftCount;
+    private final short unitSize;
+    private final int singlePageSize;
+
+    private final AtomicLongArray pageAddresses;
+    private final AtomicIntegerArray liveCounters;
+    private final AtomicIntegerArray nextFreePage;
+    //Upper 32 bits are a version tag against ABA, lower 32 bits the top page index
+    private final AtomicLong freeStackHead = new AtomicLong(EMPTY_STACK & 0xFFFF_FFFFL);
+    private final AtomicInteger allocatedPageCount;
+
+    public MultiProducerUnsafeSlab(final short pageSize, final int initialPageCount, final int maxPageCount,
+                                   final Supplier<T> codecSupplier) {
+        final short codecSize = codecSupplier.get().bufferSize();
+        final short alignedPageElementCount = (short) BitUtil.findNextPositivePowerOfTwo(pageSize);
+        this.pageElementCount = alignedPageElementCount;
+        this.inPageIndexMask = alignedPageElementCount - 1;
+        int pageIndexMask = inPageIndexMask;
+        int shiftCount = 1;
+        while ((pageIndexMask >>= 1) != 0) {
+            shiftCount++;
+        }
+        this.shiftCount = shiftCount;
+        this.unitSize = (short) (codecSize + SLAB_PAGE_LIVE_PADDING_SIZE);
+        this.singlePageSize = alignedPageElementCount * unitSize;
+        this.initialPageCount = initialPageCount;
+        this.maxPageCount = Math.max(maxPageCount, initialPageCount);
+
+        this.pageAddresses = new AtomicLongArray(this.maxPageCount);
+        this.liveCounters = new AtomicIntegerArray(this.maxPageCount << COUNTER_STRIDE_SHIFT);
+        this.nextFreePage = new AtomicIntegerArray(this.maxPageCount);
+        this.allocatedPageCount = new AtomicInteger(initialPageCount);
+
+        this.memOffset = UnsafeApi.allocateMemory((long) initialPageCount * singlePageSize);
+        UnsafeApi.setMemory(memOffset, (long) initialPageCount * singlePageSize, (byte) 0);
+        for (int i = initialPageCount - 1; i >= 0; i--) {
+            pageAddresses.set(i, memOffset + (long) i * singlePageSize);
+            pushFreePage(i);
+        }
+    }
+
+    //Producers are not thread safe, each producing thread owns exactly one
+    public Producer newProducer() {
+        return new Producer();
+    }
+
+    public void getAt(final int index, final T codec) {
+        codec.wrap(slotOffset(index) + SLAB_PAGE_LIVE_PADDING_SIZE);
+    }
+
+    public boolean equalsUnderlying(final int index, final T codec) {
+        final long offset = slotOffset(index) + SLAB_PAGE_LIVE_PADDING_SIZE;
+        return UnsafeBufferUtils.bufferEquals(offset + codec.keyOffset(),
+                codec.memOffset() + codec.keyOffset(), codec.keyLength());
+    }
+
+    public int keyHashCode(final int index, final UnsafeCodecKeyHashGenerator hashGenerator) {
+        return hashGenerator.generateKeyHashCode(slotOffset(index) + SLAB_PAGE_LIVE_PADDING_SIZE);
+    }
+
+    //Safe from any thread, a record must only be removed once
+    public void removeAt(final int index) {
+        final long offset = slotOffset(index);
+        if (UnsafeApi.getByte(offset) == 0) {
+            return;
+        }
+        UnsafeApi.putByte(offset, (byte) 0);
+        releaseSlots(index >> shiftCount, 1);
+    }
+
+    public int getLiveCount(final int pageIndex) {
+        return liveCounters.get(pageIndex << COUNTER_STRIDE_SHIFT);
+    }
+
+    private void releaseSlots(final int pageIndex, final int count) {
+        if (liveCounters.addAndGet(pageIndex << COUNTER_STRIDE_SHIFT, -count) == 0) {
+            if (RESET_BUFFER) {
+                UnsafeApi.setMemory(pageAddresses.get(pageIndex), singlePageSize, (byte) 0);
+            }
+            pushFreePage(pageIndex);
+        }
+    }
+
+    private void pushFreePage(final int pageIndex) {
+        long head;
+        do {
+            head = freeStackHead.get();
+            nextFreePage.set(pageIndex, (int) head);
+        } while (!freeStackHead.compareAndSet(head, nextHead(head, pageIndex)));
+    }
+
+    private int claimPage() {
+        long head;
+        int pageIndex;
+        do {
+            head = freeStackHead.get();
+            pageIndex = (int) head;
+            if (pageIndex == EMPTY_STACK) {
+                return allocatePage();
+            }
+        } while (!freeStackHead.compareAndSet(head, nextHead(head, nextFreePage.get(pageIndex))));
+        liveCounters.set(pageIndex << COUNTER_STRIDE_SHIFT, pageElementCount + 1);
+        return pageIndex;
+    }
+
+    private int allocatePage() {
+        final int pageIndex = allocatedPageCount.getAndIncrement();
+        if (pageIndex >= maxPageCount) {
+            allocatedPageCount.decrementAndGet();
+            throw new IllegalStateException("Slab exhausted, all " + maxPageCount + " pages are in use");
+        }
+        final long address = UnsafeApi.allocateMemory(singlePageSize);
+        UnsafeApi.setMemory(address, singlePageSize, (byte) 0);
+        pageAddresses.set(pageIndex, address);
+        liveCounters.set(pageIndex << COUNTER_STRIDE_SHIFT, pageElementCount + 1);
+        return pageIndex;
+    }
+
+    private static long nextHead(final long head, final int pageIndex) {
+        return (((head >>> 32) + 1) << 32) | (pageIndex & 0xFFFF_FFFFL);
+    }
+
+    private long slotOffset(final int index) {
+        return pageAddresses.get(index >> shiftCount) + (long) (index & inPageIndexMask) * unitSize;
+    }
+
+    @Override
+    public void close() {
+        final int allocated = Math.min(allocatedPageCount.get(), maxPageCount);
+        for (int i = initialPageCount; i < allocated; i++) {
+            UnsafeApi.freeMemory(pageAddresses.get(i));
+        }
+        UnsafeApi.freeMemory(memOffset);
+    }
+
+    public final class Producer implements AutoCloseable {
+
+        private int pageIndex = EMPTY_STACK;
+        private long pageAddress;
+        private int nextSlot;
+
+        private Producer() {
+        }
+
+        public int create(final T codec) {
+            if (pageIndex == EMPTY_STACK || nextSlot == pageElementCount) {
+                nextPage();
+            }
+            final int slot = nextSlot++;
+            final long offset = pageAddress + (long) slot * unitSize;
+            UnsafeApi.putByte(offset, (byte) 1);
+            codec.wrap(offset + SLAB_PAGE_LIVE_PADDING_SIZE);
+            return (pageIndex << shiftCount) | slot;
+        }
+
+        private void nextPage() {
+            releaseOwnership();
+            this.pageIndex = claimPage();
+            this.pageAddress = pageAddresses.get(pageIndex);
+            this.nextSlot = 0;
+        }
+
+        //Hands back the owner reference and every slot this producer never used
+        private void releaseOwnership() {
+            if (pageIndex != EMPTY_STACK) {
+                final int ownedPage = pageIndex;
+                pageIndex = EMPTY_STACK;
+                releaseSlots(ownedPage, pageElementCount - nextSlot + 1);
+            }
+        }
+
+        @Override
+        public void close() {
+            releaseOwnership();
+        }
+    }
+}
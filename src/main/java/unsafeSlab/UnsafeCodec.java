@@ -1,6 +1,6 @@
 package unsafeSlab;
 
-import utils.UnsafeBufferUtils;
+import utils.KeyHasher;
 
 public interface UnsafeCodec extends UnsafeCodecKeyHashGenerator {
 
@@ -14,6 +14,16 @@ public interface UnsafeCodec extends UnsafeCodecKeyHashGenerator {
         return generateKeyHashCode(memOffset());
     }
 
+    //Same contract as Codec.keyHasher
+    default KeyHasher keyHasher() {
+        return KeyHasher.DEFAULT;
+    }
+
+    @Override
+    default int generateKeyHashCode(final long codecOffset) {
+        return keyHasher().hash(codecOffset + keyOffset(), keyLength());
+    }
+
     int keyOffset();
 
     int keyLength();
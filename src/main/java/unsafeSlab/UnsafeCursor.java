@@ -40,6 +40,15 @@ public class UnsafeCursor<T extends UnsafeCodec> {
         nextPageIndex = 0;
     }
 
+    //Creates up to count slots on the current page in one step and moves past them, returns how many it took
+    public int createRun(final int count) {
+        final int run = Math.min(count, pageElementCount - nextPageIndex);
+        currentPage.createRun(nextPageIndex, run);
+        nextPageIndex += run - 1;
+        incrementCursor();
+        return run;
+    }
+
     public int getCursorIndex() {
         return currPageIndex + nextPageIndex;
     }
@@ -51,4 +60,14 @@ public class UnsafeCursor<T extends UnsafeCodec> {
     protected UnsafeSlabPage<T> getCurrentPage() {
         return this.currentPage;
     }
+
+    protected int getInPageIndex() {
+        return this.nextPageIndex;
+    }
+
+    protected void resetTo(final UnsafeSlabPage<T> page, final int inPageIndex) {
+        this.currentPage = page;
+        this.currPageIndex = page.getPageIndex() * pageElementCount;
+        this.nextPageIndex = inPageIndex;
+    }
 }
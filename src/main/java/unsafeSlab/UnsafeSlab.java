@@ -2,10 +2,21 @@ package unsafeSlab;
 
 import static unsafeSlab.UnsafeSlabPage.SLAB_PAGE_LIVE_PADDING_SIZE;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 import org.agrona.BitUtil;
 import org.agrona.UnsafeApi;
+import org.agrona.collections.IntArrayList;
 import org.agrona.collections.IntArrayQueue;
+import utils.HugePageMemory;
+import utils.PageReserve;
+import utils.PreTouch;
 
 public class UnsafeSlab<T extends UnsafeCodec> implements AutoCloseable {
 
@@ -20,7 +31,41 @@ public class UnsafeSlab<T extends UnsafeCodec> implements AutoCloseable {
     private int activePageCount = 0;
     private UnsafeSlabPage<T>[] pages;
 
+    //Released pages leave a hole in the directory, their indices are reused before the directory grows again.
+    //Pages carved out of the initial allocation share one block and are never released individually.
+    private final IntArrayList releasedPageIndices = new IntArrayList();
+    private int maxRetainedCleanPages = Integer.MAX_VALUE;
+
+    //In huge page mode every page is carved out of 2MB aligned regions advised for transparent huge pages,
+    //pages then share their region and are never freed individually
+    private final boolean useHugePages;
+    private final List<HugePageMemory> hugePageRegions = new ArrayList<>();
+    private long regionCursor;
+    private long regionEnd;
+
+    //Page memory is touched (and optionally locked) before use, eager growth takes pages a background thread
+    //already allocated and touched
+    private final PreTouch preTouch;
+    private final PageReserve<Long> pageReserve;
+    private final long initialBlockLength;
+    private volatile boolean isLockFailed;
+
     public UnsafeSlab(final short pageSize, final int initialPageCount, final Supplier<T> codecSupplier) {
+        this(pageSize, initialPageCount, codecSupplier, false);
+    }
+
+    public UnsafeSlab(final short pageSize, final int initialPageCount, final Supplier<T> codecSupplier,
+                      final boolean useHugePages) {
+        this(pageSize, initialPageCount, codecSupplier, useHugePages, PreTouch.NONE, 0);
+    }
+
+    public UnsafeSlab(final short pageSize, final int initialPageCount, final Supplier<T> codecSupplier,
+                      final boolean useHugePages, final PreTouch preTouch, final int eagerPageCount) {
+        if (useHugePages && eagerPageCount > 0) {
+            throw new IllegalArgumentException("Eager growth allocates single pages, it cannot carve huge pages");
+        }
+        this.useHugePages = useHugePages;
+        this.preTouch = preTouch;
         this.reusableCodec = codecSupplier.get();
         final short codecSize = reusableCodec.bufferSize();
         final short alignedPageElementCount = (short) BitUtil.findNextPositivePowerOfTwo(pageSize);
@@ -33,7 +78,17 @@ public class UnsafeSlab<T extends UnsafeCodec> implements AutoCloseable {
         this.shiftCount = shiftCount;
 
         this.singlePageSize = alignedPageElementCount * (codecSize + SLAB_PAGE_LIVE_PADDING_SIZE);
-        memOffset = UnsafeApi.allocateMemory((long) initialPageCount * singlePageSize);
+        this.initialBlockLength = (long) initialPageCount * singlePageSize;
+        if (useHugePages) {
+            addHugePageRegion(initialBlockLength);
+            memOffset = regionCursor;
+            regionCursor += initialBlockLength;
+        } else {
+            memOffset = UnsafeApi.allocateMemory(initialBlockLength);
+            prepare(memOffset, initialBlockLength);
+        }
+        this.pageReserve = eagerPageCount > 0 ? new PageReserve<>("unsafe-slab-page-reserve", eagerPageCount,
+                this::allocatePreparedPage, this::freePageMemory) : null;
         this.cleanPageIndices = new IntArrayQueue(Math.max(initialPageCount, IntArrayQueue.MIN_CAPACITY), -1);
         this.pages = new UnsafeSlabPage[initialPageCount];
         for (int i = 0; i < initialPageCount; i++) {
@@ -42,21 +97,81 @@ public class UnsafeSlab<T extends UnsafeCodec> implements AutoCloseable {
         this.cursor = new UnsafeCursor<>(alignedPageElementCount, cleanPageIndices, this::addPage, pages);
     }
 
+    //Grows the page directory up front so later page additions never copy it on the writer thread
+    public void reserveDirectoryCapacity(final int pageCount) {
+        if (pageCount > pages.length) {
+            final UnsafeSlabPage<T>[] newPages = new UnsafeSlabPage[pageCount];
+            System.arraycopy(pages, 0, newPages, 0, pages.length);
+            pages = newPages;
+            this.cursor.setPages(pages);
+        }
+    }
+
     private void addPage() {
-        final long allocOffset = UnsafeApi.allocateMemory(singlePageSize);
+        if (!releasedPageIndices.isEmpty()) {
+            addPage(allocatePageMemory(), releasedPageIndices.popInt(), !useHugePages);
+            return;
+        }
+        final long allocOffset = allocatePageMemory();
         if (activePageCount + 1 > pages.length) {
             final UnsafeSlabPage<T>[] newPages = new UnsafeSlabPage[pages.length * 2];
             System.arraycopy(pages, 0, newPages, 0, pages.length);
             pages = newPages;
             this.cursor.setPages(pages);
         }
-        addPage(allocOffset, activePageCount, true);
+        addPage(allocOffset, activePageCount, !useHugePages);
+    }
+
+    private long allocatePageMemory() {
+        if (!useHugePages) {
+            if (pageReserve != null) {
+                final Long reservedPage = pageReserve.poll();
+                if (reservedPage != null) {
+                    return reservedPage;
+                }
+            }
+            return allocatePreparedPage();
+        }
+        if (regionCursor + singlePageSize > regionEnd) {
+            addHugePageRegion(singlePageSize);
+        }
+        final long pageMemOffset = regionCursor;
+        regionCursor += singlePageSize;
+        return pageMemOffset;
+    }
+
+    //Runs on the reserve thread in eager mode. Pages are zeroed since live bytes must start cleared.
+    private long allocatePreparedPage() {
+        final long pageMemOffset = UnsafeApi.allocateMemory(singlePageSize);
+        UnsafeApi.setMemory(pageMemOffset, singlePageSize, (byte) 0);
+        prepare(pageMemOffset, singlePageSize);
+        return pageMemOffset;
+    }
+
+    private void freePageMemory(final long pageMemOffset) {
+        preTouch.release(pageMemOffset, singlePageSize);
+        UnsafeApi.freeMemory(pageMemOffset);
+    }
+
+    private void prepare(final long address, final long length) {
+        if (!preTouch.prepare(address, length)) {
+            isLockFailed = true;
+        }
+    }
+
+    private void addHugePageRegion(final long minimumLength) {
+        final HugePageMemory region = HugePageMemory.allocate(minimumLength);
+        prepare(region.address(), region.length());
+        hugePageRegions.add(region);
+        regionCursor = region.address();
+        regionEnd = region.address() + region.length();
     }
 
     private void addPage(final long memOffset, final int index, final boolean isOwnAlloc) {
         final UnsafeSlabPage<T> slabPage = new UnsafeSlabPage<>(memOffset, reusableCodec.bufferSize(),
-                activePageCount++, singlePageSize, isOwnAlloc);
+                index, singlePageSize, isOwnAlloc);
         pages[index] = slabPage;
+        activePageCount = Math.max(activePageCount, index + 1);
         this.cleanPageIndices.addInt(index);
     }
 
@@ -67,6 +182,20 @@ public class UnsafeSlab<T extends UnsafeCodec> implements AutoCloseable {
         return newIndex;
     }
 
+    //Creates count records, a page's worth of slots at a time, and passes each new handle to the consumer.
+    //Read the records through getAt, the consumer runs after the whole run on a page has been created.
+    public void createBatch(final int count, final IntConsumer consumer) {
+        int remaining = count;
+        while (remaining > 0) {
+            final int first = cursor.getCursorIndex();
+            final int run = cursor.createRun(remaining);
+            for (int i = 0; i < run; i++) {
+                consumer.accept(first + i);
+            }
+            remaining -= run;
+        }
+    }
+
     public void getAt(final int index, final T codec) {
         final var inPageIndex = index & inPageIndexMask;
         final var pageIndex = index >> shiftCount;
@@ -74,6 +203,13 @@ public class UnsafeSlab<T extends UnsafeCodec> implements AutoCloseable {
         page.getAt(inPageIndex, codec);
     }
 
+    public void getBatch(final int[] indices, final T[] codecs, final int count) {
+        for (int i = 0; i < count; i++) {
+            final int index = indices[i];
+            pages[index >> shiftCount].getAt(index & inPageIndexMask, codecs[i]);
+        }
+    }
+
     public T get(final int index) {
         final var inPageIndex = index & inPageIndexMask;
         final var pageIndex = index >> shiftCount;
@@ -97,6 +233,11 @@ public class UnsafeSlab<T extends UnsafeCodec> implements AutoCloseable {
     }
 
     public void removeAt(final int index) {
+        removeIndex(index);
+    }
+
+    //Raw slab index counterpart of removeAt, for slabs whose public handles encode more than the index
+    protected void removeIndex(final int index) {
         final var inPageIndex = index & inPageIndexMask;
         final var pageIndex = index >> shiftCount;
         final var page = pages[pageIndex];
@@ -107,20 +248,246 @@ public class UnsafeSlab<T extends UnsafeCodec> implements AutoCloseable {
         freePage(page);
     }
 
+    //Visits the handle of every live record in index order, skipping empty pages by their live count.
+    //Writer thread only, the visited record may be removed from the consumer.
+    public void forEachLive(final IntConsumer consumer) {
+        final int pageCount = activePageCount;
+        for (int pageIndex = 0; pageIndex < pageCount; pageIndex++) {
+            final UnsafeSlabPage<T> page = pages[pageIndex];
+            if (page == null) {
+                continue;
+            }
+            final int pageBase = pageIndex << shiftCount;
+            int remaining = page.getLiveCount();
+            int slot = 0;
+            while (remaining-- > 0 && (slot = page.nextLiveIndex(slot)) >= 0) {
+                consumer.accept(pageBase | slot);
+                slot++;
+            }
+        }
+    }
+
+    //Same walk as forEachLive(IntConsumer), wrapping the flyweight over each live record
+    public void forEachLive(final T flyweight, final Consumer<? super T> consumer) {
+        final int pageCount = activePageCount;
+        for (int pageIndex = 0; pageIndex < pageCount; pageIndex++) {
+            final UnsafeSlabPage<T> page = pages[pageIndex];
+            if (page == null) {
+                continue;
+            }
+            int remaining = page.getLiveCount();
+            int slot = 0;
+            while (remaining-- > 0 && (slot = page.nextLiveIndex(slot)) >= 0) {
+                page.getAt(slot, flyweight);
+                consumer.accept(flyweight);
+                slot++;
+            }
+        }
+    }
+
+    //Keep the iterator and reset it between sweeps, iterating allocates nothing
+    public UnsafeSlabLiveIterator<T> liveIterator() {
+        return new UnsafeSlabLiveIterator<>(this);
+    }
+
+    //Splits on page boundaries for parallel sweeps, the slab must not be written while it is in use
+    public Spliterator.OfInt liveSpliterator() {
+        return new UnsafeSlabSpliterator<>(this);
+    }
+
+    //Call .parallel() to fan the sweep out, consumers read through their own flyweights rather than get()
+    public IntStream liveHandles() {
+        return StreamSupport.intStream(liveSpliterator(), false);
+    }
+
+    //Removes the first count indices. Consecutive indices on the same page update that page's counter once,
+    //so callers removing in index order get the most out of it.
+    public void removeBatch(final int[] indices, final int count) {
+        int from = 0;
+        while (from < count) {
+            final int pageIndex = indices[from] >> shiftCount;
+            int to = from + 1;
+            while (to < count && indices[to] >> shiftCount == pageIndex) {
+                to++;
+            }
+            final UnsafeSlabPage<T> page = pages[pageIndex];
+            if (page.removeBatch(indices, from, to, inPageIndexMask) != 0 && page.getLiveCount() == 0 &&
+                    page != cursor.getCurrentPage()) {
+                freePage(page);
+            }
+            from = to;
+        }
+    }
+
     private void freePage(final UnsafeSlabPage<T> slabPage) {
+        if (cleanPageIndices.size() >= maxRetainedCleanPages && releasePage(slabPage)) {
+            return;
+        }
         if (RESET_BUFFER) {
             slabPage.cleanPage();
         }
         cleanPageIndices.addInt(slabPage.getPageIndex());
     }
 
+    //Clean pages beyond this many are freed as they empty
+    public void setMaxRetainedCleanPages(final int maxRetainedCleanPages) {
+        if (maxRetainedCleanPages < 0) {
+            throw new IllegalArgumentException("Max retained clean pages must not be negative: " +
+                    maxRetainedCleanPages);
+        }
+        this.maxRetainedCleanPages = maxRetainedCleanPages;
+    }
+
+    //Trims the clean queue down to the retention limit now, e.g. after a burst. Returns the pages released.
+    public int releaseExcessCleanPages() {
+        int released = 0;
+        int remaining = cleanPageIndices.size();
+        while (remaining-- > 0 && cleanPageIndices.size() > maxRetainedCleanPages) {
+            final int pageIndex = cleanPageIndices.pollInt();
+            if (releasePage(pages[pageIndex])) {
+                released++;
+            } else {
+                cleanPageIndices.addInt(pageIndex);
+            }
+        }
+        return released;
+    }
+
+    //True when every region got the MADV_HUGEPAGE advice, see getGrantedHugePageBytes for what the kernel gave
+    public boolean isHugePageBacked() {
+        if (hugePageRegions.isEmpty()) {
+            return false;
+        }
+        for (final HugePageMemory region : hugePageRegions) {
+            if (!region.isAdvised()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Reads /proc/self/smaps, not for the hot path
+    public long getGrantedHugePageBytes() {
+        long granted = 0;
+        for (final HugePageMemory region : hugePageRegions) {
+            granted += region.grantedHugePageBytes();
+        }
+        return granted;
+    }
+
+    //False once any mlock was refused, e.g. over RLIMIT_MEMLOCK
+    public boolean isLocked() {
+        return preTouch == PreTouch.TOUCH_AND_LOCK && !isLockFailed;
+    }
+
+    public long getReserveExhaustedCount() {
+        return pageReserve == null ? 0 : pageReserve.getExhaustedCount();
+    }
+
+    int getReserveSize() {
+        return pageReserve == null ? 0 : pageReserve.size();
+    }
+
+    public int getResidentPageCount() {
+        return activePageCount - releasedPageIndices.size();
+    }
+
+    private boolean releasePage(final UnsafeSlabPage<T> slabPage) {
+        if (!slabPage.isOwnAlloc()) {
+            return false;
+        }
+        pages[slabPage.getPageIndex()] = null;
+        preTouch.release(slabPage.getMemOffset(), singlePageSize);
+        slabPage.tryFree();
+        releasedPageIndices.addInt(slabPage.getPageIndex());
+        return true;
+    }
+
+    protected int getShiftCount() {
+        return shiftCount;
+    }
+
+    //Moves the live record at a raw slab index into a new slot at the cursor and returns the new raw index.
+    //The old slot stays live until removeIndex, so indexes can be patched while both copies exist.
+    protected int relocateRecord(final int fromIndex) {
+        cursor.wrapAtCursor(reusableCodec);
+        final int toIndex = cursor.getCursorIndex();
+        cursor.incrementCursor();
+        pages[fromIndex >> shiftCount].copyRecordTo(fromIndex & inPageIndexMask, pages[toIndex >> shiftCount],
+                toIndex & inPageIndexMask);
+        return toIndex;
+    }
+
+    protected int inPageIndex(final int index) {
+        return index & inPageIndexMask;
+    }
+
+    protected int pageIndexOf(final int index) {
+        return index >> shiftCount;
+    }
+
+    protected T getReusableCodec() {
+        return reusableCodec;
+    }
+
+    protected int getPageCount() {
+        return activePageCount;
+    }
+
+    //Null for a released page
+    protected UnsafeSlabPage<T> getPage(final int pageIndex) {
+        return pages[pageIndex];
+    }
+
+    protected int getSinglePageSize() {
+        return singlePageSize;
+    }
+
+    protected IntArrayQueue getCleanPageIndices() {
+        return cleanPageIndices;
+    }
+
+    protected UnsafeCursor<T> getCursor() {
+        return cursor;
+    }
+
+    protected IntArrayList getReleasedPageIndices() {
+        return releasedPageIndices;
+    }
+
+    //Also refills any released pages below pageCount
+    protected void ensurePageCount(final int pageCount) {
+        for (int i = releasedPageIndices.size() - 1; i >= 0; i--) {
+            final int pageIndex = releasedPageIndices.getInt(i);
+            if (pageIndex < pageCount) {
+                releasedPageIndices.fastUnorderedRemove(i);
+                addPage(allocatePageMemory(), pageIndex, !useHugePages);
+            }
+        }
+        while (activePageCount < pageCount) {
+            addPage();
+        }
+    }
+
     @Override
     public void close() {
+        if (pageReserve != null) {
+            pageReserve.close();
+        }
         for (final var page : pages) {
-            if (page != null) {
+            if (page != null && page.isOwnAlloc()) {
+                preTouch.release(page.getMemOffset(), singlePageSize);
                 page.tryFree();
             }
         }
-        UnsafeApi.freeMemory(memOffset);
+        if (useHugePages) {
+            for (final HugePageMemory region : hugePageRegions) {
+                preTouch.release(region.address(), region.length());
+                region.close();
+            }
+        } else {
+            preTouch.release(memOffset, initialBlockLength);
+            UnsafeApi.freeMemory(memOffset);
+        }
     }
 }
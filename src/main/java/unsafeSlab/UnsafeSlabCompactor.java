@@ -0,0 +1,102 @@
+package unsafeSlab;
+
+//Incremental defragmenter for a single writer UnsafeSlab. Each call moves a bounded number of live records out of
+//sparse pages into the cursor page, reporting every move so key stores and other indexes can be patched, and the
+//source page goes back to the clean queue through the usual removeAt path once its last record has left.
+//Runs on the writer thread between events, never concurrently with it.
+public class UnsafeSlabCompactor<T extends UnsafeCodec> {
+
+    private static final int DEADLINE_CHECK_INTERVAL = 16;
+
+    private final UnsafeSlab<T> slab;
+    private final RelocationListener relocationListener;
+    private final int sparseLiveCount;
+    private final int pageElementCount;
+
+    private UnsafeSlabPage<T> sourcePage;
+    private int sourceInPageIndex;
+    private int nextScanPageIndex;
+    private long relocatedCount;
+
+    //Pages at or below sparseFraction of their capacity are candidates
+    public UnsafeSlabCompactor(final UnsafeSlab<T> slab, final RelocationListener relocationListener,
+                               final float sparseFraction) {
+        if (sparseFraction <= 0 || sparseFraction >= 1) {
+            throw new IllegalArgumentException("Sparse fraction must be between 0 and 1: " + sparseFraction);
+        }
+        this.slab = slab;
+        this.relocationListener = relocationListener;
+        this.pageElementCount = slab.getCursor().pageElementCount;
+        this.sparseLiveCount = Math.max(1, (int) (pageElementCount * sparseFraction));
+    }
+
+    //Moves at most maxMoves records, stopping early once timeBudgetNanos has elapsed. Returns the number moved.
+    public int compact(final int maxMoves, final long timeBudgetNanos) {
+        final long deadline = System.nanoTime() + timeBudgetNanos;
+        int moves = 0;
+        int steps = 0;
+        while (moves < maxMoves) {
+            if (!isSourceUsable() && !selectSourcePage()) {
+                break;
+            }
+            if (++steps % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline >= 0) {
+                break;
+            }
+            final int inPageIndex = sourceInPageIndex++;
+            if (!sourcePage.isLiveAt(inPageIndex)) {
+                continue;
+            }
+            relocate(sourcePage, inPageIndex);
+            moves++;
+        }
+        relocatedCount += moves;
+        return moves;
+    }
+
+    public long getRelocatedCount() {
+        return relocatedCount;
+    }
+
+    private void relocate(final UnsafeSlabPage<T> page, final int inPageIndex) {
+        final int fromIndex = page.getPageIndex() * pageElementCount + inPageIndex;
+        final int toIndex = slab.relocateRecord(fromIndex);
+        relocationListener.onRelocate(fromIndex, toIndex);
+        slab.removeIndex(fromIndex);
+    }
+
+    //A source drops out once scanned, emptied (it may already be back in the clean queue), picked up by the
+    //cursor or refilled past the threshold by the writer
+    private boolean isSourceUsable() {
+        return sourcePage != null && sourceInPageIndex < pageElementCount && isSparse(sourcePage);
+    }
+
+    private boolean selectSourcePage() {
+        sourcePage = null;
+        final int pageCount = slab.getPageCount();
+        for (int scanned = 0; scanned < pageCount; scanned++) {
+            final int pageIndex = nextScanPageIndex;
+            nextScanPageIndex = (nextScanPageIndex + 1) % pageCount;
+            final UnsafeSlabPage<T> page = slab.getPage(pageIndex);
+            if (isSparse(page)) {
+                sourcePage = page;
+                sourceInPageIndex = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Released pages leave null holes in the directory
+    private boolean isSparse(final UnsafeSlabPage<T> page) {
+        if (page == null) {
+            return false;
+        }
+        final int liveCount = page.getLiveCount();
+        return liveCount > 0 && liveCount <= sparseLiveCount && page != slab.getCursor().getCurrentPage();
+    }
+
+    @FunctionalInterface
+    public interface RelocationListener {
+        void onRelocate(int fromIndex, int toIndex);
+    }
+}
@@ -3,6 +3,8 @@ package unsafeSlab;
 import org.agrona.BitUtil;
 import org.agrona.UnsafeApi;
 import org.agrona.collections.Hashing;
+import utils.HugePageMemory;
+import utils.ProbeMode;
 
 public class UnsafeSlabKeyStore<T extends UnsafeCodec> implements AutoCloseable {
 
@@ -15,15 +17,35 @@ public class UnsafeSlabKeyStore<T extends UnsafeCodec> implements AutoCloseable
     private int size;
 
     private static final int MISSING_VALUE = -1;
+    private static final long MISSING_SLOT = -1L;
+    //Each slot keeps the key's hash code next to the slab index so probes and resizes never touch the slab
+    protected static final int SLOT_SHIFT = 3;
+
+    private final boolean useHugePages;
+    private final boolean isRobinHood;
+    private HugePageMemory hugePageTable;
 
     public UnsafeSlabKeyStore(final int capacity, final float loafFactor, final UnsafeSlab<T> slab) {
+        this(capacity, loafFactor, slab, false);
+    }
+
+    public UnsafeSlabKeyStore(final int capacity, final float loadFactor, final UnsafeSlab<T> slab,
+                              final boolean useHugePages) {
+        this(capacity, loadFactor, slab, useHugePages, ProbeMode.LINEAR);
+    }
+
+    //In ROBIN_HOOD mode probe distances are derived from the stored hashes, so they cost no extra slot space
+    public UnsafeSlabKeyStore(final int capacity, final float loadFactor, final UnsafeSlab<T> slab,
+                              final boolean useHugePages, final ProbeMode probeMode) {
+        this.useHugePages = useHugePages;
+        this.isRobinHood = probeMode == ProbeMode.ROBIN_HOOD;
         this.capacity = BitUtil.findNextPositivePowerOfTwo(capacity);
-        this.loadFactor = loafFactor;
+        this.loadFactor = loadFactor;
         this.nextResizeLimit = (int) (this.capacity * loadFactor);
         this.slab = slab;
 
-        this.memOffset = UnsafeApi.allocateMemory(capacity);
-        UnsafeApi.setMemory(memOffset, capacity, (byte) MISSING_VALUE);
+        this.memOffset = allocateTable((long) this.capacity << SLOT_SHIFT);
+        UnsafeApi.setMemory(memOffset, (long) this.capacity << SLOT_SHIFT, (byte) MISSING_VALUE);
     }
 
     public int size() {
@@ -36,62 +58,171 @@ public class UnsafeSlabKeyStore<T extends UnsafeCodec> implements AutoCloseable
 
     public void insert(final int slabIndex, final T codec) {
         final int mask = this.capacity - 1;
-        int index = Hashing.hash(codec.keyHashCode(), mask);
-        int existingSlabIndex;
-        while ((existingSlabIndex = UnsafeApi.getInt(getOffset(index))) != MISSING_VALUE) {
-            if (existingSlabIndex == slabIndex) {
+        final int keyHash = codec.keyHashCode();
+        if (isRobinHood) {
+            final int distance = placeRobinHood(memOffset, mask, slot(keyHash, slabIndex));
+            if (distance >= 0) {
+                size++;
+                if (size > nextResizeLimit ||
+                        (distance > ProbeMode.MAX_PROBE_DISTANCE && size >= capacity >>> 3)) {
+                    rehash();
+                }
+            }
+            return;
+        }
+        int index = Hashing.hash(keyHash, mask);
+        long slot;
+        while (slabIndex(slot = UnsafeApi.getLong(getOffset(index))) != MISSING_VALUE) {
+            if (slabIndex(slot) == slabIndex) {
                 return;
             }
             index = ++index & mask;
         }
 
         size++;
-        UnsafeApi.putInt(getOffset(index), slabIndex);
+        UnsafeApi.putLong(getOffset(index), slot(keyHash, slabIndex));
         tryIncreaseCapacity();
     }
 
     public int getKey(final T codec) {
+        final int index = findSlot(codec.keyHashCode(), codec);
+        return index < 0 ? MISSING_VALUE : slabIndex(UnsafeApi.getLong(getOffset(index)));
+    }
+
+    //Slots whose stored hash differs are skipped without reading the slab
+    private int findSlot(final int keyHash, final T codec) {
         final int mask = this.capacity - 1;
-        int index = Hashing.hash(codec.keyHashCode(), mask);
-        int existingSlabIndex;
-        while ((existingSlabIndex = UnsafeApi.getInt(getOffset(index))) != MISSING_VALUE) {
-            if (slab.equalsUnderlying(existingSlabIndex, codec)) {
-                return existingSlabIndex;
+        int index = Hashing.hash(keyHash, mask);
+        int distance = 0;
+        long slot;
+        while (slabIndex(slot = UnsafeApi.getLong(getOffset(index))) != MISSING_VALUE) {
+            if (keyHash(slot) == keyHash && slab.equalsUnderlying(slabIndex(slot), codec)) {
+                return index;
+            }
+            if (isRobinHood && probeDistance(slot, index, mask) < distance) {
+                return -1;
             }
+            index = ++index & mask;
+            distance++;
+        }
+        return -1;
+    }
 
+    //Places the entry keeping runs ordered by probe distance. Returns the longest distance an entry was placed
+    //at, or -1 if the slab index was already present.
+    private static int placeRobinHood(final long tableOffset, final int mask, final long newSlot) {
+        long entry = newSlot;
+        int index = Hashing.hash(keyHash(entry), mask);
+        int distance = 0;
+        int longestDistance = 0;
+        boolean isDisplacing = false;
+        long existing;
+        while (slabIndex(existing = UnsafeApi.getLong(tableOffset + ((long) index << SLOT_SHIFT))) != MISSING_VALUE) {
+            if (!isDisplacing && slabIndex(existing) == slabIndex(entry)) {
+                return -1;
+            }
+            final int existingDistance = probeDistance(existing, index, mask);
+            if (existingDistance < distance) {
+                //The entry closer to home gives up its slot and carries on down the run
+                UnsafeApi.putLong(tableOffset + ((long) index << SLOT_SHIFT), entry);
+                longestDistance = Math.max(longestDistance, distance);
+                entry = existing;
+                distance = existingDistance;
+                isDisplacing = true;
+            }
             index = ++index & mask;
+            distance++;
+        }
+        UnsafeApi.putLong(tableOffset + ((long) index << SLOT_SHIFT), entry);
+        return Math.max(longestDistance, distance);
+    }
+
+    private static int probeDistance(final long slot, final int index, final int mask) {
+        return (index - Hashing.hash(keyHash(slot), mask)) & mask;
+    }
+
+    //Longest distance of any entry from its home slot, scans the table so not for the hot path
+    public int getMaxProbeDistance() {
+        final int mask = capacity - 1;
+        int maxDistance = 0;
+        for (int i = 0; i < capacity; i++) {
+            final long slot = UnsafeApi.getLong(getOffset(i));
+            if (slabIndex(slot) != MISSING_VALUE) {
+                maxDistance = Math.max(maxDistance, probeDistance(slot, i, mask));
+            }
         }
-        return MISSING_VALUE;
+        return maxDistance;
     }
 
     public int removeCodec(final T codec) {
+        final int index = findSlot(codec.keyHashCode(), codec);
+        if (index < 0) {
+            return MISSING_VALUE;
+        }
+        final int slabIndex = slabIndex(UnsafeApi.getLong(getOffset(index)));
+        removeSlot(index);
+        return slabIndex;
+    }
+
+    public boolean removeAt(final int slabIndex) {
         final int mask = this.capacity - 1;
-        int index = Hashing.hash(codec.keyHashCode(), mask);
-        int existingSlabIndex;
-        while ((existingSlabIndex = UnsafeApi.getInt(getOffset(index))) != MISSING_VALUE) {
-            if (slab.equalsUnderlying(existingSlabIndex, codec)) {
-                UnsafeApi.putInt(getOffset(index), MISSING_VALUE);
-                size--;
-                tryCompact(index);
-                return existingSlabIndex;
+        int index = Hashing.hash(slab.keyHashCode(slabIndex), mask);
+        int distance = 0;
+        long slot;
+        while (slabIndex(slot = UnsafeApi.getLong(getOffset(index))) != MISSING_VALUE) {
+            if (slabIndex(slot) == slabIndex) {
+                removeSlot(index);
+                return true;
+            }
+            if (isRobinHood && probeDistance(slot, index, mask) < distance) {
+                return false;
             }
             index = ++index & mask;
+            distance++;
         }
-        return MISSING_VALUE;
+        return false;
     }
 
-    public boolean removeAt(final int slabIndex) {
+    private void removeSlot(final int index) {
+        size--;
+        if (isRobinHood) {
+            shiftBack(index);
+        } else {
+            UnsafeApi.putLong(getOffset(index), MISSING_SLOT);
+            tryCompact(index);
+        }
+    }
+
+    //Robin Hood deletion: the rest of the run moves back one slot until an empty slot or an entry already home
+    private void shiftBack(int index) {
+        final int mask = capacity - 1;
+        int next = (index + 1) & mask;
+        long slot;
+        while (slabIndex(slot = UnsafeApi.getLong(getOffset(next))) != MISSING_VALUE &&
+                probeDistance(slot, next, mask) != 0) {
+            UnsafeApi.putLong(getOffset(index), slot);
+            index = next;
+            next = (next + 1) & mask;
+        }
+        UnsafeApi.putLong(getOffset(index), MISSING_SLOT);
+    }
+
+    //Repoints the entry of a record the compactor moved, the key bytes at toIndex are the same as at fromIndex
+    public boolean relocate(final int fromIndex, final int toIndex) {
         final int mask = this.capacity - 1;
-        int index = Hashing.hash(slab.keyHashCode(slabIndex), mask);
-        int existingSlabIndex;
-        while ((existingSlabIndex = UnsafeApi.getInt(getOffset(index))) != MISSING_VALUE) {
-            if (existingSlabIndex == slabIndex) {
-                UnsafeApi.putInt(getOffset(index), MISSING_VALUE);
-                size--;
-                tryCompact(index);
+        int index = Hashing.hash(slab.keyHashCode(toIndex), mask);
+        int distance = 0;
+        long slot;
+        while (slabIndex(slot = UnsafeApi.getLong(getOffset(index))) != MISSING_VALUE) {
+            if (slabIndex(slot) == fromIndex) {
+                UnsafeApi.putLong(getOffset(index), slot(keyHash(slot), toIndex));
                 return true;
             }
+            if (isRobinHood && probeDistance(slot, index, mask) < distance) {
+                return false;
+            }
             index = ++index & mask;
+            distance++;
         }
         return false;
     }
@@ -102,24 +233,29 @@ public class UnsafeSlabKeyStore<T extends UnsafeCodec> implements AutoCloseable
         }
     }
 
+    //Places entries by their stored hash, the slab is never read
     private void rehash() {
         final int oldCapacity = this.capacity;
         this.capacity <<= 1;
 
-        final long newMemOffset = UnsafeApi.allocateMemory(capacity);
-        UnsafeApi.setMemory(newMemOffset, capacity, (byte) MISSING_VALUE);
+        final HugePageMemory oldHugePageTable = hugePageTable;
+        final long newMemOffset = allocateTable((long) capacity << SLOT_SHIFT);
+        UnsafeApi.setMemory(newMemOffset, (long) capacity << SLOT_SHIFT, (byte) MISSING_VALUE);
         final int mask = capacity - 1;
         this.nextResizeLimit = (int) (this.capacity * loadFactor);
         for (int readIndex = 0; readIndex < oldCapacity; readIndex++) {
-            final int value = UnsafeApi.getInt(getOffset(readIndex));
-            if (value != MISSING_VALUE) {
-                int index = Hashing.hash(slab.keyHashCode(value), mask);
-                while (UnsafeApi.getInt(newMemOffset + ((long) index << 2)) != MISSING_VALUE) {
+            final long slot = UnsafeApi.getLong(getOffset(readIndex));
+            if (slabIndex(slot) != MISSING_VALUE && isRobinHood) {
+                placeRobinHood(newMemOffset, mask, slot);
+            } else if (slabIndex(slot) != MISSING_VALUE) {
+                int index = Hashing.hash(keyHash(slot), mask);
+                while (slabIndex(UnsafeApi.getLong(newMemOffset + ((long) index << SLOT_SHIFT))) != MISSING_VALUE) {
                     index = ++index & mask;
                 }
-                UnsafeApi.putInt(newMemOffset + ((long) index << 2), value);
+                UnsafeApi.putLong(newMemOffset + ((long) index << SLOT_SHIFT), slot);
             }
         }
+        freeTable(memOffset, oldHugePageTable);
         this.memOffset = newMemOffset;
     }
 
@@ -129,29 +265,93 @@ public class UnsafeSlabKeyStore<T extends UnsafeCodec> implements AutoCloseable
 
         while (true) {
             index = ++index & mask;
-            final int newValue = UnsafeApi.getInt(getOffset(index));
-            if (newValue != MISSING_VALUE) {
+            final long newSlot = UnsafeApi.getLong(getOffset(index));
+            if (slabIndex(newSlot) == MISSING_VALUE) {
                 return;
             }
 
-            final int hash = Hashing.hash(slab.keyHashCode(newValue), mask);
+            final int hash = Hashing.hash(keyHash(newSlot), mask);
 
             if ((index < hash && (hash <= deleteIndex || deleteIndex <= index)) ||
                     (hash <= deleteIndex && deleteIndex <= index)) {
 
-                UnsafeApi.putInt(getOffset(deleteIndex), newValue);
-                UnsafeApi.putInt(getOffset(index), MISSING_VALUE);
+                UnsafeApi.putLong(getOffset(deleteIndex), newSlot);
+                UnsafeApi.putLong(getOffset(index), MISSING_SLOT);
                 deleteIndex = index;
             }
         }
     }
 
+    //Low half is the slab index, high half the key's unmixed hash code
+    private static long slot(final int keyHash, final int slabIndex) {
+        return (long) keyHash << 32 | (slabIndex & 0xFFFF_FFFFL);
+    }
+
+    private static int slabIndex(final long slot) {
+        return (int) slot;
+    }
+
+    private static int keyHash(final long slot) {
+        return (int) (slot >>> 32);
+    }
+
+    protected int capacity() {
+        return capacity;
+    }
+
+    protected ProbeMode getProbeMode() {
+        return isRobinHood ? ProbeMode.ROBIN_HOOD : ProbeMode.LINEAR;
+    }
+
+    protected long getMemOffset() {
+        return memOffset;
+    }
+
+    //Sizes the table for a snapshot, the caller then fills the slot array directly without rehashing
+    protected void restore(final int capacity, final int size) {
+        if (this.capacity != capacity) {
+            final HugePageMemory oldHugePageTable = hugePageTable;
+            final long oldMemOffset = memOffset;
+            this.memOffset = allocateTable((long) capacity << SLOT_SHIFT);
+            freeTable(oldMemOffset, oldHugePageTable);
+        }
+        this.capacity = capacity;
+        this.size = size;
+        this.nextResizeLimit = (int) (this.capacity * loadFactor);
+    }
+
+    //In huge page mode the table lives in its own 2MB aligned region advised for transparent huge pages
+    private long allocateTable(final long length) {
+        if (!useHugePages) {
+            return UnsafeApi.allocateMemory(length);
+        }
+        hugePageTable = HugePageMemory.allocate(length);
+        return hugePageTable.address();
+    }
+
+    private static void freeTable(final long tableMemOffset, final HugePageMemory tableRegion) {
+        if (tableRegion != null) {
+            tableRegion.close();
+        } else {
+            UnsafeApi.freeMemory(tableMemOffset);
+        }
+    }
+
+    public boolean isHugePageBacked() {
+        return hugePageTable != null && hugePageTable.isAdvised();
+    }
+
+    //Reads /proc/self/smaps, not for the hot path
+    public long getGrantedHugePageBytes() {
+        return hugePageTable == null ? 0 : hugePageTable.grantedHugePageBytes();
+    }
+
     private long getOffset(final int index) {
-        return memOffset + ((long) index << 2);
+        return memOffset + ((long) index << SLOT_SHIFT);
     }
 
     @Override
     public void close() {
-        UnsafeApi.freeMemory(memOffset);
+        freeTable(memOffset, hugePageTable);
     }
 }
@@ -29,6 +29,15 @@ public class UnsafeSlabPage<T extends UnsafeCodec> {
         codec.wrap(offset + SLAB_PAGE_LIVE_PADDING_SIZE);
     }
 
+    //Marks count consecutive slots live and bumps the live counter once
+    protected void createRun(final int fromIndex, final int count) {
+        final int end = fromIndex + count;
+        for (int i = fromIndex; i < end; i++) {
+            UnsafeApi.putByte(getOffset(i), (byte) 1);
+        }
+        liveCounter += count;
+    }
+
     public void getAt(final int index, final T codec) {
         final long offset = getOffset(index) + SLAB_PAGE_LIVE_PADDING_SIZE;
         codec.wrap(offset);
@@ -54,11 +63,68 @@ public class UnsafeSlabPage<T extends UnsafeCodec> {
         return liveCounter;
     }
 
+    //Removes the slots of handles[from, to), which all sit on this page, and returns how many were live
+    protected int removeBatch(final int[] handles, final int from, final int to, final int inPageIndexMask) {
+        int removed = 0;
+        for (int i = from; i < to; i++) {
+            final long offset = getOffset(handles[i] & inPageIndexMask);
+            if (UnsafeApi.getByte(offset) != 0) {
+                UnsafeApi.putByte(offset, (byte) 0);
+                removed++;
+            }
+        }
+        liveCounter -= removed;
+        return removed;
+    }
+
+    protected boolean isLiveAt(final int index) {
+        return UnsafeApi.getByte(getOffset(index)) != 0;
+    }
+
+    //First live slot at or after fromIndex, -1 when there is none
+    public int nextLiveIndex(final int fromIndex) {
+        final int elementCount = singlePageSize / unitSize;
+        for (int i = fromIndex; i < elementCount; i++) {
+            if (UnsafeApi.getByte(getOffset(i)) != 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //Copies the record body only, the destination slot keeps the live byte it got from createAt
+    protected void copyRecordTo(final int index, final UnsafeSlabPage<T> destination, final int destinationIndex) {
+        UnsafeApi.copyMemory(getOffset(index) + SLAB_PAGE_LIVE_PADDING_SIZE,
+                destination.getOffset(destinationIndex) + SLAB_PAGE_LIVE_PADDING_SIZE,
+                unitSize - SLAB_PAGE_LIVE_PADDING_SIZE);
+    }
+
+    //Rebuilds the live counter from the per-record live bytes, used when a page is restored from a snapshot
+    protected int recoverLiveCount() {
+        final int elementCount = singlePageSize / unitSize;
+        short liveCount = 0;
+        for (int i = 0; i < elementCount; i++) {
+            if (UnsafeApi.getByte(getOffset(i)) != 0) {
+                liveCount++;
+            }
+        }
+        this.liveCounter = liveCount;
+        return liveCount;
+    }
+
     protected void cleanPage() {
         liveCounter = 0;
         UnsafeApi.setMemory(memOffset, singlePageSize, (byte) 0);
     }
 
+    protected long getMemOffset() {
+        return memOffset;
+    }
+
+    protected int getSinglePageSize() {
+        return singlePageSize;
+    }
+
     public int getPageIndex() {
         return pageIndex;
     }
@@ -71,10 +137,15 @@ public class UnsafeSlabPage<T extends UnsafeCodec> {
         return memOffset + ((long) index * unitSize);
     }
 
-    protected void tryFree() {
+    protected boolean tryFree() {
         if (isOwnAlloc) {
             UnsafeApi.freeMemory(memOffset);
         }
+        return isOwnAlloc;
+    }
+
+    protected boolean isOwnAlloc() {
+        return isOwnAlloc;
     }
 
     @Override
@@ -0,0 +1,187 @@
+package unsafeSlab;
+
+import org.agrona.BitUtil;
+import utils.FileChannelUtils;
+import utils.MemorySegmentUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
+
+//Point-in-time copy of an UnsafeSlab and its UnsafeSlabKeyStore.
+//Layout: [header][clean page indices][pages back to back][key store slot array].
+//FORMAT_VERSION guards the header fields, the slot size and the meaning of the slot array, which restore copies in
+//raw: any change to them bumps it, so a file written by other code is rejected rather than read with the wrong layout.
+//Both must be written and restored from the writer thread, which makes the copy consistent by construction.
+public class UnsafeSlabSnapshot {
+
+    private static final long MAGIC = 0x55534C42534E4150L;
+    private static final int FORMAT_VERSION = 3;
+    private static final int HEADER_SIZE = 64;
+
+    public static <T extends UnsafeCodec> void write(final Path path, final UnsafeSlab<T> slab,
+                                                     final UnsafeSlabKeyStore<T> keyStore) {
+        final int pageCount = slab.getPageCount();
+        //Released pages are written as zeroed clean pages so the restored directory has no holes
+        final IntArrayQueueWriter cleanPages = new IntArrayQueueWriter(slab.getCleanPageIndices().size() +
+                slab.getReleasedPageIndices().size());
+        slab.getCleanPageIndices().forEachInt(cleanPages);
+        slab.getReleasedPageIndices().forEachInt(cleanPages);
+        final ByteBuffer releasedPage = ByteBuffer.allocate(slab.getSinglePageSize());
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putLong(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putInt(slab.getSinglePageSize())
+                .putInt(pageCount)
+                .putInt(slab.getCursor().getCurrentPage().getPageIndex())
+                .putInt(slab.getCursor().getInPageIndex())
+                .putInt(cleanPages.count)
+                .putInt(keyStore.capacity())
+                .putInt(keyStore.size())
+                .putInt(keyStore.getProbeMode().ordinal())
+                .clear();
+
+        final ByteBuffer[] buffers = new ByteBuffer[pageCount + 3];
+        buffers[0] = header;
+        buffers[1] = cleanPages.buffer.flip();
+        for (int i = 0; i < pageCount; i++) {
+            final UnsafeSlabPage<T> page = slab.getPage(i);
+            buffers[i + 2] = page == null ? releasedPage.duplicate() : asByteBuffer(page);
+        }
+        buffers[pageCount + 2] = asByteBuffer(keyStore);
+
+        try (final FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            FileChannelUtils.writeFully(fileChannel, buffers);
+            fileChannel.force(false);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //Restores into a slab and key store built with the same page size and codec as the snapshotted ones
+    public static <T extends UnsafeCodec> void restore(final Path path, final UnsafeSlab<T> slab,
+                                                       final UnsafeSlabKeyStore<T> keyStore) {
+        try (final FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            FileChannelUtils.readFully(fileChannel, new ByteBuffer[]{header});
+            header.flip();
+            if (header.getLong() != MAGIC) {
+                throw new IllegalStateException("Not a slab snapshot: " + path);
+            }
+            final int formatVersion = header.getInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IllegalStateException("Snapshot format version " + formatVersion +
+                        " is not supported, expected " + FORMAT_VERSION + ": " + path);
+            }
+            final int singlePageSize = header.getInt();
+            if (singlePageSize != slab.getSinglePageSize()) {
+                throw new IllegalStateException("Snapshot page size " + singlePageSize +
+                        " does not match slab page size " + slab.getSinglePageSize());
+            }
+            final int pageCount = header.getInt();
+            final int cursorPageIndex = header.getInt();
+            final int cursorInPageIndex = header.getInt();
+            final int cleanPageCount = header.getInt();
+            final int keyStoreCapacity = header.getInt();
+            final int keyStoreSize = header.getInt();
+            final int probeMode = header.getInt();
+            //Everything is validated before the slab and key store are touched, a bad file leaves them as they were
+            if (pageCount < 1 || cleanPageCount < 0 || cleanPageCount >= pageCount) {
+                throw new IllegalStateException("Snapshot has " + cleanPageCount + " clean pages out of " +
+                        pageCount + ": " + path);
+            }
+            if (cursorPageIndex < 0 || cursorPageIndex >= pageCount || cursorInPageIndex < 0 ||
+                    cursorInPageIndex >= slab.getCursor().pageElementCount) {
+                throw new IllegalStateException("Snapshot cursor " + cursorPageIndex + "/" + cursorInPageIndex +
+                        " is outside the slab: " + path);
+            }
+            if (!BitUtil.isPowerOfTwo(keyStoreCapacity) || keyStoreSize < 0 || keyStoreSize >= keyStoreCapacity) {
+                throw new IllegalStateException("Snapshot key store holds " + keyStoreSize + " keys in " +
+                        keyStoreCapacity + " slots: " + path);
+            }
+            if (probeMode != keyStore.getProbeMode().ordinal()) {
+                throw new IllegalStateException("Snapshot probe mode " + probeMode + " does not match key store " +
+                        keyStore.getProbeMode() + ": " + path);
+            }
+            final long expectedSize = HEADER_SIZE + (long) cleanPageCount * Integer.BYTES +
+                    (long) pageCount * singlePageSize + ((long) keyStoreCapacity << UnsafeSlabKeyStore.SLOT_SHIFT);
+            if (fileChannel.size() != expectedSize) {
+                throw new IllegalStateException("Snapshot is " + fileChannel.size() + " bytes, expected " +
+                        expectedSize + ": " + path);
+            }
+
+            final ByteBuffer cleanPages = ByteBuffer.allocate(cleanPageCount * Integer.BYTES);
+            FileChannelUtils.readFully(fileChannel, new ByteBuffer[]{cleanPages});
+            cleanPages.flip();
+            //The cursor page is live, so it counts as already taken
+            final boolean[] isTaken = new boolean[pageCount];
+            isTaken[cursorPageIndex] = true;
+            for (int i = 0; i < cleanPageCount; i++) {
+                final int cleanPageIndex = cleanPages.getInt(i * Integer.BYTES);
+                if (cleanPageIndex < 0 || cleanPageIndex >= pageCount || isTaken[cleanPageIndex]) {
+                    throw new IllegalStateException("Snapshot clean page " + cleanPageIndex +
+                            " is out of range, repeated or the cursor page: " + path);
+                }
+                isTaken[cleanPageIndex] = true;
+            }
+
+            slab.ensurePageCount(pageCount);
+            keyStore.restore(keyStoreCapacity, keyStoreSize);
+
+            final ByteBuffer[] buffers = new ByteBuffer[pageCount + 1];
+            for (int i = 0; i < pageCount; i++) {
+                buffers[i] = asByteBuffer(slab.getPage(i));
+            }
+            buffers[pageCount] = asByteBuffer(keyStore);
+            FileChannelUtils.readFully(fileChannel, buffers);
+
+            for (int i = 0; i < pageCount; i++) {
+                slab.getPage(i).recoverLiveCount();
+            }
+            slab.getCleanPageIndices().clear();
+            for (int i = 0; i < cleanPageCount; i++) {
+                slab.getCleanPageIndices().addInt(cleanPages.getInt());
+            }
+            //Pages the target slab has beyond the snapshot were never used by the snapshotted slab
+            for (int i = pageCount; i < slab.getPageCount(); i++) {
+                if (slab.getPage(i) != null) {
+                    slab.getPage(i).cleanPage();
+                    slab.getCleanPageIndices().addInt(i);
+                }
+            }
+            slab.getCursor().resetTo(slab.getPage(cursorPageIndex), cursorInPageIndex);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ByteBuffer asByteBuffer(final UnsafeSlabPage<?> page) {
+        return MemorySegmentUtils.asByteBuffer(page.getMemOffset(), page.getSinglePageSize());
+    }
+
+    private static ByteBuffer asByteBuffer(final UnsafeSlabKeyStore<?> keyStore) {
+        return MemorySegmentUtils.asByteBuffer(keyStore.getMemOffset(),
+                (long) keyStore.capacity() << UnsafeSlabKeyStore.SLOT_SHIFT);
+    }
+
+    private static final class IntArrayQueueWriter implements IntConsumer {
+        private final ByteBuffer buffer;
+        private int count;
+
+        private IntArrayQueueWriter(final int size) {
+            this.buffer = ByteBuffer.allocate(size * Integer.BYTES);
+        }
+
+        @Override
+        public void accept(final int value) {
+            buffer.putInt(value);
+            count++;
+        }
+    }
+}
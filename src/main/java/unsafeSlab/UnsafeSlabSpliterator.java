@@ -0,0 +1,97 @@
+package unsafeSlab;
+
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+//Spliterator over the handles of live records. Splits hand off whole unstarted pages, so every task sweeps
+//contiguous page memory and no two tasks read the same page. The slab must not be written while it is in use.
+public class UnsafeSlabSpliterator<T extends UnsafeCodec> implements Spliterator.OfInt {
+
+    private final UnsafeSlab<T> slab;
+    private final int elementsPerPage;
+    private int pageIndex;
+    private int pageEnd;
+    private UnsafeSlabPage<T> page;
+    private int pageBase;
+    private int slot;
+    private int remaining;
+
+    public UnsafeSlabSpliterator(final UnsafeSlab<T> slab) {
+        this(slab, 0, slab.getPageCount());
+    }
+
+    private UnsafeSlabSpliterator(final UnsafeSlab<T> slab, final int pageIndex, final int pageEnd) {
+        this.slab = slab;
+        this.elementsPerPage = 1 << slab.getShiftCount();
+        this.pageIndex = pageIndex - 1;
+        this.pageEnd = pageEnd;
+        this.slot = -1;
+    }
+
+    @Override
+    public boolean tryAdvance(final IntConsumer action) {
+        while (true) {
+            if (remaining > 0 && (slot = page.nextLiveIndex(slot + 1)) >= 0) {
+                remaining--;
+                action.accept(pageBase | slot);
+                return true;
+            }
+            if (!nextPage()) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public void forEachRemaining(final IntConsumer action) {
+        do {
+            while (remaining-- > 0 && (slot = page.nextLiveIndex(slot + 1)) >= 0) {
+                action.accept(pageBase | slot);
+            }
+        } while (nextPage());
+    }
+
+    private boolean nextPage() {
+        remaining = 0;
+        if (pageIndex + 1 >= pageEnd) {
+            return false;
+        }
+        pageIndex++;
+        page = slab.getPage(pageIndex);
+        pageBase = pageIndex << slab.getShiftCount();
+        remaining = page == null ? 0 : page.getLiveCount();
+        slot = -1;
+        return true;
+    }
+
+    //Hands out the first half of the remaining pages, including the page being swept, to keep encounter order
+    @Override
+    public Spliterator.OfInt trySplit() {
+        final int firstUnstarted = pageIndex + 1;
+        final int middle = (firstUnstarted + pageEnd) >>> 1;
+        if (middle <= firstUnstarted) {
+            return null;
+        }
+        final UnsafeSlabSpliterator<T> prefix = new UnsafeSlabSpliterator<>(slab, firstUnstarted, middle);
+        prefix.page = page;
+        prefix.pageBase = pageBase;
+        prefix.slot = slot;
+        prefix.remaining = remaining;
+        this.pageIndex = middle - 1;
+        this.page = null;
+        this.slot = -1;
+        this.remaining = 0;
+        return prefix;
+    }
+
+    //Upper bound, live counts are not summed up front
+    @Override
+    public long estimateSize() {
+        return (long) (pageEnd - pageIndex - 1) * elementsPerPage + remaining;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | NONNULL;
+    }
+}
@@ -1,9 +1,12 @@
 package unsafeSlab;
 
-import utils.UnsafeBufferUtils;
+import org.agrona.UnsafeApi;
 
 public class UnsafeTestOrder implements UnsafeCodec {
 
+    public static final short ASCII_OFFSET = 0;
+    public static final short ASCII_LENGTH = 40;
+
     private long memOffset;
 
     @Override
@@ -23,16 +26,23 @@ public class UnsafeTestOrder implements UnsafeCodec {
 
     @Override
     public int keyOffset() {
-        return 0;
+        return ASCII_OFFSET;
     }
 
     @Override
     public int keyLength() {
-        return 0;
+        return ASCII_LENGTH;
     }
 
-    @Override
-    public int generateKeyHashCode(final long codecOffset) {
-        return UnsafeBufferUtils.unsafeHashCodeShortCircuiting(codecOffset + keyOffset(), keyLength());
+    public void setKey(final CharSequence charSequence) {
+        if (charSequence.length() > ASCII_LENGTH) {
+            throw new IndexOutOfBoundsException("CharSequence too long!");
+        }
+        final long keyOffset = memOffset + ASCII_OFFSET;
+        int i = 0;
+        for (; i < charSequence.length(); i++) {
+            UnsafeApi.putByte(keyOffset + i, (byte) charSequence.charAt(i));
+        }
+        UnsafeApi.setMemory(keyOffset + i, ASCII_LENGTH - i, (byte) 0);
     }
 }
@@ -3,6 +3,8 @@ package utils;
 import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
 
+import java.nio.ByteBuffer;
+
 public class DirectBufferUtils {
 
     public static void resetBuffer(final MutableDirectBuffer buffer) {
@@ -51,33 +53,12 @@ public class DirectBufferUtils {
         return true;
     }
 
-    public static int segmentHashCode(final DirectBuffer buffer, final int offset,
-                                      final int length) {
-        int i = 0, hashCode = 19;
-        for (final int end = length & ~7; i < end; i += 8) {
-            hashCode = hashCode * 31 + Long.hashCode(buffer.getLong(offset + i));
-        }
-
-        for (; i < length; i++) {
-            hashCode = hashCode * 31 + buffer.getByte(offset + i);
-        }
-        return hashCode;
-    }
-
-    public static int segmentHashCodeShortCircuiting(final DirectBuffer buffer, final int offset,
-                                                     final int length) {
-        int i = 0, hashCode = 19;
-        for (final int end = length & ~7; i < end; i += 8) {
-            final long value = buffer.getLong(offset + i);
-            if (value == 0) {
-                return hashCode;
-            }
-            hashCode = hashCode * 31 + Long.hashCode(value);
-        }
-
-        for (; i < length; i++) {
-            hashCode = hashCode * 31 + buffer.getByte(offset + i);
+    //A ByteBuffer view over exactly the wrapped region, for handing pages to channel IO without copying
+    public static ByteBuffer asByteBuffer(final DirectBuffer buffer) {
+        final ByteBuffer byteBuffer = buffer.byteBuffer();
+        if (byteBuffer == null) {
+            return MemorySegmentUtils.asByteBuffer(buffer.addressOffset(), buffer.capacity());
         }
-        return hashCode;
+        return byteBuffer.slice(buffer.wrapAdjustment(), buffer.capacity());
     }
 }
@@ -0,0 +1,34 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class FileChannelUtils {
+
+    public static void writeFully(final FileChannel fileChannel, final ByteBuffer[] buffers) throws IOException {
+        long remaining = remaining(buffers);
+        while (remaining > 0) {
+            remaining -= fileChannel.write(buffers);
+        }
+    }
+
+    public static void readFully(final FileChannel fileChannel, final ByteBuffer[] buffers) throws IOException {
+        long remaining = remaining(buffers);
+        while (remaining > 0) {
+            final long read = fileChannel.read(buffers);
+            if (read < 0) {
+                throw new IllegalStateException("Unexpected end of file, " + remaining + " bytes missing");
+            }
+            remaining -= read;
+        }
+    }
+
+    private static long remaining(final ByteBuffer[] buffers) {
+        long remaining = 0;
+        for (final ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        return remaining;
+    }
+}
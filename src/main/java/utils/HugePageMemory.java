@@ -0,0 +1,119 @@
+package utils;
+
+import org.agrona.UnsafeApi;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+//Native region aligned to and sized in 2MB steps, advised with MADV_HUGEPAGE so the kernel backs it with transparent
+//huge pages. The advice is only a request: grantedHugePageBytes reads /proc/self/smaps to see what was really given.
+public class HugePageMemory implements AutoCloseable {
+
+    public static final long HUGE_PAGE_SIZE = 2 * 1024 * 1024;
+
+    private static final Path TRANSPARENT_HUGE_PAGE_MODE = Path.of("/sys/kernel/mm/transparent_hugepage/enabled");
+    private static final Path SMAPS = Path.of("/proc/self/smaps");
+
+    private final long rawAddress;
+    private final long address;
+    private final long length;
+    private final boolean isAdvised;
+
+    private HugePageMemory(final long rawAddress, final long address, final long length, final boolean isAdvised) {
+        this.rawAddress = rawAddress;
+        this.address = address;
+        this.length = length;
+        this.isAdvised = isAdvised;
+    }
+
+    //Over-allocates by one huge page to align the start, the usable length is rounded up to whole huge pages.
+    //The region is zeroed after the advice, which also faults it in as huge pages where the kernel grants them.
+    public static HugePageMemory allocate(final long minimumLength) {
+        final HugePageMemory memory = reserve(minimumLength);
+        UnsafeApi.setMemory(memory.address, memory.length, (byte) 0);
+        return memory;
+    }
+
+    //Aligned and advised like allocate but left uninitialised, the pages fault in as the caller first writes them
+    public static HugePageMemory reserve(final long minimumLength) {
+        final long length = align(Math.max(minimumLength, 1));
+        final long rawAddress = UnsafeApi.allocateMemory(length + HUGE_PAGE_SIZE);
+        final long address = align(rawAddress);
+        final boolean isAdvised = LibC.madvise(address, length, LibC.MADV_HUGEPAGE);
+        return new HugePageMemory(rawAddress, address, length, isAdvised);
+    }
+
+    public long address() {
+        return address;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public boolean isAdvised() {
+        return isAdvised;
+    }
+
+    public long grantedHugePageBytes() {
+        return grantedHugePageBytes(address, length);
+    }
+
+    //Sums AnonHugePages of every mapping overlapping the range, mappings are reported whole
+    public static long grantedHugePageBytes(final long address, final long length) {
+        final List<String> lines;
+        try {
+            lines = Files.readAllLines(SMAPS);
+        } catch (final IOException | UncheckedIOException | SecurityException e) {
+            return 0;
+        }
+        long granted = 0;
+        boolean isOverlapping = false;
+        for (final String line : lines) {
+            final int dash = line.indexOf('-');
+            final int space = line.indexOf(' ');
+            if (dash > 0 && space > dash && isHex(line, 0, dash)) {
+                final long start = Long.parseUnsignedLong(line, 0, dash, 16);
+                final long end = Long.parseUnsignedLong(line, dash + 1, space, 16);
+                isOverlapping = start < address + length && address < end;
+            } else if (isOverlapping && line.startsWith("AnonHugePages:")) {
+                granted += Long.parseLong(line.substring("AnonHugePages:".length(), line.length() - 2).trim()) *
+                        1024;
+            }
+        }
+        return granted;
+    }
+
+    //The bracketed mode of the kernel's THP switch: always, madvise or never. "unsupported" without THP.
+    public static String transparentHugePageMode() {
+        try {
+            final String modes = Files.readString(TRANSPARENT_HUGE_PAGE_MODE);
+            final int start = modes.indexOf('[');
+            final int end = modes.indexOf(']');
+            return start >= 0 && end > start ? modes.substring(start + 1, end) : "unsupported";
+        } catch (final IOException | SecurityException e) {
+            return "unsupported";
+        }
+    }
+
+    private static long align(final long value) {
+        return (value + HUGE_PAGE_SIZE - 1) & -HUGE_PAGE_SIZE;
+    }
+
+    private static boolean isHex(final String line, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (Character.digit(line.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        UnsafeApi.freeMemory(rawAddress);
+    }
+}
@@ -0,0 +1,40 @@
+package utils;
+
+import org.agrona.DirectBuffer;
+
+import java.lang.foreign.MemorySegment;
+import java.util.Objects;
+
+//Hashes key bytes for every off-heap table. Codecs, slab pages, key stores and maps all go through the codec's
+//hasher, so a key hashes the same whether it is read from a lookup flyweight or from a table slot.
+public interface KeyHasher {
+
+    KeyHasher DEFAULT = StandardKeyHasher.WYHASH;
+
+    //base is null for off-heap memory, otherwise the array that address is an Unsafe offset into
+    int hashBytes(Object base, long address, int length);
+
+    default int hash(final long address, final int length) {
+        return hashBytes(null, address, length);
+    }
+
+    default int hash(final DirectBuffer buffer, final int offset, final int length) {
+        return hashBytes(buffer.byteArray(), buffer.addressOffset() + offset, length);
+    }
+
+    //Reads the segment's memory directly, so the confinement and liveness checks a segment access would make
+    //are done up front
+    default int hash(final MemorySegment segment, final long offset, final int length) {
+        if (!segment.isNative()) {
+            throw new IllegalArgumentException("Only native segments can be hashed: " + segment);
+        }
+        if (!segment.isAccessibleBy(Thread.currentThread())) {
+            throw new WrongThreadException("Segment is confined to another thread");
+        }
+        if (!segment.scope().isAlive()) {
+            throw new IllegalStateException("Already closed");
+        }
+        Objects.checkFromIndexSize(offset, length, segment.byteSize());
+        return hashBytes(null, segment.address() + offset, length);
+    }
+}
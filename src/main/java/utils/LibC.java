@@ -0,0 +1,65 @@
+package utils;
+
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.util.Optional;
+
+//Panama downcalls into the few libc memory calls the allocators use. Handles are null where the symbol is missing,
+//e.g. off Linux, and every call then reports failure instead of throwing.
+public class LibC {
+
+    public static final int MADV_HUGEPAGE = 14;
+
+    private static final MethodHandle MADVISE;
+    private static final MethodHandle MLOCK;
+    private static final MethodHandle MUNLOCK;
+
+    static {
+        final Linker linker = Linker.nativeLinker();
+        final SymbolLookup lookup = linker.defaultLookup();
+        final boolean isLinux = System.getProperty("os.name", "").toLowerCase().contains("linux");
+        final FunctionDescriptor addressLength = FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS,
+                ValueLayout.JAVA_LONG);
+        MADVISE = isLinux ? downcall(linker, lookup.find("madvise"), addressLength.appendArgumentLayouts(
+                ValueLayout.JAVA_INT)) : null;
+        MLOCK = downcall(linker, lookup.find("mlock"), addressLength);
+        MUNLOCK = downcall(linker, lookup.find("munlock"), addressLength);
+    }
+
+    private static MethodHandle downcall(final Linker linker, final Optional<MemorySegment> symbol,
+                                         final FunctionDescriptor descriptor) {
+        return symbol.map(address -> linker.downcallHandle(address, descriptor)).orElse(null);
+    }
+
+    public static boolean madvise(final long address, final long length, final int advice) {
+        return MADVISE != null && invoke(MADVISE, address, length, advice) == 0;
+    }
+
+    public static boolean mlock(final long address, final long length) {
+        return MLOCK != null && invoke(MLOCK, address, length) == 0;
+    }
+
+    public static boolean munlock(final long address, final long length) {
+        return MUNLOCK != null && invoke(MUNLOCK, address, length) == 0;
+    }
+
+    private static int invoke(final MethodHandle handle, final long address, final long length, final int advice) {
+        try {
+            return (int) handle.invokeExact(MemorySegment.ofAddress(address), length, advice);
+        } catch (final Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int invoke(final MethodHandle handle, final long address, final long length) {
+        try {
+            return (int) handle.invokeExact(MemorySegment.ofAddress(address), length);
+        } catch (final Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package utils;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+
+public class MemorySegmentUtils {
+
+    public static boolean segmentEquals(final MemorySegment segment, final long offset,
+                                        final MemorySegment other, final long otherOffset, final int length) {
+        int i = 0;
+
+        for (final int end = length & ~7; i < end; i += 8) {
+            if (segment.get(ValueLayout.JAVA_LONG_UNALIGNED, offset + i) !=
+                    other.get(ValueLayout.JAVA_LONG_UNALIGNED, otherOffset + i)) {
+                return false;
+            }
+        }
+        for (; i < length; i++) {
+            if (segment.get(ValueLayout.JAVA_BYTE, offset + i) != other.get(ValueLayout.JAVA_BYTE, otherOffset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static ByteBuffer asByteBuffer(final long address, final long length) {
+        return MemorySegment.ofAddress(address).reinterpret(length).asByteBuffer();
+    }
+}
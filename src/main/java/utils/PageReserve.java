@@ -0,0 +1,93 @@
+package utils;
+
+import org.agrona.concurrent.OneToOneConcurrentArrayQueue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+//Keeps up to targetCount ready pages produced on a background daemon thread, so the single writer polling them
+//never pays for allocation or page faults itself. The queue is single producer single consumer and lock-free.
+//The writer only wakes the provisioner once the reserve drops below the low-water mark, it then refills to target.
+public class PageReserve<P> implements AutoCloseable {
+
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    private final OneToOneConcurrentArrayQueue<P> reserve;
+    private final Supplier<P> pageFactory;
+    private final Consumer<P> pageDisposer;
+    private final int targetCount;
+    private final int lowWaterMark;
+    private final Thread provisioner;
+    private final AtomicLong exhaustedCount = new AtomicLong();
+    private volatile boolean isRunning = true;
+
+    public PageReserve(final String name, final int targetCount, final Supplier<P> pageFactory,
+                       final Consumer<P> pageDisposer) {
+        this(name, Math.max(1, targetCount / 2), targetCount, pageFactory, pageDisposer);
+    }
+
+    public PageReserve(final String name, final int lowWaterMark, final int targetCount,
+                       final Supplier<P> pageFactory, final Consumer<P> pageDisposer) {
+        if (targetCount < 1 || lowWaterMark < 1 || lowWaterMark > targetCount) {
+            throw new IllegalArgumentException("Need 0 < lowWaterMark <= targetCount: " + lowWaterMark + ", " +
+                    targetCount);
+        }
+        this.lowWaterMark = lowWaterMark;
+        this.reserve = new OneToOneConcurrentArrayQueue<>(targetCount);
+        this.pageFactory = pageFactory;
+        this.pageDisposer = pageDisposer;
+        this.targetCount = targetCount;
+        this.provisioner = new Thread(this::provision, name);
+        this.provisioner.setDaemon(true);
+        this.provisioner.start();
+    }
+
+    //Writer side. Returns null when the reserve ran dry, the caller then allocates inline.
+    public P poll() {
+        final P page = reserve.poll();
+        if (page == null) {
+            exhaustedCount.lazySet(exhaustedCount.get() + 1);
+        }
+        if (reserve.size() < lowWaterMark) {
+            LockSupport.unpark(provisioner);
+        }
+        return page;
+    }
+
+    public int size() {
+        return reserve.size();
+    }
+
+    //Number of polls that found the reserve empty, each one meant an inline allocation on the writer
+    public long getExhaustedCount() {
+        return exhaustedCount.get();
+    }
+
+    private void provision() {
+        while (isRunning) {
+            if (reserve.size() < lowWaterMark) {
+                while (isRunning && reserve.size() < targetCount) {
+                    reserve.offer(pageFactory.get());
+                }
+            }
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+    }
+
+    @Override
+    public void close() {
+        isRunning = false;
+        LockSupport.unpark(provisioner);
+        try {
+            provisioner.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        P page;
+        while ((page = reserve.poll()) != null) {
+            pageDisposer.accept(page);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package utils;
+
+import org.agrona.UnsafeApi;
+
+//How freshly allocated page memory is prepared before the writer first uses it. Touching writes one byte per OS
+//page so the minor faults happen at allocation time, locking additionally pins the pages with mlock.
+public enum PreTouch {
+    NONE,
+    TOUCH,
+    TOUCH_AND_LOCK;
+
+    public static final int OS_PAGE_SIZE = 4096;
+
+    //Rewrites the byte already there, so touching never changes the contents. Returns false if mlock failed.
+    public boolean prepare(final long address, final long length) {
+        if (this == NONE) {
+            return true;
+        }
+        for (long offset = 0; offset < length; offset += OS_PAGE_SIZE) {
+            UnsafeApi.putByte(address + offset, UnsafeApi.getByte(address + offset));
+        }
+        if (length > 0) {
+            UnsafeApi.putByte(address + length - 1, UnsafeApi.getByte(address + length - 1));
+        }
+        return this != TOUCH_AND_LOCK || LibC.mlock(address, length);
+    }
+
+    //Counterpart of prepare for memory about to be freed
+    public void release(final long address, final long length) {
+        if (this == TOUCH_AND_LOCK) {
+            LibC.munlock(address, length);
+        }
+    }
+}
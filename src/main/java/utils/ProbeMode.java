@@ -0,0 +1,13 @@
+package utils;
+
+//Collision handling of the open addressing off-heap tables.
+//ROBIN_HOOD keeps every probe run ordered by distance from the home slot: an insert takes the slot of any entry
+//closer to home than itself, so a lookup can stop at the first entry closer to home than the key would be,
+//and misses cost about as much as hits instead of scanning the whole cluster.
+public enum ProbeMode {
+    LINEAR,
+    ROBIN_HOOD;
+
+    //Inserts that end up this far from home grow the table early, unless it is already sparse
+    public static final int MAX_PROBE_DISTANCE = 128;
+}
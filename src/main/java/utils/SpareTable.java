@@ -0,0 +1,73 @@
+package utils;
+
+import org.agrona.UnsafeApi;
+
+//Native table for the next incremental resize. It is allocated uninitialised and filled with the empty slot byte a
+//chunk at a time, so the insert that swaps it in finds it ready instead of clearing the whole table inline.
+public class SpareTable implements AutoCloseable {
+
+    private final HugePageMemory hugePageMemory;
+    private final long address;
+    private final long length;
+    private final byte emptyByte;
+    private long clearedLength;
+
+    private SpareTable(final HugePageMemory hugePageMemory, final long address, final long length,
+                       final byte emptyByte) {
+        this.hugePageMemory = hugePageMemory;
+        this.address = address;
+        this.length = length;
+        this.emptyByte = emptyByte;
+    }
+
+    public static SpareTable allocate(final long length, final byte emptyByte, final boolean useHugePages) {
+        if (useHugePages) {
+            final HugePageMemory hugePageMemory = HugePageMemory.reserve(length);
+            return new SpareTable(hugePageMemory, hugePageMemory.address(), length, emptyByte);
+        }
+        return new SpareTable(null, UnsafeApi.allocateMemory(Math.max(length, 1)), length, emptyByte);
+    }
+
+    //Clears up to byteCount more bytes from where the last call stopped
+    public void clear(final long byteCount) {
+        final long end = Math.min(length, clearedLength + byteCount);
+        if (end > clearedLength) {
+            UnsafeApi.setMemory(address + clearedLength, end - clearedLength, emptyByte);
+            clearedLength = end;
+        }
+    }
+
+    public void clearAll() {
+        clear(length - clearedLength);
+    }
+
+    public boolean isCleared() {
+        return clearedLength == length;
+    }
+
+    public long address() {
+        return address;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public boolean isHugePageBacked() {
+        return hugePageMemory != null && hugePageMemory.isAdvised();
+    }
+
+    //Reads /proc/self/smaps, not for the hot path
+    public long grantedHugePageBytes() {
+        return hugePageMemory == null ? 0 : hugePageMemory.grantedHugePageBytes();
+    }
+
+    @Override
+    public void close() {
+        if (hugePageMemory != null) {
+            hugePageMemory.close();
+        } else {
+            UnsafeApi.freeMemory(address);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package utils;
+
+import org.agrona.UnsafeApi;
+import org.agrona.checksum.Checksum;
+import org.agrona.checksum.Crc32c;
+
+//Hashers shipped with the library. All read keys a word at a time in native order, so results are only stable
+//within one platform, which is all the in-memory tables and same-host snapshots need.
+public enum StandardKeyHasher implements KeyHasher {
+
+    //The original 31 multiplier polynomial over every word, cheap but clusters on keys that differ in few bits
+    POLYNOMIAL {
+        @Override
+        public int hashBytes(final Object base, final long address, final int length) {
+            int i = 0, hashCode = 19;
+            for (final int end = length & ~7; i < end; i += 8) {
+                hashCode = hashCode * 31 + Long.hashCode(UnsafeApi.getLong(base, address + i));
+            }
+            for (; i < length; i++) {
+                hashCode = hashCode * 31 + UnsafeApi.getByte(base, address + i);
+            }
+            return hashCode;
+        }
+    },
+
+    //wyhash style: 16 bytes per 64x64->128 bit multiply, the two halves of the product folded together
+    WYHASH {
+        @Override
+        public int hashBytes(final Object base, final long address, final int length) {
+            long hash = WY_SEED ^ length;
+            int i = 0;
+            for (final int end = length & ~15; i < end; i += 16) {
+                hash = mix(UnsafeApi.getLong(base, address + i) ^ WY_PRIME_1,
+                        UnsafeApi.getLong(base, address + i + 8) ^ hash);
+            }
+            if (length - i >= 8) {
+                hash = mix(UnsafeApi.getLong(base, address + i) ^ WY_PRIME_1, hash ^ WY_PRIME_2);
+                i += 8;
+            }
+            if (i < length) {
+                long tail = 0;
+                for (int shift = 0; i < length; i++, shift += 8) {
+                    tail |= (UnsafeApi.getByte(base, address + i) & 0xFFL) << shift;
+                }
+                hash = mix(tail ^ WY_PRIME_1, hash ^ WY_PRIME_2);
+            }
+            hash = mix(hash ^ WY_PRIME_1, length ^ WY_PRIME_2);
+            return (int) (hash ^ (hash >>> 32));
+        }
+    },
+
+    //CRC32C, through the JDK's intrinsic for off-heap keys when java.util.zip is opened to agrona, otherwise
+    //table driven. Both paths give the standard checksum so heap and off-heap copies of a key agree.
+    CRC32C {
+        @Override
+        public int hashBytes(final Object base, final long address, final int length) {
+            final Checksum intrinsic = Crc32cIntrinsic.CHECKSUM;
+            if (base == null && intrinsic != null) {
+                return intrinsic.compute(address, 0, length);
+            }
+            int crc = ~0;
+            for (int i = 0; i < length; i++) {
+                crc = CRC32C_TABLE[(crc ^ UnsafeApi.getByte(base, address + i)) & 0xFF] ^ (crc >>> 8);
+            }
+            return ~crc;
+        }
+    };
+
+    private static final long WY_SEED = 0xa0761d6478bd642fL;
+    private static final long WY_PRIME_1 = 0xe7037ed1a0b428dbL;
+    private static final long WY_PRIME_2 = 0x8ebc6af09c88c6e3L;
+
+    private static final int CRC32C_POLYNOMIAL = 0x82F63B78;
+    private static final int[] CRC32C_TABLE = new int[256];
+
+    static {
+        for (int n = 0; n < 256; n++) {
+            int crc = n;
+            for (int k = 0; k < 8; k++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ CRC32C_POLYNOMIAL : crc >>> 1;
+            }
+            CRC32C_TABLE[n] = crc;
+        }
+    }
+
+    private static long mix(final long a, final long b) {
+        return a * b ^ Math.unsignedMultiplyHigh(a, b);
+    }
+
+    public boolean isIntrinsic() {
+        return this == CRC32C && Crc32cIntrinsic.CHECKSUM != null;
+    }
+
+    //Agrona reaches CRC32C.updateDirectByteBuffer reflectively, which fails without the add-opens
+    private static final class Crc32cIntrinsic {
+        private static final Checksum CHECKSUM = load();
+
+        private static Checksum load() {
+            try {
+                return Crc32c.INSTANCE;
+            } catch (final Throwable e) {
+                return null;
+            }
+        }
+    }
+}
@@ -28,30 +28,4 @@ public class UnsafeBufferUtils {
         }
         return true;
     }
-
-    public static int unsafeHashCode(final long memOffset, final int length) {
-        int i = 0, hashCode = 19;
-        for (final int end = length & ~7; i < end; i += 8) {
-            hashCode = hashCode * 31 + Long.hashCode(UnsafeApi.getLong(memOffset + i));
-        }
-        for (; i < length; i++) {
-            hashCode = hashCode * 31 + UnsafeApi.getByte(memOffset + i);
-        }
-        return hashCode;
-    }
-
-    public static int unsafeHashCodeShortCircuiting(final long memOffset, final int length) {
-        int i = 0, hashCode = 19;
-        for (final int end = length & ~7; i < end; i += 8) {
-            final long value = UnsafeApi.getLong(memOffset + i);
-            if (value == 0) {
-                return hashCode;
-            }
-            hashCode = hashCode * 31 + Long.hashCode(value);
-        }
-        for (; i < length; i++) {
-            hashCode = hashCode * 31 + UnsafeApi.getByte(memOffset + i);
-        }
-        return hashCode;
-   }
 }
@@ -5,8 +5,18 @@ import org.agrona.collections.Object2LongHashMap;
 import org.junit.jupiter.api.Test;
 import slab.ConcreteTestCodec;
 import slab.TestCodec;
+import utils.HugePageMemory;
+import utils.ProbeMode;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PrimitiveIterator;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class BytesToIntOffHeapMapTests {
 
@@ -50,4 +60,218 @@ public class BytesToIntOffHeapMapTests {
             offHeapMap.removeKey(lookupCodec);
         }
     }
+
+    @Test
+    public void hugePageTableSurvivesRehash() {
+        try (final BytesToIntOffHeapMap<TestCodec> map = new BytesToIntOffHeapMap<>(8, 0.5f, TestCodec::new, true)) {
+            final TestCodec testCodec = new ConcreteTestCodec();
+            for (int i = 0; i < 100000; i++) {
+                testCodec.setId(i);
+                map.put(testCodec, i * 2);
+            }
+            assertEquals(100000, map.size());
+            for (int i = 0; i < 100000; i++) {
+                testCodec.setId(i);
+                assertEquals(i * 2, map.getInt(testCodec));
+            }
+            if (!"unsupported".equals(HugePageMemory.transparentHugePageMode())) {
+                assertTrue(map.isHugePageBacked());
+            }
+            assertTrue(map.getGrantedHugePageBytes() >= 0);
+        }
+    }
+
+    @Test
+    public void robinHoodPutGetRemove() {
+        final BytesToIntOffHeapMap<TestCodec> map
+                = new BytesToIntOffHeapMap<>(8, 0.9f, TestCodec::new, false, ProbeMode.ROBIN_HOOD);
+        final TestCodec testCodec = new ConcreteTestCodec();
+        for (int i = 0; i < 100000; i++) {
+            testCodec.setId(i);
+            assertEquals(-1, map.putValue(testCodec, i * 2));
+        }
+        testCodec.setId(7);
+        assertEquals(14, map.putValue(testCodec, 15));
+        assertEquals(100000, map.size());
+        assertTrue(map.getMaxProbeDistance() <= ProbeMode.MAX_PROBE_DISTANCE);
+
+        for (int i = 0; i < 100000; i += 2) {
+            testCodec.setId(i);
+            assertEquals(i * 2, map.removeKey(testCodec));
+        }
+        for (int i = 0; i < 100000; i++) {
+            testCodec.setId(i);
+            final int expected = i == 7 ? 15 : i % 2 == 1 ? i * 2 : -1;
+            assertEquals(expected, map.getInt(testCodec));
+        }
+        testCodec.setId(-5);
+        assertEquals(-1, map.getInt(testCodec));
+        assertEquals(50000, map.size());
+    }
+
+    @Test
+    public void incrementalRehashKeepsBothTablesVisible() {
+        for (final ProbeMode probeMode : ProbeMode.values()) {
+            final BytesToIntOffHeapMap<TestCodec> map
+                    = new BytesToIntOffHeapMap<>(8, 0.5f, TestCodec::new, false, probeMode);
+            map.setIncrementalRehash(4);
+            final TestCodec testCodec = new ConcreteTestCodec();
+            boolean sawMigration = false;
+            for (int i = 0; i < 20000; i++) {
+                testCodec.setId(i);
+                assertEquals(-1, map.putValue(testCodec, i * 2));
+                sawMigration |= map.isMigrating();
+            }
+            assertTrue(sawMigration);
+            assertTrue(map.isMigrating());
+            assertTrue(map.containsValue(2));
+
+            for (int i = 0; i < 20000; i += 2) {
+                testCodec.setId(i);
+                assertEquals(i * 2, map.removeKey(testCodec));
+                testCodec.setId(i + 1);
+                assertEquals((i + 1) * 2, map.putValue(testCodec, i));
+            }
+            assertEquals(10000, map.size());
+            for (int i = 0; i < 20000; i++) {
+                testCodec.setId(i);
+                assertEquals(i % 2 == 1 ? i - 1 : -1, map.getInt(testCodec));
+            }
+            map.setIncrementalRehash(0);
+            assertFalse(map.isMigrating());
+        }
+    }
+
+    @Test
+    public void incrementalRehashDrainsBeforeEveryResizeAtStepOne() {
+        for (final ProbeMode probeMode : ProbeMode.values()) {
+            try (final BytesToIntOffHeapMap<TestCodec> map
+                         = new BytesToIntOffHeapMap<>(8, 0.65f, TestCodec::new, false, probeMode)) {
+                map.setIncrementalRehash(1);
+                final TestCodec testCodec = new ConcreteTestCodec();
+                int resizeCount = 0;
+                for (int i = 0; i < 20000; i++) {
+                    final boolean wasMigrating = map.isMigrating();
+                    final int capacity = map.capacity();
+                    testCodec.setId(i);
+                    map.putValue(testCodec, i);
+                    if (map.capacity() != capacity) {
+                        //The old table was drained by earlier puts, this one only swapped the tables
+                        assertFalse(wasMigrating);
+                        assertTrue(map.isMigrating());
+                        resizeCount++;
+                    }
+                }
+                assertTrue(resizeCount >= 10);
+                for (int i = 0; i < 20000; i++) {
+                    testCodec.setId(i);
+                    assertEquals(i, map.getInt(testCodec));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void removeKeyReturnsRemovedValueAfterCompaction() {
+        final BytesToIntOffHeapMap<TestCodec> map = new BytesToIntOffHeapMap<>(8, 0.9f, TestCodec::new);
+        final TestCodec testCodec = new ConcreteTestCodec();
+        for (int i = 0; i < 5000; i++) {
+            testCodec.setId(i);
+            map.putValue(testCodec, i * 2);
+        }
+        for (int i = 0; i < 5000; i++) {
+            testCodec.setId(i);
+            assertEquals(i * 2, map.removeKey(testCodec));
+        }
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void viewsIterateAndRemoveThroughTheTable() {
+        for (final ProbeMode probeMode : ProbeMode.values()) {
+            final BytesToIntOffHeapMap<TestCodec> map
+                    = new BytesToIntOffHeapMap<>(8, 0.75f, TestCodec::new, false, probeMode);
+            final TestCodec testCodec = new ConcreteTestCodec();
+            for (int i = 0; i < 4000; i++) {
+                testCodec.setId(i);
+                map.putValue(testCodec, i * 2);
+            }
+
+            final boolean[] seen = new boolean[4000];
+            map.forEachInt((key, value) -> {
+                assertEquals(key.getId() * 2, value);
+                assertFalse(seen[key.getId()]);
+                seen[key.getId()] = true;
+            });
+            for (final boolean wasSeen : seen) {
+                assertTrue(wasSeen);
+            }
+
+            //Odd keys go through the key iterator, every other even key through the entry iterator
+            int visited = 0;
+            for (final Iterator<TestCodec> keys = map.keySet().iterator(); keys.hasNext(); visited++) {
+                if (keys.next().getId() % 2 == 1) {
+                    keys.remove();
+                }
+            }
+            assertEquals(4000, visited);
+            assertEquals(2000, map.size());
+
+            for (final Iterator<Map.Entry<TestCodec, Integer>> entries = map.entrySet().iterator(); entries.hasNext(); ) {
+                final Map.Entry<TestCodec, Integer> entry = entries.next();
+                assertEquals(entry.getKey().getId() * 2, entry.getValue());
+                if (entry.getKey().getId() % 4 == 0) {
+                    entries.remove();
+                } else {
+                    entry.setValue(-entry.getValue());
+                }
+            }
+            assertEquals(1000, map.size());
+
+            long valueSum = 0;
+            int valueCount = 0;
+            for (final PrimitiveIterator.OfInt values = map.values().iterator(); values.hasNext(); valueCount++) {
+                valueSum += values.nextInt();
+            }
+            assertEquals(1000, valueCount);
+            long expectedSum = 0;
+            for (int i = 2; i < 4000; i += 4) {
+                expectedSum -= i * 2;
+                testCodec.setId(i);
+                assertEquals(-i * 2, map.getInt(testCodec));
+                assertTrue(map.keySet().contains(testCodec));
+                assertTrue(map.entrySet().contains(Map.entry(testCodec, -i * 2)));
+            }
+            assertEquals(expectedSum, valueSum);
+            testCodec.setId(4);
+            assertFalse(map.keySet().contains(testCodec));
+
+            map.keySet().clear();
+            assertTrue(map.isEmpty());
+            assertFalse(map.values().iterator().hasNext());
+        }
+    }
+
+    @Test
+    public void entrySetEqualsHashMapEntrySet() {
+        final BytesToIntOffHeapMap<DirectBufferUnsafeString> map
+                = new BytesToIntOffHeapMap<>(8, () -> new DirectBufferUnsafeString(16));
+        final Map<DirectBufferUnsafeString, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            final DirectBufferUnsafeString key = new DirectBufferUnsafeString(16);
+            key.set(String.valueOf(i));
+            map.putValue(key, i * 3);
+            expected.put(key, i * 3);
+        }
+
+        assertEquals(expected.entrySet(), map.entrySet());
+        assertEquals(map.entrySet(), expected.entrySet());
+        assertEquals(expected.entrySet().hashCode(), map.entrySet().hashCode());
+
+        final DirectBufferUnsafeString key = new DirectBufferUnsafeString(16);
+        key.set("7");
+        map.putValue(key, 8);
+        assertNotEquals(expected.entrySet(), map.entrySet());
+        assertNotEquals(map.entrySet(), expected.entrySet());
+    }
 }
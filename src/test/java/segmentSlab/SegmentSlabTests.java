@@ -0,0 +1,116 @@
+package segmentSlab;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SegmentSlabTests {
+
+    @Test
+    public void slabAddsPageWhenCleanExhausted() {
+        try (final SegmentSlab<SegmentTestOrder> slab = new SegmentSlab<>((short) 64, 4, SegmentTestOrder::new)) {
+            final SegmentTestOrder testCodec = new SegmentTestOrder();
+            for (int i = 0; i < 320; i++) {
+                assertEquals(i, slab.create(testCodec));
+            }
+
+            for (int i = 0; i < 63; i++) {
+                slab.removeAt(i);
+            }
+            for (int i = 320; i < 383; i++) {
+                assertEquals(i, slab.create(testCodec));
+            }
+            slab.removeAt(63);
+            assertEquals(383, slab.create(testCodec));
+            for (int i = 0; i < 64; i++) {
+                assertEquals(i, slab.create(testCodec));
+            }
+        }
+    }
+
+    @Test
+    public void slabIterationTest() {
+        try (final SegmentSlab<SegmentTestOrder> slab = new SegmentSlab<>((short) 256, 8192, SegmentTestOrder::new)) {
+            final SegmentTestOrder testCodec = new SegmentTestOrder();
+            final int iterations = 256 * 8192;
+            for (int i = 0; i < iterations; i++) {
+                assertEquals(i, slab.create(testCodec));
+            }
+
+            for (int i = 0; i < iterations; i++) {
+                slab.getAt(i, testCodec);
+            }
+
+            for (int i = 0; i < iterations; i++) {
+                slab.removeAt(i);
+            }
+        }
+    }
+
+    @Test
+    public void confinedSlabRejectsOtherThreadsAndClosedAccess() {
+        final SegmentSlab<SegmentTestOrder> slab = new SegmentSlab<>((short) 64, 4, SegmentTestOrder::new);
+        final SegmentTestOrder testCodec = new SegmentTestOrder();
+        final int index = slab.create(testCodec);
+        testCodec.setKey("ABC123");
+
+        final ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> CompletableFuture.runAsync(() -> slab.keyHashCode(index)).get());
+        assertTrue(exception.getCause() instanceof WrongThreadException);
+
+        slab.close();
+        assertThrows(IllegalStateException.class, () -> slab.keyHashCode(index));
+    }
+
+    @Test
+    public void sharedSlabAllowsOtherThreads() throws Exception {
+        try (final SegmentSlab<SegmentTestOrder> slab = new SegmentSlab<>((short) 64, 4, SegmentTestOrder::new, true)) {
+            final SegmentTestOrder testCodec = new SegmentTestOrder();
+            final int index = slab.create(testCodec);
+            testCodec.setKey("ABC123");
+            final int expectedHash = slab.keyHashCode(index);
+
+            assertEquals(expectedHash, CompletableFuture.supplyAsync(() -> slab.keyHashCode(index)).get());
+        }
+    }
+
+    @Test
+    public void keyStoreInsertGetRemove() {
+        try (final SegmentSlab<SegmentTestOrder> slab = new SegmentSlab<>((short) 64, 4, SegmentTestOrder::new);
+             final SegmentSlabKeyStore<SegmentTestOrder> keyStore = new SegmentSlabKeyStore<>(8, 0.65f, slab)) {
+            final SegmentTestOrder testOrder = new SegmentTestOrder();
+            for (int i = 0; i < 1000; i++) {
+                final int index = slab.create(testOrder);
+                testOrder.setKey(String.valueOf(i));
+                keyStore.insert(index, testOrder);
+            }
+            assertEquals(1000, keyStore.size());
+
+            try (final SegmentSlab<SegmentTestOrder> lookupSlab = new SegmentSlab<>((short) 64, 1,
+                    SegmentTestOrder::new)) {
+                final SegmentTestOrder lookup = new SegmentTestOrder();
+                lookupSlab.create(lookup);
+                for (int i = 0; i < 1000; i++) {
+                    lookup.setKey(String.valueOf(i));
+                    assertEquals(i, keyStore.getKey(lookup));
+                }
+                lookup.setKey("MISS");
+                assertEquals(-1, keyStore.getKey(lookup));
+
+                for (int i = 0; i < 500; i++) {
+                    lookup.setKey(String.valueOf(i));
+                    assertEquals(i, keyStore.removeCodec(lookup));
+                }
+                for (int i = 500; i < 1000; i++) {
+                    assertTrue(keyStore.removeAt(i));
+                }
+                assertTrue(keyStore.isEmpty());
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package slab;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BitmapSlabTests {
+
+    @Test
+    public void recordAlignmentFollowsCodecSize() {
+        assertEquals(BitmapSlab.WORD_ALIGNMENT, BitmapSlab.recordAlignment((short) 4));
+        assertEquals(BitmapSlab.WORD_ALIGNMENT, BitmapSlab.recordAlignment((short) 40));
+        assertEquals(BitmapSlab.WORD_ALIGNMENT, BitmapSlab.recordAlignment((short) 100));
+        assertEquals(BitmapSlab.CACHE_LINE_ALIGNMENT, BitmapSlab.recordAlignment((short) 64));
+        assertEquals(BitmapSlab.CACHE_LINE_ALIGNMENT, BitmapSlab.recordAlignment((short) 120));
+        assertEquals(BitmapSlab.CACHE_LINE_ALIGNMENT, BitmapSlab.recordAlignment((short) 256));
+    }
+
+    @Test
+    public void recordsStartAligned() {
+        final BitmapSlab<TestCodec> slab = new BitmapSlab<>((short) 100, 2, () -> new TestCodec());
+        assertEquals(8, slab.getUnitSize());
+        assertEquals(16, slab.getPageHeaderSize());
+
+        final TestCodec testCodec = new TestCodec();
+        for (int i = 0; i < 300; i++) {
+            slab.create(testCodec);
+            assertEquals(0, testCodec.buffer().addressOffset() % BitmapSlab.WORD_ALIGNMENT);
+        }
+    }
+
+    @Test
+    public void recordsSurviveNeighbourRemoval() {
+        final BitmapSlab<TestCodec> slab = new BitmapSlab<>((short) 128, 1, () -> new TestCodec());
+
+        final TestCodec testCodec = new TestCodec();
+        for (int i = 0; i < 256; i++) {
+            assertEquals(i, slab.create(testCodec));
+            testCodec.setId(i);
+        }
+        for (int i = 0; i < 256; i += 2) {
+            slab.removeAt(i);
+        }
+        for (int i = 1; i < 256; i += 2) {
+            slab.getAt(i, testCodec);
+            assertEquals(i, testCodec.getId());
+        }
+        assertEquals(64, slab.getPage(0).getLiveCount());
+    }
+
+    @Test
+    public void nextLiveIndexSkipsDeadSlots() {
+        final BitmapSlab<TestCodec> slab = new BitmapSlab<>((short) 256, 1, () -> new TestCodec());
+
+        final TestCodec testCodec = new TestCodec();
+        for (int i = 0; i < 256; i++) {
+            slab.create(testCodec);
+        }
+        for (int i = 0; i < 256; i++) {
+            if (i != 3 && i != 64 && i != 200) {
+                slab.removeAt(i);
+            }
+        }
+        final BitmapSlabPage<TestCodec> page = (BitmapSlabPage<TestCodec>) slab.getPage(0);
+        assertEquals(3, page.nextLiveIndex(0));
+        assertEquals(64, page.nextLiveIndex(4));
+        assertEquals(64, page.nextLiveIndex(64));
+        assertEquals(200, page.nextLiveIndex(65));
+        assertEquals(-1, page.nextLiveIndex(201));
+        assertEquals(-1, page.nextLiveIndex(256));
+        assertTrue(page.isLiveAt(200));
+        assertFalse(page.isLiveAt(199));
+    }
+
+    @Test
+    public void emptiedPageIsCleanedAndReused() {
+        final BitmapSlab<TestCodec> slab = new BitmapSlab<>((short) 64, 1, () -> new TestCodec());
+
+        final TestCodec testCodec = new TestCodec();
+        for (int i = 0; i < 128; i++) {
+            slab.create(testCodec);
+        }
+        for (int i = 0; i < 64; i++) {
+            slab.removeAt(i);
+        }
+        final BitmapSlabPage<TestCodec> page = (BitmapSlabPage<TestCodec>) slab.getPage(0);
+        assertEquals(0, page.getLiveCount());
+        assertEquals(-1, page.nextLiveIndex(0));
+        for (int i = 128; i < 192; i++) {
+            assertEquals(i, slab.create(testCodec));
+        }
+        assertEquals(0, slab.create(testCodec));
+        assertEquals(0, page.nextLiveIndex(0));
+    }
+
+    @Test
+    public void recoverLiveCountCountsBitmap() {
+        final BitmapSlab<TestCodec> slab = new BitmapSlab<>((short) 128, 1, () -> new TestCodec());
+
+        final TestCodec testCodec = new TestCodec();
+        for (int i = 0; i < 100; i++) {
+            slab.create(testCodec);
+        }
+        for (int i = 0; i < 100; i += 3) {
+            slab.removeAt(i);
+        }
+        final SlabPage<TestCodec> page = slab.getPage(0);
+        final int liveCount = page.getLiveCount();
+        page.resetLiveCount();
+        assertEquals(liveCount, page.recoverLiveCount());
+        assertEquals(liveCount, page.getLiveCount());
+    }
+
+    @Test
+    public void createBatchSetsBitsAcrossWords() {
+        final BitmapSlab<TestCodec> slab = new BitmapSlab<>((short) 256, 1, () -> new TestCodec());
+
+        final TestCodec testCodec = new TestCodec();
+        for (int i = 0; i < 5; i++) {
+            slab.create(testCodec);
+        }
+        final int[] count = new int[1];
+        slab.createBatch(150, handle -> count[0]++);
+        assertEquals(150, count[0]);
+
+        final BitmapSlabPage<TestCodec> page = (BitmapSlabPage<TestCodec>) slab.getPage(0);
+        assertEquals(155, page.getLiveCount());
+        assertEquals(155, page.recoverLiveCount());
+        assertEquals(-1, page.nextLiveIndex(155));
+        assertEquals(155, slab.create(testCodec));
+    }
+}
@@ -0,0 +1,255 @@
+package slab;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrentSlabKeyStoreTests {
+
+    @Test
+    public void insertGetRemoveAcrossResizes() {
+        final TestOrder testOrder = new TestOrder();
+        final TestOrder lookup = new TestOrder();
+        lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+        final Slab<TestOrder> slab = new Slab<>((short) 64, 4, () -> new TestOrder());
+        final ConcurrentSlabKeyStore<TestOrder> keyStore = new ConcurrentSlabKeyStore<>(16, 0.65f, slab);
+
+        for (int i = 0; i < 10000; i++) {
+            final int index = slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set(String.valueOf(i));
+            keyStore.insert(index, testOrder);
+        }
+        assertEquals(10000, keyStore.size());
+
+        for (int i = 0; i < 10000; i++) {
+            lookup.getUnsafeAsciiString().set(String.valueOf(i));
+            assertEquals(i, keyStore.getKey(lookup));
+        }
+
+        for (int i = 0; i < 10000; i += 2) {
+            lookup.getUnsafeAsciiString().set(String.valueOf(i));
+            assertEquals(i, keyStore.removeCodec(lookup));
+        }
+        for (int i = 1; i < 10000; i += 2) {
+            assertTrue(keyStore.removeAt(i));
+        }
+        assertFalse(keyStore.removeAt(1));
+        assertTrue(keyStore.isEmpty());
+
+        lookup.getUnsafeAsciiString().set("5");
+        assertEquals(-1, keyStore.getKey(lookup));
+    }
+
+    @Test
+    public void tombstonesAreClearedByResize() {
+        final TestOrder testOrder = new TestOrder();
+        final TestOrder lookup = new TestOrder();
+        lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+        final Slab<TestOrder> slab = new Slab<>((short) 64, 4, () -> new TestOrder());
+        final ConcurrentSlabKeyStore<TestOrder> keyStore = new ConcurrentSlabKeyStore<>(64, 0.65f, slab);
+
+        final int index = slab.create(testOrder);
+        testOrder.getUnsafeAsciiString().set("churn");
+        for (int i = 0; i < 100000; i++) {
+            keyStore.insert(index, testOrder);
+            assertTrue(keyStore.removeAt(index));
+        }
+        keyStore.insert(index, testOrder);
+        lookup.getUnsafeAsciiString().set("churn");
+        assertEquals(index, keyStore.getKey(lookup));
+        assertEquals(1, keyStore.size());
+    }
+
+    @Test
+    public void concurrentWritersAndReaders() throws InterruptedException {
+        final int count = 200000;
+        final int writerCount = 4;
+        final int readerCount = 3;
+        final TestOrder testOrder = new TestOrder();
+        final Slab<TestOrder> slab = new Slab<>((short) 1024, 256, () -> new TestOrder());
+        final ConcurrentSlabKeyStore<TestOrder> keyStore = new ConcurrentSlabKeyStore<>(16, 0.65f, slab);
+
+        //Records are created up front, the slab itself is single writer
+        for (int i = 0; i < count; i++) {
+            slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set(String.valueOf(i));
+        }
+
+        //A stable prefix is inserted before readers start and must be visible throughout every resize
+        final int stableCount = 1000;
+        for (int i = 0; i < stableCount; i++) {
+            slab.getAt(i, testOrder);
+            keyStore.insert(i, testOrder);
+        }
+
+        final AtomicBoolean isRunning = new AtomicBoolean(true);
+        final AtomicInteger readerMisses = new AtomicInteger();
+        //Assertions failing on other threads only kill that thread, so failures are collected and checked here
+        final Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        final Thread[] readers = new Thread[readerCount];
+        for (int r = 0; r < readerCount; r++) {
+            final int readerId = r;
+            readers[r] = new Thread(() -> {
+                try {
+                    final TestOrder lookup = new TestOrder();
+                    lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+                    int i = readerId;
+                    while (isRunning.get()) {
+                        final int key = i++ % stableCount;
+                        lookup.getUnsafeAsciiString().set(String.valueOf(key));
+                        if (keyStore.getKey(lookup) != key) {
+                            readerMisses.incrementAndGet();
+                        }
+                    }
+                } catch (final Throwable t) {
+                    failures.add(t);
+                }
+            });
+            readers[r].start();
+        }
+
+        final Thread[] writers = new Thread[writerCount];
+        for (int w = 0; w < writerCount; w++) {
+            final int writerId = w;
+            writers[w] = new Thread(() -> {
+                try {
+                    final TestOrder codec = new TestOrder();
+                    for (int i = stableCount + writerId; i < count; i += writerCount) {
+                        slab.getAt(i, codec);
+                        keyStore.insert(i, codec);
+                        if ((i & 3) == 0 && !keyStore.removeAt(i)) {
+                            throw new AssertionError("removeAt failed for " + i);
+                        }
+                    }
+                } catch (final Throwable t) {
+                    failures.add(t);
+                }
+            });
+            writers[w].start();
+        }
+        for (final Thread writer : writers) {
+            writer.join();
+        }
+        isRunning.set(false);
+        for (final Thread reader : readers) {
+            reader.join();
+        }
+
+        assertTrue(failures.isEmpty(), failures::toString);
+        assertEquals(0, readerMisses.get());
+        final TestOrder lookup = new TestOrder();
+        lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+        int expectedSize = stableCount;
+        for (int i = stableCount; i < count; i++) {
+            lookup.getUnsafeAsciiString().set(String.valueOf(i));
+            if ((i & 3) == 0) {
+                assertEquals(-1, keyStore.getKey(lookup));
+            } else {
+                assertEquals(i, keyStore.getKey(lookup));
+                expectedSize++;
+            }
+        }
+        assertEquals(expectedSize, keyStore.size());
+    }
+
+    @Test
+    public void readersFindEveryKeyWhileMigrationIsPaused() throws InterruptedException {
+        final int count = 666;
+        final MigrationGate gate = new MigrationGate();
+        final TestOrder testOrder = new TestOrder();
+        final TestOrder lookup = new TestOrder();
+        lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+        final Slab<TestOrder> slab = new Slab<>((short) 1024, 4, () -> new GatedOrder(gate));
+        final ConcurrentSlabKeyStore<TestOrder> keyStore = new ConcurrentSlabKeyStore<>(1024, 0.65f, slab);
+
+        for (int i = 0; i <= count; i++) {
+            slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set(String.valueOf(i));
+        }
+        //Filling past the resize limit starts a resize, the next write migrates the table
+        for (int i = 0; i < count; i++) {
+            slab.getAt(i, testOrder);
+            keyStore.insert(i, testOrder);
+        }
+
+        //Pause the migration half way through the live slots, leaving MOVED slots in front of uncopied ones
+        gate.pauseAfter(count / 2);
+        final Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        final Thread writer = new Thread(() -> {
+            try {
+                final TestOrder codec = new TestOrder();
+                slab.getAt(count, codec);
+                keyStore.insert(count, codec);
+            } catch (final Throwable t) {
+                failures.add(t);
+            }
+        });
+        writer.start();
+        assertTrue(gate.paused.await(10, TimeUnit.SECONDS));
+
+        for (int i = 0; i < count; i++) {
+            lookup.getUnsafeAsciiString().set(String.valueOf(i));
+            assertEquals(i, keyStore.getKey(lookup));
+        }
+
+        gate.resumed.countDown();
+        writer.join();
+        assertTrue(failures.isEmpty(), failures::toString);
+        for (int i = 0; i <= count; i++) {
+            lookup.getUnsafeAsciiString().set(String.valueOf(i));
+            assertEquals(i, keyStore.getKey(lookup));
+        }
+        assertEquals(count + 1, keyStore.size());
+    }
+
+    private static final class MigrationGate {
+
+        private final CountDownLatch paused = new CountDownLatch(1);
+        private final CountDownLatch resumed = new CountDownLatch(1);
+        private final AtomicInteger remaining = new AtomicInteger(-1);
+
+        private void pauseAfter(final int hashCount) {
+            remaining.set(hashCount);
+        }
+
+        private void onSlabHash() {
+            if (remaining.get() > 0 && remaining.decrementAndGet() == 0) {
+                paused.countDown();
+                try {
+                    resumed.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    //The slab's reusable codec hashes records for the store's migration, so it can hold the migration mid table
+    private static final class GatedOrder extends TestOrder {
+
+        private final MigrationGate gate;
+
+        private GatedOrder(final MigrationGate gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public int generateKeyHashCode(final MutableDirectBuffer buffer, final int offset) {
+            gate.onSlabHash();
+            return super.generateKeyHashCode(buffer, offset);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package slab;
+
+import org.agrona.collections.IntArrayList;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GenerationalSlabTests {
+
+    @Test
+    public void staleHandleIsRejectedAfterSlotReuse() {
+        final GenerationalSlab<TestOrder> slab = new GenerationalSlab<>((short) 4, 1, () -> new TestOrder());
+        final TestOrder testOrder = new TestOrder();
+        final TestOrder lookup = new TestOrder();
+        lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+
+        final int[] handles = new int[4];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set("first" + i);
+        }
+        //Roll the cursor onto a new page so the first one is recycled once emptied
+        final int spill = slab.create(testOrder);
+        for (final int handle : handles) {
+            assertTrue(slab.isValid(handle));
+            slab.removeAt(handle);
+            assertFalse(slab.isValid(handle));
+        }
+
+        final int[] reused = new int[4];
+        for (int i = 0; i < 3; i++) {
+            slab.create(testOrder);
+        }
+        for (int i = 0; i < reused.length; i++) {
+            reused[i] = slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set("second" + i);
+        }
+        for (int i = 0; i < reused.length; i++) {
+            assertEquals(slab.indexOf(handles[i]), slab.indexOf(reused[i]));
+            assertNotEquals(handles[i], reused[i]);
+
+            assertNull(slab.get(handles[i]));
+            assertFalse(slab.tryGetAt(handles[i], testOrder));
+            assertThrows(IllegalStateException.class, () -> slab.getAt(handles[0], testOrder));
+
+            lookup.getUnsafeAsciiString().set("second" + i);
+            assertFalse(slab.equalsUnderlying(handles[i], lookup));
+            assertTrue(slab.equalsUnderlying(reused[i], lookup));
+            assertNotNull(slab.get(reused[i]));
+        }
+
+        //A stale remove must not free the new occupant
+        slab.removeAt(handles[1]);
+        assertTrue(slab.isValid(reused[1]));
+        assertTrue(slab.isValid(spill));
+    }
+
+    @Test
+    public void keyStoreWorksOnHandles() {
+        final GenerationalSlab<TestOrder> slab = new GenerationalSlab<>((short) 64, 4, () -> new TestOrder());
+        final SlabKeyStore<TestOrder> keyStore = new SlabKeyStore<>(16, 0.65f, slab);
+        final TestOrder testOrder = new TestOrder();
+        final TestOrder lookup = new TestOrder();
+        lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+
+        for (int round = 0; round < 3; round++) {
+            final int[] handles = new int[1000];
+            for (int i = 0; i < handles.length; i++) {
+                handles[i] = slab.create(testOrder);
+                testOrder.getUnsafeAsciiString().set(String.valueOf(i));
+                keyStore.insert(handles[i], testOrder);
+            }
+            for (int i = 0; i < handles.length; i++) {
+                lookup.getUnsafeAsciiString().set(String.valueOf(i));
+                assertEquals(handles[i], keyStore.getKey(lookup));
+                assertEquals(handles[i], keyStore.removeCodec(lookup));
+                slab.removeAt(handles[i]);
+            }
+            assertTrue(keyStore.isEmpty());
+        }
+    }
+
+    @Test
+    public void forEachLiveHandsOutCurrentHandles() {
+        final GenerationalSlab<TestCodec> slab = new GenerationalSlab<>((short) 4, 1, () -> new TestCodec());
+        final TestCodec testCodec = new TestCodec();
+
+        final int[] first = new int[4];
+        for (int i = 0; i < first.length; i++) {
+            first[i] = slab.create(testCodec);
+        }
+        slab.create(testCodec);
+        for (final int handle : first) {
+            slab.removeAt(handle);
+        }
+        final IntArrayList created = new IntArrayList();
+        for (int i = 0; i < 7; i++) {
+            created.addInt(slab.create(testCodec));
+        }
+
+        final IntArrayList visited = new IntArrayList();
+        slab.forEachLive(handle -> {
+            assertTrue(slab.isValid(handle));
+            visited.addInt(handle);
+        });
+        assertEquals(8, visited.size());
+        assertTrue(visited.containsAll(created));
+        assertFalse(visited.contains(first[0]));
+    }
+}
@@ -0,0 +1,84 @@
+package slab;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MappedSlabPageAllocatorTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void slabContentsSurviveReopen() {
+        final Path slabFile = tempDir.resolve("orders.slab");
+        final TestCodec testCodec = new TestCodec();
+
+        try (final Slab<TestCodec> slab = new Slab<>((short) 64, 2, TestCodec::new,
+                new MappedSlabPageAllocator(slabFile))) {
+            //Fills the two initial pages and grows a third
+            for (int i = 0; i < 150; i++) {
+                assertEquals(i, slab.create(testCodec));
+                testCodec.setId(i * 10);
+            }
+            //Empties the first page entirely
+            for (int i = 0; i < 64; i++) {
+                slab.removeAt(i);
+            }
+            slab.removeAt(100);
+        }
+
+        try (final Slab<TestCodec> slab = new Slab<>((short) 64, 2, TestCodec::new,
+                new MappedSlabPageAllocator(slabFile))) {
+            for (int i = 64; i < 150; i++) {
+                if (i == 100) {
+                    continue;
+                }
+                slab.getAt(i, testCodec);
+                assertEquals(i * 10, testCodec.getId());
+            }
+
+            //Only the emptied first page is clean, partially filled pages are not reused
+            for (int i = 0; i < 64; i++) {
+                assertEquals(i, slab.create(testCodec));
+            }
+            assertEquals(192, slab.create(testCodec));
+        }
+    }
+
+    @Test
+    public void reopenWithDifferentPageSizeFails() {
+        final Path slabFile = tempDir.resolve("orders.slab");
+        try (final Slab<TestCodec> slab = new Slab<>((short) 64, 2, TestCodec::new,
+                new MappedSlabPageAllocator(slabFile))) {
+            slab.create(new TestCodec());
+        }
+
+        final MappedSlabPageAllocator allocator = new MappedSlabPageAllocator(slabFile);
+        assertThrows(IllegalStateException.class, () -> new Slab<>((short) 128, 2, TestCodec::new, allocator));
+        allocator.close();
+    }
+
+    @Test
+    public void reopenWithDifferentRecordSizeFails() {
+        final Path slabFile = tempDir.resolve("orders.slab");
+        try (final Slab<TestCodec> slab = new Slab<>((short) 64, 2, TestCodec::new,
+                new MappedSlabPageAllocator(slabFile))) {
+            slab.create(new TestCodec());
+        }
+
+        //Twice the slot size at half the slots per page keeps the page size the same
+        final MappedSlabPageAllocator allocator = new MappedSlabPageAllocator(slabFile);
+        assertThrows(IllegalStateException.class, () -> new Slab<>((short) 32, 2, () -> new TestCodec() {
+            @Override
+            public short bufferSize() {
+                return 9;
+            }
+        }, allocator));
+        allocator.close();
+    }
+}
@@ -0,0 +1,82 @@
+package slab;
+
+import org.junit.jupiter.api.Test;
+import utils.PreTouch;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PreTouchSlabPageAllocatorTests {
+
+    @Test
+    public void touchedPagesBehaveLikePlainPages() {
+        final PreTouchSlabPageAllocator allocator = new PreTouchSlabPageAllocator(new DirectSlabPageAllocator(),
+                PreTouch.TOUCH_AND_LOCK);
+        try (final Slab<TestCodec> slab = new Slab<>((short) 64, 4, () -> new TestCodec(), allocator)) {
+            final TestCodec testCodec = new TestCodec();
+            for (int i = 0; i < 64 * 8; i++) {
+                final int index = slab.create(testCodec);
+                testCodec.setId(i);
+                assertEquals(i, index);
+            }
+            for (int i = 0; i < 64 * 8; i++) {
+                assertEquals(i, slab.get(i).getId());
+            }
+        }
+    }
+
+    @Test
+    public void eagerGrowthServesPagesFromReserve() throws InterruptedException {
+        final PreTouchSlabPageAllocator allocator = new PreTouchSlabPageAllocator(new DirectSlabPageAllocator(),
+                PreTouch.TOUCH, 4);
+        try (final Slab<TestCodec> slab = new Slab<>((short) 64, 1, () -> new TestCodec(), allocator)) {
+            //Let the reserve thread fill up before the cursor needs new pages
+            awaitReserveSize(allocator, 4);
+            final TestCodec testCodec = new TestCodec();
+            for (int i = 0; i < 64 * 4; i++) {
+                slab.create(testCodec);
+                testCodec.setId(i);
+            }
+            assertEquals(0, allocator.getReserveExhaustedCount());
+
+            for (int i = 0; i < 64 * 100; i++) {
+                slab.create(testCodec);
+            }
+            for (int i = 0; i < 64 * 4; i++) {
+                assertEquals(i, slab.get(i).getId());
+            }
+            assertTrue(slab.getPageCount() > 100);
+        }
+    }
+
+    @Test
+    public void provisionedGrowthKeepsReserveAboveLowWaterMark() throws InterruptedException {
+        final PreTouchSlabPageAllocator allocator = new PreTouchSlabPageAllocator(new DirectSlabPageAllocator(),
+                PreTouch.TOUCH, 4, 8);
+        try (final Slab<TestCodec> slab = new Slab<>((short) 64, 1, () -> new TestCodec(), allocator)) {
+            slab.reserveDirectoryCapacity(256);
+            awaitReserveSize(allocator, 8);
+            final TestCodec testCodec = new TestCodec();
+            //Growth slower than provisioning never finds the reserve empty
+            for (int page = 0; page < 40; page++) {
+                for (int i = 0; i < 64; i++) {
+                    slab.create(testCodec);
+                }
+                awaitReserveSize(allocator, 4);
+            }
+            assertEquals(0, allocator.getReserveExhaustedCount());
+            assertEquals(41, slab.getPageCount());
+        }
+    }
+
+    private static void awaitReserveSize(final PreTouchSlabPageAllocator allocator, final int size)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (allocator.getReserveSize() < size && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(allocator.getReserveSize() >= size);
+    }
+}
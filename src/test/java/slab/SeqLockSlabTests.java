@@ -0,0 +1,144 @@
+package slab;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SeqLockSlabTests {
+
+    private static final int FIRST_FIELD = 64;
+    private static final int SECOND_FIELD = 192;
+
+    @Test
+    public void readsOnlyPublishedLiveRecords() {
+        final SeqLockSlab<TestOrder> slab = new SeqLockSlab<>((short) 64, 2, TestOrder::new);
+        final TestOrder testOrder = new TestOrder();
+        final UnsafeBuffer copy = new UnsafeBuffer(ByteBuffer.allocateDirect(256));
+
+        final int index = slab.create(testOrder);
+        testOrder.buffer().putLong(FIRST_FIELD, 42);
+        slab.endWrite(index);
+        assertTrue(slab.read(index, copy, 0));
+        assertEquals(42, copy.getLong(FIRST_FIELD));
+
+        final TestOrder reader = new TestOrder();
+        final long version = slab.beginRead(index, reader);
+        assertTrue(SeqLockSlab.isLive(version));
+        assertEquals(42, reader.buffer().getLong(FIRST_FIELD));
+        assertTrue(slab.validateRead(index, version));
+
+        slab.beginWrite(index, testOrder);
+        testOrder.buffer().putLong(FIRST_FIELD, 43);
+        slab.endWrite(index);
+        assertFalse(slab.validateRead(index, version));
+
+        slab.removeAt(index);
+        assertFalse(slab.read(index, copy, 0));
+        assertFalse(SeqLockSlab.isLive(slab.beginRead(index, reader)));
+    }
+
+    @Test
+    public void throwingWriterStillPublishesTheSlot() {
+        final SeqLockSlab<TestOrder> slab = new SeqLockSlab<>((short) 64, 2, TestOrder::new);
+        final TestOrder testOrder = new TestOrder();
+        final UnsafeBuffer copy = new UnsafeBuffer(ByteBuffer.allocateDirect(256));
+
+        assertThrows(IllegalStateException.class, () -> slab.create(testOrder, order -> {
+            order.buffer().putLong(FIRST_FIELD, 42);
+            throw new IllegalStateException();
+        }));
+        assertTrue(slab.read(0, copy, 0));
+        assertEquals(42, copy.getLong(FIRST_FIELD));
+
+        final long version = slab.beginRead(0, new TestOrder());
+        assertThrows(IllegalStateException.class, () -> slab.write(0, testOrder, order -> {
+            order.buffer().putLong(FIRST_FIELD, 43);
+            throw new IllegalStateException();
+        }));
+        assertFalse(slab.validateRead(0, version));
+        assertTrue(slab.read(0, copy, 0));
+        assertEquals(43, copy.getLong(FIRST_FIELD));
+    }
+
+    @Test
+    public void slabAddsPageWhenCleanExhausted() {
+        final SeqLockSlab<TestCodec> slab = new SeqLockSlab<>((short) 64, 4, TestCodec::new);
+        final TestCodec testCodec = new TestCodec();
+        for (int i = 0; i < 320; i++) {
+            assertEquals(i, slab.create(testCodec));
+            slab.endWrite(i);
+        }
+        for (int i = 0; i < 64; i++) {
+            slab.removeAt(i);
+        }
+        for (int i = 320; i < 384; i++) {
+            assertEquals(i, slab.create(testCodec));
+            slab.endWrite(i);
+        }
+        assertEquals(0, slab.create(testCodec));
+    }
+
+    @Test
+    public void readersNeverObserveTornRecords() throws InterruptedException {
+        final SeqLockSlab<TestOrder> slab = new SeqLockSlab<>((short) 64, 1, TestOrder::new);
+        final TestOrder writer = new TestOrder();
+        final int recordCount = 256;
+        for (int i = 0; i < recordCount; i++) {
+            slab.create(writer);
+            slab.endWrite(i);
+        }
+
+        final AtomicBoolean isRunning = new AtomicBoolean(true);
+        final AtomicInteger tornReads = new AtomicInteger();
+        final AtomicLong successfulReads = new AtomicLong();
+        final CountDownLatch readersDone = new CountDownLatch(3);
+        for (int r = 0; r < 3; r++) {
+            final Thread readerThread = new Thread(() -> {
+                final UnsafeBuffer copy = new UnsafeBuffer(ByteBuffer.allocateDirect(256));
+                final TestOrder reader = new TestOrder();
+                int i = 0;
+                while (isRunning.get()) {
+                    final int index = i++ & (recordCount - 1);
+                    if (slab.read(index, copy, 0)) {
+                        if (copy.getLong(FIRST_FIELD) != copy.getLong(SECOND_FIELD)) {
+                            tornReads.incrementAndGet();
+                        }
+                        successfulReads.incrementAndGet();
+                    }
+                    final long version = slab.beginRead(index, reader);
+                    final long first = reader.buffer().getLong(FIRST_FIELD);
+                    final long second = reader.buffer().getLong(SECOND_FIELD);
+                    if (slab.validateRead(index, version) && SeqLockSlab.isLive(version) && first != second) {
+                        tornReads.incrementAndGet();
+                    }
+                }
+                readersDone.countDown();
+            });
+            readerThread.setDaemon(true);
+            readerThread.start();
+        }
+
+        for (long value = 0; value < 2_000_000; value++) {
+            final int index = (int) (value & (recordCount - 1));
+            slab.beginWrite(index, writer);
+            writer.buffer().putLong(FIRST_FIELD, value);
+            writer.buffer().putLong(SECOND_FIELD, value);
+            slab.endWrite(index);
+        }
+        isRunning.set(false);
+        readersDone.await();
+
+        assertEquals(0, tornReads.get());
+        assertTrue(successfulReads.get() > 0);
+    }
+}
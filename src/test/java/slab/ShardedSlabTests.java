@@ -0,0 +1,100 @@
+package slab;
+
+import org.agrona.collections.IntHashSet;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedSlabTests {
+
+    private static TestOrder keyOrder(final String key) {
+        final TestOrder order = new TestOrder();
+        order.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+        order.getUnsafeAsciiString().set(key);
+        return order;
+    }
+
+    @Test
+    public void createGetRemoveAcrossShards() {
+        try (ShardedSlab<TestOrder> shardedSlab = new ShardedSlab<>(4, (short) 64, 4, 64, 0.65f,
+                () -> new TestOrder())) {
+            final TestOrder testOrder = new TestOrder();
+            final TestOrder lookup = keyOrder("");
+            final int[] handles = new int[10000];
+            final int[] shardCounts = new int[4];
+            for (int i = 0; i < handles.length; i++) {
+                lookup.getUnsafeAsciiString().set(String.valueOf(i));
+                final int shardIndex = shardedSlab.shardFor(lookup);
+                final int handle = shardedSlab.create(shardIndex, testOrder);
+                testOrder.getUnsafeAsciiString().set(String.valueOf(i));
+                shardedSlab.insert(handle, testOrder);
+                assertEquals(shardIndex, shardedSlab.shardOf(handle));
+                shardCounts[shardIndex]++;
+                handles[i] = handle;
+            }
+            assertEquals(handles.length, shardedSlab.size());
+            for (int shardCount : shardCounts) {
+                assertTrue(shardCount > 0);
+            }
+
+            for (int i = 0; i < handles.length; i++) {
+                lookup.getUnsafeAsciiString().set(String.valueOf(i));
+                assertEquals(handles[i], shardedSlab.getKey(lookup));
+                assertTrue(shardedSlab.equalsUnderlying(handles[i], lookup));
+            }
+
+            final IntHashSet seen = new IntHashSet();
+            shardedSlab.forEachHandle(seen::add);
+            assertEquals(handles.length, seen.size());
+
+            for (int i = 0; i < handles.length; i += 2) {
+                lookup.getUnsafeAsciiString().set(String.valueOf(i));
+                assertEquals(handles[i], shardedSlab.removeCodec(lookup));
+            }
+            for (int i = 1; i < handles.length; i += 2) {
+                shardedSlab.removeAt(handles[i]);
+            }
+            assertTrue(shardedSlab.isEmpty());
+            lookup.getUnsafeAsciiString().set("1");
+            assertEquals(-1, shardedSlab.getKey(lookup));
+        }
+    }
+
+    @Test
+    public void partitionGroupsBatchByShard() {
+        try (ShardedSlab<TestOrder> shardedSlab = new ShardedSlab<>(8, (short) 64, 1, 64, 0.65f,
+                () -> new TestOrder())) {
+            final TestOrder[] batch = new TestOrder[500];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = keyOrder("K" + i);
+            }
+            final int[] shardIndices = new int[batch.length];
+            final int[] positions = new int[batch.length];
+            final int[] shardOffsets = new int[9];
+            shardedSlab.partition(batch, batch.length, shardIndices, positions, shardOffsets);
+
+            assertEquals(0, shardOffsets[0]);
+            assertEquals(batch.length, shardOffsets[8]);
+            for (int shard = 0; shard < 8; shard++) {
+                int previous = -1;
+                for (int i = shardOffsets[shard]; i < shardOffsets[shard + 1]; i++) {
+                    assertEquals(shard, shardedSlab.shardFor(batch[positions[i]]));
+                    assertTrue(positions[i] > previous);
+                    previous = positions[i];
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shardCountMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedSlab<>(3, (short) 64, 1, 64, 0.65f,
+                () -> new TestOrder()));
+    }
+}
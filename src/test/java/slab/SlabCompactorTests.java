@@ -0,0 +1,226 @@
+package slab;
+
+import org.agrona.collections.Int2IntHashMap;
+import org.agrona.collections.IntArrayList;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SlabCompactorTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void compactsSparsePagesAndPatchesKeyStore() {
+        final Slab<TestOrder> slab = new Slab<>((short) 64, 4, () -> new TestOrder());
+        final SlabKeyStore<TestOrder> keyStore = new SlabKeyStore<>(4096, 0.65f, slab);
+        final TestOrder testOrder = new TestOrder();
+        final TestOrder lookup = new TestOrder();
+        lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+
+        final int recordCount = 64 * 20;
+        for (int i = 0; i < recordCount; i++) {
+            final int index = slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set(String.valueOf(i));
+            keyStore.insert(index, testOrder);
+        }
+        //Leave two live records on each of the first 19 pages
+        for (int i = 0; i < 64 * 19; i++) {
+            if (i % 64 < 62) {
+                keyStore.removeAt(i);
+                slab.removeAt(i);
+            }
+        }
+        final int cleanBefore = slab.getCleanPageIndices().size();
+
+        final int[] relocations = new int[1];
+        final SlabCompactor<TestOrder> compactor = new SlabCompactor<>(slab, (fromIndex, toIndex) -> {
+            assertTrue(keyStore.relocate(fromIndex, toIndex));
+            relocations[0]++;
+        }, 0.25f);
+
+        int slices = 0;
+        int moved;
+        while ((moved = compactor.compact(8, Long.MAX_VALUE)) > 0) {
+            assertTrue(moved <= 8);
+            slices++;
+        }
+        assertEquals(38, relocations[0]);
+        assertEquals(38, compactor.getRelocatedCount());
+        assertTrue(slices >= 5);
+        assertTrue(slab.getCleanPageIndices().size() >= cleanBefore + 18);
+
+        int liveCount = 0;
+        for (int pageIndex = 0; pageIndex < slab.getPageCount(); pageIndex++) {
+            liveCount += slab.getPage(pageIndex).getLiveCount();
+        }
+        assertEquals(38 + 64, liveCount);
+        assertEquals(38 + 64, keyStore.size());
+
+        for (int i = 0; i < recordCount; i++) {
+            if (i < 64 * 19 && i % 64 < 62) {
+                continue;
+            }
+            lookup.getUnsafeAsciiString().set(String.valueOf(i));
+            final int index = keyStore.getKey(lookup);
+            assertTrue(index >= 0);
+            assertTrue(slab.equalsUnderlying(index, lookup));
+        }
+    }
+
+    @Test
+    public void zeroBudgetSliceStopsEarly() {
+        final Slab<TestOrder> slab = new Slab<>((short) 64, 4, () -> new TestOrder());
+        final TestOrder testOrder = new TestOrder();
+        for (int i = 0; i < 64 * 40; i++) {
+            slab.create(testOrder);
+        }
+        for (int i = 0; i < 64 * 39; i++) {
+            if (i % 64 != 0) {
+                slab.removeAt(i);
+            }
+        }
+        final SlabCompactor<TestOrder> compactor = new SlabCompactor<>(slab, (fromIndex, toIndex) -> { }, 0.5f);
+        assertTrue(compactor.compact(Integer.MAX_VALUE, 0) < 39);
+        assertThrows(IllegalArgumentException.class, () -> new SlabCompactor<>(slab, (fromIndex, toIndex) -> { }, 1));
+    }
+
+    @Test
+    public void generationalSlabRelocatesHandles() {
+        final GenerationalSlab<TestOrder> slab = new GenerationalSlab<>((short) 64, 4, () -> new TestOrder());
+        final SlabKeyStore<TestOrder> keyStore = new SlabKeyStore<>(1024, 0.65f, slab);
+        final TestOrder testOrder = new TestOrder();
+        final TestOrder lookup = new TestOrder();
+        lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+
+        final int[] handles = new int[64 * 4];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set(String.valueOf(i));
+            keyStore.insert(handles[i], testOrder);
+        }
+        for (int i = 0; i < 64 * 3; i++) {
+            if (i % 64 < 62) {
+                keyStore.removeAt(handles[i]);
+                slab.removeAt(handles[i]);
+            }
+        }
+
+        final Int2IntHashMap moves = new Int2IntHashMap(-1);
+        final SlabCompactor<TestOrder> compactor = new SlabCompactor<>(slab, (fromHandle, toHandle) -> {
+            assertTrue(slab.isValid(fromHandle));
+            assertTrue(slab.isValid(toHandle));
+            assertTrue(keyStore.relocate(fromHandle, toHandle));
+            moves.put(fromHandle, toHandle);
+        }, 0.25f);
+        while (compactor.compact(8, Long.MAX_VALUE) > 0) {
+            //drain
+        }
+        assertEquals(6, moves.size());
+
+        for (int i = 0; i < handles.length; i++) {
+            if (i < 64 * 3 && i % 64 < 62) {
+                continue;
+            }
+            final int handle = moves.getOrDefault(handles[i], handles[i]);
+            if (handle != handles[i]) {
+                assertFalse(slab.isValid(handles[i]));
+            }
+            lookup.getUnsafeAsciiString().set(String.valueOf(i));
+            assertEquals(handle, keyStore.getKey(lookup));
+            assertTrue(slab.equalsUnderlying(handle, lookup));
+        }
+    }
+
+    @Test
+    public void seqLockSlabPublishesRelocatedRecords() {
+        final SeqLockSlab<TestOrder> slab = new SeqLockSlab<>((short) 64, 4, TestOrder::new);
+        final TestOrder testOrder = new TestOrder();
+        final UnsafeBuffer copy = new UnsafeBuffer(ByteBuffer.allocateDirect(256));
+        for (int i = 0; i < 64 * 4; i++) {
+            slab.create(testOrder);
+            testOrder.buffer().putLong(64, i);
+            slab.endWrite(i);
+        }
+        for (int i = 0; i < 64 * 3; i++) {
+            if (i % 64 != 0) {
+                slab.removeAt(i);
+            }
+        }
+
+        final Int2IntHashMap moves = new Int2IntHashMap(-1);
+        final SlabCompactor<TestOrder> compactor = new SlabCompactor<>(slab, moves::put, 0.25f);
+        while (compactor.compact(8, Long.MAX_VALUE) > 0) {
+            //drain
+        }
+        assertEquals(3, moves.size());
+
+        //An unpublished slot would leave readers spinning on it
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> moves.forEachInt((fromIndex, toIndex) -> {
+            assertFalse(slab.read(fromIndex, copy, 0));
+            assertTrue(slab.read(toIndex, copy, 0));
+            assertEquals(fromIndex, copy.getLong(64));
+        }));
+    }
+
+    @Test
+    public void journalReplayReproducesCompactedIndices() {
+        final Path journalFile = tempDir.resolve("compacted.journal");
+        final TestCodec testCodec = new TestCodec();
+        final Slab<TestCodec> slab = new Slab<>((short) 64, 4, TestCodec::new);
+
+        try (final SlabJournal<TestCodec> journal = new SlabJournal<>(journalFile, 4096)) {
+            for (int i = 0; i < 64 * 4; i++) {
+                final int index = slab.create(testCodec);
+                testCodec.setId(i);
+                journal.logCreate(index, testCodec);
+            }
+            for (int i = 0; i < 64 * 3; i++) {
+                if (i % 64 < 60) {
+                    slab.removeAt(i);
+                    journal.logRemove(i);
+                }
+            }
+            final SlabCompactor<TestCodec> compactor =
+                    new SlabCompactor<>(slab, (fromIndex, toIndex) -> { }, 0.25f, journal);
+            while (compactor.compact(8, Long.MAX_VALUE) > 0) {
+                //drain
+            }
+            assertEquals(12, compactor.getRelocatedCount());
+            //Creates after the compaction only line up on replay if the moves were replayed too
+            for (int i = 0; i < 64; i++) {
+                final int index = slab.create(testCodec);
+                testCodec.setId(1000 + i);
+                journal.logCreate(index, testCodec);
+            }
+        }
+
+        final Slab<TestCodec> replayed = new Slab<>((short) 64, 4, TestCodec::new);
+        try (final SlabJournal<TestCodec> journal = new SlabJournal<>(journalFile, 4096)) {
+            journal.replay(replayed);
+        }
+        final IntArrayList liveIndices = new IntArrayList();
+        slab.forEachLive(liveIndices::addInt);
+        final IntArrayList replayedIndices = new IntArrayList();
+        replayed.forEachLive(replayedIndices::addInt);
+        assertEquals(liveIndices, replayedIndices);
+        final TestCodec replayedCodec = new TestCodec();
+        for (int i = 0; i < liveIndices.size(); i++) {
+            slab.getAt(liveIndices.getInt(i), testCodec);
+            replayed.getAt(liveIndices.getInt(i), replayedCodec);
+            assertEquals(testCodec.getId(), replayedCodec.getId());
+        }
+    }
+}
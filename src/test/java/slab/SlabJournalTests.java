@@ -0,0 +1,79 @@
+package slab;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SlabJournalTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void replayRebuildsSlabAcrossSegments() {
+        final Path journalFile = tempDir.resolve("orders.journal");
+        final TestCodec testCodec = new TestCodec();
+        final Slab<TestCodec> slab = new Slab<>((short) 64, 2, TestCodec::new);
+
+        //Small segments so the log rolls over several times
+        try (final SlabJournal<TestCodec> journal = new SlabJournal<>(journalFile, 1024)) {
+            for (int i = 0; i < 300; i++) {
+                final int index = slab.create(testCodec);
+                testCodec.setId(i);
+                journal.logCreate(index, testCodec);
+            }
+            for (int i = 0; i < 300; i += 3) {
+                slab.getAt(i, testCodec);
+                testCodec.setId(i * 100);
+                journal.logUpdate(i, testCodec, 0, Integer.BYTES);
+            }
+            for (int i = 0; i < 64; i++) {
+                slab.removeAt(i);
+                journal.logRemove(i);
+            }
+        }
+
+        final Slab<TestCodec> replayed = new Slab<>((short) 64, 2, TestCodec::new);
+        try (final SlabJournal<TestCodec> journal = new SlabJournal<>(journalFile, 1024)) {
+            assertEquals(300 + 100 + 64, journal.replay(replayed));
+            for (int i = 64; i < 300; i++) {
+                replayed.getAt(i, testCodec);
+                assertEquals(i % 3 == 0 ? i * 100 : i, testCodec.getId());
+            }
+
+            //Appends continue at the tail of the existing log
+            final int index = replayed.create(testCodec);
+            assertEquals(slab.create(testCodec), index);
+            journal.logCreate(index, testCodec);
+        }
+
+        try (final SlabJournal<TestCodec> journal = new SlabJournal<>(journalFile, 1024)) {
+            assertEquals(300 + 100 + 64 + 1, journal.replay(new Slab<>((short) 64, 2, TestCodec::new)));
+        }
+    }
+
+    @Test
+    public void flusherCatchesUpWithWriter() throws InterruptedException {
+        final Path journalFile = tempDir.resolve("orders.journal");
+        final TestCodec testCodec = new TestCodec();
+        final Slab<TestCodec> slab = new Slab<>((short) 64, 2, TestCodec::new);
+
+        try (final SlabJournal<TestCodec> journal = new SlabJournal<>(journalFile, 4096,
+                TimeUnit.MICROSECONDS.toNanos(100))) {
+            for (int i = 0; i < 1000; i++) {
+                journal.logCreate(slab.create(testCodec), testCodec);
+            }
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (journal.getFlushedPosition() < journal.getPosition() && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(journal.getPosition(), journal.getFlushedPosition());
+            assertTrue(journal.getPosition() > 4096);
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package slab;
 
 import offHeapTypes.DirectBufferUnsafeString;
+import org.agrona.MutableDirectBuffer;
 import org.agrona.collections.Object2ObjectHashMap;
 import org.agrona.concurrent.UnsafeBuffer;
 import org.junit.jupiter.api.Test;
+import utils.ProbeMode;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class SlabKeyStoreTests {
 
@@ -127,4 +132,181 @@ public class SlabKeyStoreTests {
             System.out.println(slabKeyStore.printDataStore());
         }
     }
+
+    @Test
+    public void getKeysMatchesGetKey() {
+        final TestOrder testOrder = new TestOrder();
+        final Slab<TestOrder> slab = new Slab<>((short) 64, 4, () -> new TestOrder());
+        final SlabKeyStore<TestOrder> slabKeyStore = new SlabKeyStore<>(64, 0.65f, slab);
+
+        for (int i = 0; i < 5000; i++) {
+            final int index = slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set("KEY" + i);
+            slabKeyStore.insert(index, testOrder);
+        }
+
+        final int count = 37;
+        final TestOrder[] lookups = new TestOrder[count];
+        for (int i = 0; i < count; i++) {
+            lookups[i] = new TestOrder();
+            lookups[i].wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+            //Every third key is absent
+            lookups[i].getUnsafeAsciiString().set(i % 3 == 0 ? "MISSING" + i : "KEY" + (i * 131));
+        }
+        final int[] out = new int[count + 1];
+        out[count] = 42;
+        slabKeyStore.getKeys(lookups, count, out);
+        for (int i = 0; i < count; i++) {
+            assertEquals(slabKeyStore.getKey(lookups[i]), out[i]);
+            assertEquals(i % 3 == 0 ? -1 : i * 131, out[i]);
+        }
+        assertEquals(42, out[count]);
+    }
+
+    @Test
+    public void resizeAndBackwardShiftNeverReadTheSlab() {
+        final int[] slabHashCount = new int[1];
+        final Slab<TestOrder> slab = new Slab<>((short) 64, 4, () -> new TestOrder() {
+            @Override
+            public int generateKeyHashCode(final MutableDirectBuffer buffer, final int offset) {
+                slabHashCount[0]++;
+                return super.generateKeyHashCode(buffer, offset);
+            }
+        });
+        final SlabKeyStore<TestOrder> slabKeyStore = new SlabKeyStore<>(8, 0.65f, slab);
+        final TestOrder testOrder = new TestOrder();
+        final TestOrder lookup = new TestOrder();
+        lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+
+        for (int i = 0; i < 2000; i++) {
+            final int index = slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set("KEY" + i);
+            slabKeyStore.insert(index, testOrder);
+        }
+        for (int i = 0; i < 2000; i += 2) {
+            lookup.getUnsafeAsciiString().set("KEY" + i);
+            assertEquals(i, slabKeyStore.removeCodec(lookup));
+        }
+        for (int i = 1; i < 2000; i += 2) {
+            lookup.getUnsafeAsciiString().set("KEY" + i);
+            assertEquals(i, slabKeyStore.getKey(lookup));
+        }
+        assertEquals(0, slabHashCount[0]);
+        assertEquals(1000, slabKeyStore.size());
+    }
+
+    @Test
+    public void robinHoodInsertLookupAndRemove() {
+        final TestOrder testOrder = new TestOrder();
+        final Slab<TestOrder> slab = new Slab<>((short) 64, 4, () -> new TestOrder());
+        final SlabKeyStore<TestOrder> slabKeyStore = new SlabKeyStore<>(8, 0.9f, slab, ProbeMode.ROBIN_HOOD);
+        final TestOrder lookup = new TestOrder();
+        lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+
+        for (int i = 0; i < 5000; i++) {
+            final int index = slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set("KEY" + i);
+            slabKeyStore.insert(index, testOrder);
+            slabKeyStore.insert(index, testOrder);
+        }
+        assertEquals(5000, slabKeyStore.size());
+        assertTrue(slabKeyStore.getMaxProbeDistance() <= ProbeMode.MAX_PROBE_DISTANCE);
+
+        for (int i = 0; i < 5000; i += 2) {
+            lookup.getUnsafeAsciiString().set("KEY" + i);
+            assertEquals(i, slabKeyStore.removeCodec(lookup));
+        }
+        for (int i = 1; i < 5000; i += 4) {
+            assertTrue(slabKeyStore.removeAt(i));
+            assertFalse(slabKeyStore.removeAt(i));
+        }
+        for (int i = 0; i < 5000; i++) {
+            lookup.getUnsafeAsciiString().set("KEY" + i);
+            assertEquals(i % 4 == 3 ? i : -1, slabKeyStore.getKey(lookup));
+        }
+        for (int i = 0; i < 1000; i++) {
+            lookup.getUnsafeAsciiString().set("MISSING" + i);
+            assertEquals(-1, slabKeyStore.getKey(lookup));
+        }
+        assertEquals(1250, slabKeyStore.size());
+    }
+
+    @Test
+    public void incrementalRehashKeepsBothTablesVisible() {
+        for (final ProbeMode probeMode : ProbeMode.values()) {
+            final TestOrder testOrder = new TestOrder();
+            final Slab<TestOrder> slab = new Slab<>((short) 64, 4, () -> new TestOrder());
+            final SlabKeyStore<TestOrder> slabKeyStore = new SlabKeyStore<>(8, 0.65f, slab, probeMode);
+            slabKeyStore.setIncrementalRehash(2);
+            final TestOrder lookup = new TestOrder();
+            lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+
+            boolean sawMigration = false;
+            for (int i = 0; i < 3000; i++) {
+                final int index = slab.create(testOrder);
+                testOrder.getUnsafeAsciiString().set("KEY" + i);
+                slabKeyStore.insert(index, testOrder);
+                sawMigration |= slabKeyStore.isMigrating();
+                if (i % 97 == 0) {
+                    for (int j = 0; j <= i; j++) {
+                        lookup.getUnsafeAsciiString().set("KEY" + j);
+                        assertEquals(j, slabKeyStore.getKey(lookup));
+                    }
+                }
+            }
+            assertTrue(sawMigration);
+            assertTrue(slabKeyStore.isMigrating());
+
+            //Removals, both by key and by slab index, reach entries still in the old table
+            for (int i = 0; i < 3000; i += 3) {
+                lookup.getUnsafeAsciiString().set("KEY" + i);
+                assertEquals(i, slabKeyStore.removeCodec(lookup));
+                assertTrue(slabKeyStore.removeAt(i + 1));
+            }
+            final int[] seen = new int[1];
+            slabKeyStore.forEach(slabIndex -> {
+                assertEquals(2, slabIndex % 3);
+                seen[0]++;
+            });
+            assertEquals(1000, seen[0]);
+            assertEquals(1000, slabKeyStore.size());
+            for (int i = 0; i < 3000; i++) {
+                lookup.getUnsafeAsciiString().set("KEY" + i);
+                assertEquals(i % 3 == 2 ? i : -1, slabKeyStore.getKey(lookup));
+            }
+        }
+    }
+
+    @Test
+    public void incrementalRehashDrainsBeforeEveryResizeAtStepOne() {
+        for (final ProbeMode probeMode : ProbeMode.values()) {
+            final TestOrder testOrder = new TestOrder();
+            final Slab<TestOrder> slab = new Slab<>((short) 64, 4, () -> new TestOrder());
+            try (final SlabKeyStore<TestOrder> slabKeyStore = new SlabKeyStore<>(8, 0.65f, slab, probeMode)) {
+                slabKeyStore.setIncrementalRehash(1);
+                int resizeCount = 0;
+                for (int i = 0; i < 20000; i++) {
+                    final boolean wasMigrating = slabKeyStore.isMigrating();
+                    final int capacity = slabKeyStore.capacity();
+                    final int index = slab.create(testOrder);
+                    testOrder.getUnsafeAsciiString().set("KEY" + i);
+                    slabKeyStore.insert(index, testOrder);
+                    if (slabKeyStore.capacity() != capacity) {
+                        //The old table was drained by earlier inserts, this one only swapped the tables
+                        assertFalse(wasMigrating);
+                        assertTrue(slabKeyStore.isMigrating());
+                        resizeCount++;
+                    }
+                }
+                assertTrue(resizeCount >= 10);
+
+                final TestOrder lookup = new TestOrder();
+                lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+                for (int i = 0; i < 20000; i++) {
+                    lookup.getUnsafeAsciiString().set("KEY" + i);
+                    assertEquals(i, slabKeyStore.getKey(lookup));
+                }
+            }
+        }
+    }
 }
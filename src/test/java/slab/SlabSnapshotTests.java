@@ -0,0 +1,234 @@
+package slab;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.ProbeMode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SlabSnapshotTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void snapshotRestoresSlabAndKeyStore() {
+        final Path snapshotFile = tempDir.resolve("orders.snapshot");
+        final TestOrder testOrder = new TestOrder();
+        final Slab<TestOrder> slab = new Slab<>((short) 64, 2, TestOrder::new);
+        final SlabKeyStore<TestOrder> keyStore = new SlabKeyStore<>(8, 0.65f, slab);
+
+        for (int i = 0; i < 500; i++) {
+            final int index = slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set(String.valueOf(i));
+            keyStore.insert(index, testOrder);
+        }
+        final TestOrder lookup = new TestOrder();
+        lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(256)), 0, 256);
+        for (int i = 0; i < 64; i++) {
+            lookup.getUnsafeAsciiString().set(String.valueOf(i));
+            slab.removeAt(keyStore.removeCodec(lookup));
+        }
+        SlabSnapshot.write(snapshotFile, slab, keyStore);
+
+        final Slab<TestOrder> restoredSlab = new Slab<>((short) 64, 2, TestOrder::new);
+        final SlabKeyStore<TestOrder> restoredKeyStore = new SlabKeyStore<>(8, 0.65f, restoredSlab);
+        SlabSnapshot.restore(snapshotFile, restoredSlab, restoredKeyStore);
+
+        assertEquals(keyStore.size(), restoredKeyStore.size());
+        assertEquals(keyStore.printDataStore(), restoredKeyStore.printDataStore());
+
+        for (int i = 0; i < 64; i++) {
+            lookup.getUnsafeAsciiString().set(String.valueOf(i));
+            assertEquals(-1, restoredKeyStore.getKey(lookup));
+        }
+        for (int i = 64; i < 500; i++) {
+            lookup.getUnsafeAsciiString().set(String.valueOf(i));
+            assertEquals(i, restoredKeyStore.getKey(lookup));
+        }
+
+        //Both slabs continue allocating from the same cursor position and clean pages
+        for (int i = 0; i < 200; i++) {
+            assertEquals(slab.create(testOrder), restoredSlab.create(testOrder));
+        }
+    }
+
+    @Test
+    public void snapshotWritesReleasedPagesAsClean() {
+        final Path snapshotFile = tempDir.resolve("released.snapshot");
+        final TestOrder testOrder = new TestOrder();
+        final Slab<TestOrder> slab = new Slab<>((short) 64, 1, TestOrder::new);
+        final SlabKeyStore<TestOrder> keyStore = new SlabKeyStore<>(8, 0.65f, slab);
+        slab.setMaxRetainedCleanPages(0);
+
+        for (int i = 0; i < 64 * 4; i++) {
+            final int index = slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set(String.valueOf(i));
+            keyStore.insert(index, testOrder);
+        }
+        for (int i = 64; i < 64 * 3; i++) {
+            keyStore.removeAt(i);
+            slab.removeAt(i);
+        }
+        assertEquals(3, slab.getResidentPageCount());
+        SlabSnapshot.write(snapshotFile, slab, keyStore);
+
+        final Slab<TestOrder> restoredSlab = new Slab<>((short) 64, 1, TestOrder::new);
+        final SlabKeyStore<TestOrder> restoredKeyStore = new SlabKeyStore<>(8, 0.65f, restoredSlab);
+        SlabSnapshot.restore(snapshotFile, restoredSlab, restoredKeyStore);
+
+        assertEquals(keyStore.size(), restoredKeyStore.size());
+        assertEquals(2, restoredSlab.getCleanPageIndices().size());
+        //Refill order of released pages differs from clean queue order, the slots handed out are the same
+        final int[] created = new int[64 * 3];
+        final int[] restoredCreated = new int[64 * 3];
+        for (int i = 0; i < created.length; i++) {
+            created[i] = slab.create(testOrder);
+            restoredCreated[i] = restoredSlab.create(testOrder);
+        }
+        Arrays.sort(created);
+        Arrays.sort(restoredCreated);
+        assertArrayEquals(created, restoredCreated);
+    }
+
+    @Test
+    public void incompatibleSnapshotIsRejectedBeforeRestoring() throws IOException {
+        final Path snapshotFile = tempDir.resolve("incompatible.snapshot");
+        final TestOrder testOrder = new TestOrder();
+        final Slab<TestOrder> slab = new Slab<>((short) 64, 2, TestOrder::new);
+        final SlabKeyStore<TestOrder> keyStore = new SlabKeyStore<>(8, 0.65f, slab);
+        for (int i = 0; i < 100; i++) {
+            final int index = slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set(String.valueOf(i));
+            keyStore.insert(index, testOrder);
+        }
+        SlabSnapshot.write(snapshotFile, slab, keyStore);
+
+        final Slab<TestOrder> liveSlab = new Slab<>((short) 64, 2, TestOrder::new);
+        final SlabKeyStore<TestOrder> liveKeyStore = new SlabKeyStore<>(8, 0.65f, liveSlab);
+        for (int i = 0; i < 10; i++) {
+            final int index = liveSlab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set("live" + i);
+            liveKeyStore.insert(index, testOrder);
+        }
+
+        try (final FileChannel fileChannel = FileChannel.open(snapshotFile, StandardOpenOption.WRITE)) {
+            //Any other format version is rejected, whatever the rest of the file holds
+            fileChannel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 1), Long.BYTES);
+            assertThrows(IllegalStateException.class,
+                    () -> SlabSnapshot.restore(snapshotFile, liveSlab, liveKeyStore));
+            fileChannel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 3), Long.BYTES);
+            fileChannel.truncate(fileChannel.size() - Long.BYTES);
+            assertThrows(IllegalStateException.class,
+                    () -> SlabSnapshot.restore(snapshotFile, liveSlab, liveKeyStore));
+        }
+
+        assertEquals(10, liveKeyStore.size());
+        final TestOrder lookup = new TestOrder();
+        lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(256)), 0, 256);
+        for (int i = 0; i < 10; i++) {
+            lookup.getUnsafeAsciiString().set("live" + i);
+            assertEquals(i, liveKeyStore.getKey(lookup));
+        }
+        assertEquals(10, liveSlab.create(testOrder));
+    }
+
+    @Test
+    public void corruptSnapshotFieldsAreRejectedBeforeRestoring() throws IOException {
+        final Path snapshotFile = tempDir.resolve("corrupt.snapshot");
+        final TestOrder testOrder = new TestOrder();
+        final Slab<TestOrder> slab = new Slab<>((short) 64, 8, TestOrder::new);
+        final SlabKeyStore<TestOrder> keyStore = new SlabKeyStore<>(8, 0.65f, slab);
+        for (int i = 0; i < 100; i++) {
+            final int index = slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set(String.valueOf(i));
+            keyStore.insert(index, testOrder);
+        }
+        SlabSnapshot.write(snapshotFile, slab, keyStore);
+        final byte[] snapshot = Files.readAllBytes(snapshotFile);
+        final ByteBuffer header = ByteBuffer.wrap(snapshot);
+        final int pageCount = header.getInt(16);
+        final int cursorPageIndex = header.getInt(20);
+        final int keyStoreCapacity = header.getInt(32);
+        assertTrue(header.getInt(28) >= 2);
+
+        final Slab<TestOrder> liveSlab = new Slab<>((short) 64, 8, TestOrder::new);
+        final SlabKeyStore<TestOrder> liveKeyStore = new SlabKeyStore<>(8, 0.65f, liveSlab);
+        for (int i = 0; i < 10; i++) {
+            final int index = liveSlab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set("live" + i);
+            liveKeyStore.insert(index, testOrder);
+        }
+
+        //Every corruption keeps the file length right, so only the field checks can catch it
+        final int[][] corruptions = {
+                {20, pageCount},
+                {24, 64},
+                {36, keyStoreCapacity},
+                {64, pageCount},
+                {64, cursorPageIndex},
+                {68, header.getInt(64)}
+        };
+        for (final int[] corruption : corruptions) {
+            final byte[] corrupted = snapshot.clone();
+            ByteBuffer.wrap(corrupted).putInt(corruption[0], corruption[1]);
+            Files.write(snapshotFile, corrupted);
+            assertThrows(IllegalStateException.class,
+                    () -> SlabSnapshot.restore(snapshotFile, liveSlab, liveKeyStore));
+        }
+        //A key store capacity that is not a power of two, with the slot array grown to match
+        final byte[] oddCapacity = Arrays.copyOf(snapshot, snapshot.length + SlabKeyStore.SLOT_SIZE);
+        ByteBuffer.wrap(oddCapacity).putInt(32, keyStoreCapacity + 1);
+        Files.write(snapshotFile, oddCapacity);
+        assertThrows(IllegalStateException.class,
+                () -> SlabSnapshot.restore(snapshotFile, liveSlab, liveKeyStore));
+
+        assertEquals(10, liveKeyStore.size());
+        final TestOrder lookup = new TestOrder();
+        lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(256)), 0, 256);
+        for (int i = 0; i < 10; i++) {
+            lookup.getUnsafeAsciiString().set("live" + i);
+            assertEquals(i, liveKeyStore.getKey(lookup));
+        }
+        assertEquals(10, liveSlab.create(testOrder));
+    }
+
+    @Test
+    public void snapshotOfAnotherProbeModeIsRejected() {
+        final Path snapshotFile = tempDir.resolve("linear.snapshot");
+        final TestOrder testOrder = new TestOrder();
+        final Slab<TestOrder> slab = new Slab<>((short) 64, 2, TestOrder::new);
+        final SlabKeyStore<TestOrder> keyStore = new SlabKeyStore<>(8, 0.65f, slab, ProbeMode.LINEAR);
+        for (int i = 0; i < 100; i++) {
+            final int index = slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set(String.valueOf(i));
+            keyStore.insert(index, testOrder);
+        }
+        SlabSnapshot.write(snapshotFile, slab, keyStore);
+
+        //A linear slot array is not ordered by probe distance, Robin Hood lookups would stop early and miss keys
+        final Slab<TestOrder> robinHoodSlab = new Slab<>((short) 64, 2, TestOrder::new);
+        final SlabKeyStore<TestOrder> robinHoodKeyStore =
+                new SlabKeyStore<>(8, 0.65f, robinHoodSlab, ProbeMode.ROBIN_HOOD);
+        assertThrows(IllegalStateException.class,
+                () -> SlabSnapshot.restore(snapshotFile, robinHoodSlab, robinHoodKeyStore));
+        assertEquals(0, robinHoodKeyStore.size());
+
+        final Slab<TestOrder> linearSlab = new Slab<>((short) 64, 2, TestOrder::new);
+        final SlabKeyStore<TestOrder> linearKeyStore = new SlabKeyStore<>(8, 0.65f, linearSlab, ProbeMode.LINEAR);
+        SlabSnapshot.restore(snapshotFile, linearSlab, linearKeyStore);
+        assertEquals(100, linearKeyStore.size());
+    }
+}
@@ -1,8 +1,16 @@
 package slab;
 
+import org.agrona.collections.IntArrayList;
 import org.junit.jupiter.api.Test;
 
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class SlabTests {
 
@@ -59,4 +67,183 @@ public class SlabTests {
         }
     }
 
+    @Test
+    public void retentionReleasesCleanPagesAndRefillsHoles() {
+        final Slab<TestCodec> slab = new Slab<>((short) 64, 1, () -> new TestCodec());
+        slab.setMaxRetainedCleanPages(2);
+
+        final TestCodec testCodec = new TestCodec();
+        for (int i = 0; i < 64 * 10; i++) {
+            slab.create(testCodec);
+        }
+        assertEquals(11, slab.getResidentPageCount());
+
+        for (int i = 64; i < 64 * 10; i++) {
+            slab.removeAt(i);
+        }
+        assertEquals(2, slab.getCleanPageIndices().size());
+        assertEquals(4, slab.getResidentPageCount());
+
+        slab.setMaxRetainedCleanPages(0);
+        assertEquals(2, slab.releaseExcessCleanPages());
+        assertEquals(2, slab.getResidentPageCount());
+        assertNull(slab.getPage(1));
+
+        //Holes are refilled before the directory grows
+        for (int i = 0; i < 64 * 9; i++) {
+            final int index = slab.create(testCodec);
+            assertTrue(index < 64 * 11);
+        }
+        assertEquals(11, slab.getPageCount());
+        assertEquals(11, slab.getResidentPageCount());
+    }
+
+    @Test
+    public void forEachLiveSkipsDeadSlotsAndEmptyPages() {
+        final Slab<TestCodec> slab = new Slab<>((short) 64, 2, () -> new TestCodec());
+        slab.setMaxRetainedCleanPages(0);
+
+        final TestCodec testCodec = new TestCodec();
+        for (int i = 0; i < 64 * 5; i++) {
+            slab.create(testCodec);
+            testCodec.setId(i);
+        }
+        //Page 1 empties into the clean queue, page 3 is released and leaves a hole
+        for (int i = 64; i < 128; i++) {
+            slab.removeAt(i);
+        }
+        for (int i = 192; i < 256; i++) {
+            slab.removeAt(i);
+        }
+        for (int i = 0; i < 64; i += 3) {
+            slab.removeAt(i);
+        }
+        assertNull(slab.getPage(3));
+
+        final IntArrayList expected = new IntArrayList();
+        for (int i = 0; i < 64 * 5; i++) {
+            if ((i < 64 && i % 3 != 0) || (i >= 128 && i < 192) || i >= 256) {
+                expected.addInt(i);
+            }
+        }
+        final IntArrayList handles = new IntArrayList();
+        slab.forEachLive(handles::addInt);
+        assertEquals(expected, handles);
+
+        final IntArrayList ids = new IntArrayList();
+        slab.forEachLive(testCodec, codec -> ids.addInt(codec.getId()));
+        assertEquals(expected, ids);
+
+        final SlabLiveIterator<TestCodec> iterator = slab.liveIterator();
+        for (int sweep = 0; sweep < 2; sweep++) {
+            iterator.reset();
+            final IntArrayList iterated = new IntArrayList();
+            while (iterator.next()) {
+                iterator.getAt(testCodec);
+                assertEquals(iterator.getHandle(), testCodec.getId());
+                iterated.addInt(iterator.getHandle());
+            }
+            assertEquals(expected, iterated);
+            assertFalse(iterator.next());
+        }
+    }
+
+    @Test
+    public void forEachLiveAllowsRemovingTheVisitedRecord() {
+        final Slab<TestCodec> slab = new Slab<>((short) 64, 1, () -> new TestCodec());
+
+        final TestCodec testCodec = new TestCodec();
+        for (int i = 0; i < 200; i++) {
+            slab.create(testCodec);
+        }
+        final int[] visited = new int[1];
+        slab.forEachLive(handle -> {
+            visited[0]++;
+            slab.removeAt(handle);
+        });
+        assertEquals(200, visited[0]);
+        slab.forEachLive(handle -> visited[0]++);
+        assertEquals(200, visited[0]);
+    }
+
+    @Test
+    public void liveHandlesSplitOnPagesAndKeepOrder() {
+        final Slab<TestCodec> slab = new Slab<>((short) 64, 4, () -> new TestCodec());
+
+        final TestCodec testCodec = new TestCodec();
+        for (int i = 0; i < 64 * 40; i++) {
+            slab.create(testCodec);
+            testCodec.setId(i);
+        }
+        for (int i = 0; i < 64 * 40; i += 5) {
+            slab.removeAt(i);
+        }
+        final IntArrayList expected = new IntArrayList();
+        slab.forEachLive(expected::addInt);
+
+        assertArrayEquals(expected.toIntArray(), slab.liveHandles().toArray());
+        assertArrayEquals(expected.toIntArray(), slab.liveHandles().parallel().toArray());
+        final long idSum = slab.liveHandles().parallel()
+                .mapToLong(handle -> {
+                    final TestCodec reader = new TestCodec();
+                    slab.getAt(handle, reader);
+                    return reader.getId();
+                }).sum();
+        assertEquals(expected.intStream().asLongStream().sum(), idSum);
+
+        //A split taken mid-page carries the started page with the prefix
+        final Spliterator.OfInt spliterator = slab.liveSpliterator();
+        final IntArrayList consumed = new IntArrayList();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(spliterator.tryAdvance((IntConsumer) consumed::addInt));
+        }
+        final Spliterator.OfInt prefix = spliterator.trySplit();
+        prefix.forEachRemaining((IntConsumer) consumed::addInt);
+        final int prefixEnd = consumed.size();
+        spliterator.forEachRemaining((IntConsumer) consumed::addInt);
+        assertEquals(expected, consumed);
+        assertTrue(slab.pageIndexOf(consumed.getInt(prefixEnd)) > slab.pageIndexOf(consumed.getInt(prefixEnd - 1)));
+    }
+
+    @Test
+    public void batchOperationsSpanPages() {
+        final Slab<TestCodec> slab = new Slab<>((short) 64, 1, () -> new TestCodec());
+
+        final TestCodec testCodec = new TestCodec();
+        for (int i = 0; i < 10; i++) {
+            slab.create(testCodec);
+        }
+        final IntArrayList created = new IntArrayList();
+        slab.createBatch(200, created::addInt);
+        assertEquals(200, created.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(10 + i, created.getInt(i));
+            slab.getAt(created.getInt(i), testCodec);
+            testCodec.setId(i);
+        }
+        assertEquals(210, slab.create(testCodec));
+        assertEquals(64, slab.getPage(1).getLiveCount());
+
+        final TestCodec[] codecs = new TestCodec[3];
+        for (int i = 0; i < codecs.length; i++) {
+            codecs[i] = new TestCodec();
+        }
+        slab.getBatch(new int[]{10, 100, 209}, codecs, 3);
+        assertEquals(0, codecs[0].getId());
+        assertEquals(90, codecs[1].getId());
+        assertEquals(199, codecs[2].getId());
+
+        //Pages 1 and 2 empty into the clean queue, page 0 keeps its first ten records
+        final int[] toRemove = new int[64 * 2 + 54];
+        for (int i = 0; i < toRemove.length; i++) {
+            toRemove[i] = 10 + i;
+        }
+        slab.removeBatch(toRemove, toRemove.length);
+        assertEquals(10, slab.getPage(0).getLiveCount());
+        assertEquals(0, slab.getPage(1).getLiveCount());
+        assertEquals(2, slab.getCleanPageIndices().size());
+        final IntArrayList live = new IntArrayList();
+        slab.forEachLive(live::addInt);
+        assertEquals(10 + 19, live.size());
+    }
 }
@@ -0,0 +1,96 @@
+package slab;
+
+import org.agrona.collections.IntArrayList;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SwissSlabKeyStoreTests {
+
+    @Test
+    public void insertGetRemoveThroughGrowth() {
+        final TestOrder testOrder = new TestOrder();
+        final TestOrder lookup = new TestOrder();
+        lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+        final Slab<TestOrder> slab = new Slab<>((short) 64, 4, () -> new TestOrder());
+        final SwissSlabKeyStore<TestOrder> keyStore = new SwissSlabKeyStore<>(16, slab);
+
+        for (int i = 0; i < 20000; i++) {
+            final int index = slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set("KEY" + i);
+            keyStore.insert(index, testOrder);
+            keyStore.insert(index, testOrder);
+        }
+        assertEquals(20000, keyStore.size());
+        assertTrue(keyStore.size() <= keyStore.capacity() * SwissSlabKeyStore.DEFAULT_LOAD_FACTOR);
+
+        for (int i = 0; i < 20000; i += 2) {
+            lookup.getUnsafeAsciiString().set("KEY" + i);
+            assertEquals(i, keyStore.removeCodec(lookup));
+        }
+        for (int i = 1; i < 20000; i += 4) {
+            assertTrue(keyStore.removeAt(i));
+            assertFalse(keyStore.removeAt(i));
+        }
+        for (int i = 0; i < 20000; i++) {
+            lookup.getUnsafeAsciiString().set("KEY" + i);
+            final boolean isPresent = i % 2 == 1 && i % 4 != 1;
+            assertEquals(isPresent ? i : -1, keyStore.getKey(lookup));
+        }
+        assertEquals(5000, keyStore.size());
+
+        final IntArrayList indices = new IntArrayList();
+        keyStore.forEach(indices::addInt);
+        assertEquals(5000, indices.size());
+    }
+
+    @Test
+    public void churnReusesDeletedSlotsWithoutGrowing() {
+        final TestOrder testOrder = new TestOrder();
+        final TestOrder lookup = new TestOrder();
+        lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+        final Slab<TestOrder> slab = new Slab<>((short) 64, 4, () -> new TestOrder());
+        final SwissSlabKeyStore<TestOrder> keyStore = new SwissSlabKeyStore<>(1024, slab);
+
+        for (int i = 0; i < 500_000; i++) {
+            final int index = slab.create(testOrder);
+            testOrder.getUnsafeAsciiString().set(String.valueOf(i));
+            keyStore.insert(index, testOrder);
+            if (i >= 400) {
+                lookup.getUnsafeAsciiString().set(String.valueOf(i - 400));
+                slab.removeAt(keyStore.removeCodec(lookup));
+            }
+        }
+        assertEquals(400, keyStore.size());
+        assertEquals(1024, keyStore.capacity());
+        for (int i = 500_000 - 400; i < 500_000; i++) {
+            lookup.getUnsafeAsciiString().set(String.valueOf(i));
+            assertTrue(keyStore.getKey(lookup) >= 0);
+        }
+    }
+
+    @Test
+    public void relocateRepointsEntry() {
+        final TestOrder testOrder = new TestOrder();
+        final TestOrder lookup = new TestOrder();
+        lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+        final Slab<TestOrder> slab = new Slab<>((short) 64, 4, () -> new TestOrder());
+        final SwissSlabKeyStore<TestOrder> keyStore = new SwissSlabKeyStore<>(64, slab);
+
+        final int from = slab.create(testOrder);
+        testOrder.getUnsafeAsciiString().set("MOVE");
+        keyStore.insert(from, testOrder);
+        final int to = slab.create(testOrder);
+        testOrder.getUnsafeAsciiString().set("MOVE");
+
+        assertTrue(keyStore.relocate(from, to));
+        lookup.getUnsafeAsciiString().set("MOVE");
+        assertEquals(to, keyStore.getKey(lookup));
+    }
+}
@@ -0,0 +1,103 @@
+package unsafeSlab;
+
+import org.agrona.UnsafeApi;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MultiProducerUnsafeSlabTests {
+
+    @Test
+    public void producerBumpAllocatesWithinClaimedPages() {
+        try (final MultiProducerUnsafeSlab<UnsafeTestOrder> slab = new MultiProducerUnsafeSlab<>((short) 64, 2, 4,
+                UnsafeTestOrder::new)) {
+            final UnsafeTestOrder testOrder = new UnsafeTestOrder();
+            final MultiProducerUnsafeSlab<UnsafeTestOrder>.Producer first = slab.newProducer();
+            final MultiProducerUnsafeSlab<UnsafeTestOrder>.Producer second = slab.newProducer();
+
+            assertEquals(0, first.create(testOrder));
+            assertEquals(1, first.create(testOrder));
+            assertEquals(64, second.create(testOrder));
+            assertEquals(2, first.create(testOrder));
+
+            //Counters hold every slot plus the owner reference until the producer lets go
+            assertEquals(65, slab.getLiveCount(0));
+            first.close();
+            assertEquals(3, slab.getLiveCount(0));
+
+            slab.removeAt(0);
+            slab.removeAt(1);
+            slab.removeAt(2);
+            //The emptied page went back on the free stack and is claimed again
+            assertEquals(0, first.create(testOrder));
+        }
+    }
+
+    @Test
+    public void exhaustedSlabThrows() {
+        try (final MultiProducerUnsafeSlab<UnsafeTestOrder> slab = new MultiProducerUnsafeSlab<>((short) 64, 1, 2,
+                UnsafeTestOrder::new)) {
+            final UnsafeTestOrder testOrder = new UnsafeTestOrder();
+            final MultiProducerUnsafeSlab<UnsafeTestOrder>.Producer producer = slab.newProducer();
+            for (int i = 0; i < 128; i++) {
+                producer.create(testOrder);
+            }
+            assertThrows(IllegalStateException.class, () -> producer.create(testOrder));
+        }
+    }
+
+    @Test
+    public void concurrentProducersWithForeignFrees() throws InterruptedException {
+        final int producerCount = 4;
+        final int perProducer = 200_000;
+        try (final MultiProducerUnsafeSlab<UnsafeTestOrder> slab = new MultiProducerUnsafeSlab<>((short) 256, 8,
+                4096, UnsafeTestOrder::new)) {
+            final ConcurrentLinkedQueue<Integer> handoff = new ConcurrentLinkedQueue<>();
+            final CountDownLatch producersDone = new CountDownLatch(producerCount);
+            final List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producerCount; p++) {
+                final long producerId = p;
+                threads.add(new Thread(() -> {
+                    final UnsafeTestOrder testOrder = new UnsafeTestOrder();
+                    try (final MultiProducerUnsafeSlab<UnsafeTestOrder>.Producer producer = slab.newProducer()) {
+                        for (int i = 0; i < perProducer; i++) {
+                            final int index = producer.create(testOrder);
+                            UnsafeApi.putLong(testOrder.memOffset() + 64, (producerId << 32) | i);
+                            handoff.add(index);
+                        }
+                    }
+                    producersDone.countDown();
+                }));
+            }
+            threads.forEach(Thread::start);
+
+            //A single consumer frees records it did not create
+            final UnsafeTestOrder reader = new UnsafeTestOrder();
+            int freed = 0;
+            while (freed < producerCount * perProducer) {
+                final Integer index = handoff.poll();
+                if (index == null) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                slab.getAt(index, reader);
+                assertTrue((int) UnsafeApi.getLong(reader.memOffset() + 64) < perProducer);
+                slab.removeAt(index);
+                freed++;
+            }
+            producersDone.await();
+
+            //Every page ended up back on the free stack
+            for (int page = 0; page < 4096; page++) {
+                assertEquals(0, slab.getLiveCount(page));
+            }
+        }
+    }
+}
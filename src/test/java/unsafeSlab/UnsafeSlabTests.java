@@ -1,10 +1,31 @@
 package unsafeSlab;
 
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.LongArrayList;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.HugePageMemory;
+import utils.PreTouch;
+import utils.ProbeMode;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class UnsafeSlabTests {
+
+    @TempDir
+    Path tempDir;
+
     @Test
     public void slabAddsPageWhenCleanExhausted() {
         final UnsafeSlab<UnsafeTestOrder> slab = new UnsafeSlab<>((short) 64, 4, UnsafeTestOrder::new);
@@ -57,4 +78,383 @@ public class UnsafeSlabTests {
             slab.removeAt(index);
         }
     }
+
+    @Test
+    public void keyStoreInsertGetRemove() {
+        try (final UnsafeSlab<UnsafeTestOrder> slab = new UnsafeSlab<>((short) 64, 4, UnsafeTestOrder::new);
+             final UnsafeSlabKeyStore<UnsafeTestOrder> keyStore = new UnsafeSlabKeyStore<>(8, 0.65f, slab);
+             final UnsafeSlab<UnsafeTestOrder> lookupSlab = new UnsafeSlab<>((short) 64, 1, UnsafeTestOrder::new)) {
+            final UnsafeTestOrder testOrder = new UnsafeTestOrder();
+            for (int i = 0; i < 1000; i++) {
+                final int index = slab.create(testOrder);
+                testOrder.setKey(String.valueOf(i));
+                keyStore.insert(index, testOrder);
+            }
+            assertEquals(1000, keyStore.size());
+
+            final UnsafeTestOrder lookup = new UnsafeTestOrder();
+            lookupSlab.create(lookup);
+            for (int i = 0; i < 1000; i++) {
+                lookup.setKey(String.valueOf(i));
+                assertEquals(i, keyStore.getKey(lookup));
+            }
+            for (int i = 0; i < 500; i++) {
+                lookup.setKey(String.valueOf(i));
+                assertEquals(i, keyStore.removeCodec(lookup));
+            }
+            for (int i = 500; i < 1000; i++) {
+                assertTrue(keyStore.removeAt(i));
+            }
+            assertTrue(keyStore.isEmpty());
+        }
+    }
+
+    @Test
+    public void snapshotRestoresSlabAndKeyStore() {
+        final Path snapshotFile = tempDir.resolve("orders.snapshot");
+        try (final UnsafeSlab<UnsafeTestOrder> slab = new UnsafeSlab<>((short) 64, 2, UnsafeTestOrder::new);
+             final UnsafeSlabKeyStore<UnsafeTestOrder> keyStore = new UnsafeSlabKeyStore<>(8, 0.65f, slab);
+             final UnsafeSlab<UnsafeTestOrder> restoredSlab = new UnsafeSlab<>((short) 64, 2, UnsafeTestOrder::new);
+             final UnsafeSlabKeyStore<UnsafeTestOrder> restoredKeyStore = new UnsafeSlabKeyStore<>(8, 0.65f,
+                     restoredSlab)) {
+            final UnsafeTestOrder testOrder = new UnsafeTestOrder();
+            for (int i = 0; i < 500; i++) {
+                final int index = slab.create(testOrder);
+                testOrder.setKey(String.valueOf(i));
+                keyStore.insert(index, testOrder);
+            }
+            for (int i = 0; i < 64; i++) {
+                assertTrue(keyStore.removeAt(i));
+                slab.removeAt(i);
+            }
+            UnsafeSlabSnapshot.write(snapshotFile, slab, keyStore);
+            UnsafeSlabSnapshot.restore(snapshotFile, restoredSlab, restoredKeyStore);
+
+            assertEquals(keyStore.size(), restoredKeyStore.size());
+            for (int i = 64; i < 500; i++) {
+                restoredSlab.getAt(i, testOrder);
+                assertEquals(i, restoredKeyStore.getKey(testOrder));
+            }
+            for (int i = 0; i < 200; i++) {
+                assertEquals(slab.create(testOrder), restoredSlab.create(testOrder));
+            }
+        }
+    }
+
+    @Test
+    public void snapshotWithAnotherFormatVersionIsRejectedBeforeRestoring() throws IOException {
+        final Path snapshotFile = tempDir.resolve("old.snapshot");
+        try (final UnsafeSlab<UnsafeTestOrder> slab = new UnsafeSlab<>((short) 64, 2, UnsafeTestOrder::new);
+             final UnsafeSlabKeyStore<UnsafeTestOrder> keyStore = new UnsafeSlabKeyStore<>(8, 0.65f, slab);
+             final UnsafeSlab<UnsafeTestOrder> liveSlab = new UnsafeSlab<>((short) 64, 2, UnsafeTestOrder::new);
+             final UnsafeSlabKeyStore<UnsafeTestOrder> liveKeyStore = new UnsafeSlabKeyStore<>(8, 0.65f, liveSlab)) {
+            final UnsafeTestOrder testOrder = new UnsafeTestOrder();
+            for (int i = 0; i < 100; i++) {
+                final int index = slab.create(testOrder);
+                testOrder.setKey(String.valueOf(i));
+                keyStore.insert(index, testOrder);
+            }
+            UnsafeSlabSnapshot.write(snapshotFile, slab, keyStore);
+            final int liveIndex = liveSlab.create(testOrder);
+            testOrder.setKey("live");
+            liveKeyStore.insert(liveIndex, testOrder);
+
+            try (final FileChannel fileChannel = FileChannel.open(snapshotFile, StandardOpenOption.WRITE)) {
+                fileChannel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 1), Long.BYTES);
+            }
+            assertThrows(IllegalStateException.class,
+                    () -> UnsafeSlabSnapshot.restore(snapshotFile, liveSlab, liveKeyStore));
+            assertEquals(1, liveKeyStore.size());
+            assertEquals(liveIndex, liveKeyStore.getKey(testOrder));
+        }
+    }
+
+    @Test
+    public void compactorMovesSparsePagesAndPatchesKeyStore() {
+        try (final UnsafeSlab<UnsafeTestOrder> slab = new UnsafeSlab<>((short) 64, 4, UnsafeTestOrder::new);
+             final UnsafeSlabKeyStore<UnsafeTestOrder> keyStore = new UnsafeSlabKeyStore<>(4096, 0.65f, slab);
+             final UnsafeSlab<UnsafeTestOrder> lookupSlab = new UnsafeSlab<>((short) 64, 1, UnsafeTestOrder::new)) {
+            final UnsafeTestOrder testOrder = new UnsafeTestOrder();
+            for (int i = 0; i < 64 * 10; i++) {
+                final int index = slab.create(testOrder);
+                testOrder.setKey(String.valueOf(i));
+                keyStore.insert(index, testOrder);
+            }
+            for (int i = 0; i < 64 * 9; i++) {
+                if (i % 64 != 7) {
+                    keyStore.removeAt(i);
+                    slab.removeAt(i);
+                }
+            }
+
+            final UnsafeSlabCompactor<UnsafeTestOrder> compactor = new UnsafeSlabCompactor<>(slab,
+                    (fromIndex, toIndex) -> assertTrue(keyStore.relocate(fromIndex, toIndex)), 0.1f);
+            while (compactor.compact(4, Long.MAX_VALUE) > 0) {
+            }
+            assertEquals(9, compactor.getRelocatedCount());
+            for (int pageIndex = 0; pageIndex < 9; pageIndex++) {
+                assertEquals(0, slab.getPage(pageIndex).getLiveCount());
+            }
+
+            final UnsafeTestOrder lookup = new UnsafeTestOrder();
+            lookupSlab.create(lookup);
+            for (int i = 7; i < 64 * 9; i += 64) {
+                lookup.setKey(String.valueOf(i));
+                final int index = keyStore.getKey(lookup);
+                assertTrue(index >= 64 * 9);
+                assertTrue(slab.equalsUnderlying(index, lookup));
+            }
+        }
+    }
+
+    @Test
+    public void retentionFreesCleanPagesAndRefillsHoles() {
+        try (final UnsafeSlab<UnsafeTestOrder> slab = new UnsafeSlab<>((short) 64, 1, UnsafeTestOrder::new)) {
+            slab.setMaxRetainedCleanPages(1);
+            final UnsafeTestOrder testOrder = new UnsafeTestOrder();
+            for (int i = 0; i < 64 * 6; i++) {
+                slab.create(testOrder);
+                testOrder.setKey(String.valueOf(i));
+            }
+            for (int i = 0; i < 64 * 5; i++) {
+                slab.removeAt(i);
+            }
+            //Page 0 belongs to the initial block and cannot be freed on its own
+            assertEquals(3, slab.getResidentPageCount());
+            slab.setMaxRetainedCleanPages(0);
+            assertEquals(0, slab.releaseExcessCleanPages());
+
+            for (int i = 0; i < 64 * 5; i++) {
+                final int index = slab.create(testOrder);
+                testOrder.setKey(String.valueOf(i));
+                assertTrue(index < 64 * 7);
+            }
+            assertEquals(7, slab.getPageCount());
+        }
+    }
+
+    @Test
+    public void hugePageModeCarvesPagesFromRegions() {
+        try (final UnsafeSlab<UnsafeTestOrder> slab = new UnsafeSlab<>((short) 256, 4, UnsafeTestOrder::new, true);
+             final UnsafeSlabKeyStore<UnsafeTestOrder> keyStore = new UnsafeSlabKeyStore<>(8, 0.65f, slab, true);
+             final UnsafeSlab<UnsafeTestOrder> lookupSlab = new UnsafeSlab<>((short) 64, 1, UnsafeTestOrder::new)) {
+            final UnsafeTestOrder testOrder = new UnsafeTestOrder();
+            for (int i = 0; i < 50000; i++) {
+                final int index = slab.create(testOrder);
+                testOrder.setKey(String.valueOf(i));
+                keyStore.insert(index, testOrder);
+            }
+            final UnsafeTestOrder lookup = new UnsafeTestOrder();
+            lookupSlab.create(lookup);
+            for (int i = 0; i < 50000; i++) {
+                lookup.setKey(String.valueOf(i));
+                assertEquals(i, keyStore.getKey(lookup));
+            }
+            //Whole pages in huge page mode are never freed on their own
+            slab.setMaxRetainedCleanPages(0);
+            for (int i = 0; i < 50000; i++) {
+                slab.removeAt(i);
+            }
+            assertEquals(slab.getPageCount(), slab.getResidentPageCount());
+
+            if (!"unsupported".equals(HugePageMemory.transparentHugePageMode())) {
+                assertTrue(slab.isHugePageBacked());
+                assertTrue(keyStore.isHugePageBacked());
+            }
+            assertTrue(slab.getGrantedHugePageBytes() >= 0);
+        }
+    }
+
+    @Test
+    public void preTouchedSlabWithEagerGrowth() throws InterruptedException {
+        try (final UnsafeSlab<UnsafeTestOrder> slab = new UnsafeSlab<>((short) 64, 2, UnsafeTestOrder::new, false,
+                PreTouch.TOUCH_AND_LOCK, 4);
+             final UnsafeSlabKeyStore<UnsafeTestOrder> keyStore = new UnsafeSlabKeyStore<>(8, 0.65f, slab)) {
+            //Growth within the reserve target never allocates on this thread once the reserve is full
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (slab.getReserveSize() < 4 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(4, slab.getReserveSize());
+            final UnsafeTestOrder testOrder = new UnsafeTestOrder();
+            for (int i = 0; i < 64 * 5; i++) {
+                final int index = slab.create(testOrder);
+                testOrder.setKey(String.valueOf(i));
+                keyStore.insert(index, testOrder);
+            }
+            assertEquals(0, slab.getReserveExhaustedCount());
+            for (int i = 0; i < 64 * 5; i++) {
+                slab.getAt(i, testOrder);
+                assertEquals(i, keyStore.getKey(testOrder));
+            }
+            slab.setMaxRetainedCleanPages(0);
+            for (int i = 0; i < 64 * 5; i++) {
+                slab.removeAt(i);
+            }
+        }
+    }
+
+    @Test
+    public void forEachLiveSkipsDeadSlotsAndEmptyPages() {
+        final UnsafeSlab<UnsafeTestOrder> slab = new UnsafeSlab<>((short) 64, 2, UnsafeTestOrder::new);
+        slab.setMaxRetainedCleanPages(0);
+
+        final UnsafeTestOrder testCodec = new UnsafeTestOrder();
+        for (int i = 0; i < 64 * 4; i++) {
+            slab.create(testCodec);
+        }
+        for (int i = 64; i < 128; i++) {
+            slab.removeAt(i);
+        }
+        for (int i = 128; i < 192; i++) {
+            slab.removeAt(i);
+        }
+        for (int i = 0; i < 64; i += 2) {
+            slab.removeAt(i);
+        }
+
+        final IntArrayList expected = new IntArrayList();
+        for (int i = 0; i < 64 * 4; i++) {
+            if ((i < 64 && i % 2 != 0) || i >= 192) {
+                expected.addInt(i);
+            }
+        }
+        final IntArrayList handles = new IntArrayList();
+        slab.forEachLive(handles::addInt);
+        assertEquals(expected, handles);
+
+        final UnsafeTestOrder lookup = new UnsafeTestOrder();
+        final LongArrayList offsets = new LongArrayList();
+        slab.forEachLive(testCodec, codec -> offsets.addLong(codec.memOffset()));
+        assertEquals(expected.size(), offsets.size());
+        for (int i = 0; i < expected.size(); i++) {
+            slab.getAt(expected.getInt(i), lookup);
+            assertEquals(lookup.memOffset(), offsets.getLong(i));
+        }
+
+        final UnsafeSlabLiveIterator<UnsafeTestOrder> iterator = slab.liveIterator();
+        for (int sweep = 0; sweep < 2; sweep++) {
+            iterator.reset();
+            final IntArrayList iterated = new IntArrayList();
+            while (iterator.next()) {
+                iterator.getAt(testCodec);
+                slab.getAt(iterator.getHandle(), lookup);
+                assertEquals(lookup.memOffset(), testCodec.memOffset());
+                iterated.addInt(iterator.getHandle());
+            }
+            assertEquals(expected, iterated);
+        }
+    }
+
+    @Test
+    public void liveHandlesSplitOnPagesAndKeepOrder() {
+        final UnsafeSlab<UnsafeTestOrder> slab = new UnsafeSlab<>((short) 64, 4, UnsafeTestOrder::new);
+
+        final UnsafeTestOrder testCodec = new UnsafeTestOrder();
+        for (int i = 0; i < 64 * 40; i++) {
+            slab.create(testCodec);
+        }
+        for (int i = 0; i < 64 * 40; i += 7) {
+            slab.removeAt(i);
+        }
+        final IntArrayList expected = new IntArrayList();
+        slab.forEachLive(expected::addInt);
+
+        assertArrayEquals(expected.toIntArray(), slab.liveHandles().toArray());
+        assertArrayEquals(expected.toIntArray(), slab.liveHandles().parallel().toArray());
+    }
+
+    @Test
+    public void batchOperationsSpanPages() {
+        final UnsafeSlab<UnsafeTestOrder> slab = new UnsafeSlab<>((short) 64, 1, UnsafeTestOrder::new);
+
+        final UnsafeTestOrder testCodec = new UnsafeTestOrder();
+        slab.create(testCodec);
+        final IntArrayList created = new IntArrayList();
+        slab.createBatch(130, created::addInt);
+        for (int i = 0; i < 130; i++) {
+            assertEquals(1 + i, created.getInt(i));
+        }
+        assertEquals(131, slab.create(testCodec));
+
+        final UnsafeTestOrder[] codecs = {new UnsafeTestOrder(), new UnsafeTestOrder()};
+        slab.getBatch(new int[]{5, 70}, codecs, 2);
+        slab.getAt(70, testCodec);
+        assertEquals(testCodec.memOffset(), codecs[1].memOffset());
+
+        final int[] toRemove = created.toIntArray();
+        slab.removeBatch(toRemove, 63);
+        assertEquals(0, slab.getCleanPageIndices().size());
+        slab.removeBatch(new int[]{0, 64, 65}, 3);
+        assertEquals(1, slab.getCleanPageIndices().size());
+        assertEquals(62, slab.getPage(1).getLiveCount());
+    }
+
+    @Test
+    public void keyStoreResizeAndBackwardShiftNeverReadTheSlab() {
+        final int[] slabHashCount = new int[1];
+        try (final UnsafeSlab<UnsafeTestOrder> slab = new UnsafeSlab<>((short) 64, 4, () -> new UnsafeTestOrder() {
+            @Override
+            public int generateKeyHashCode(final long codecOffset) {
+                slabHashCount[0]++;
+                return super.generateKeyHashCode(codecOffset);
+            }
+        });
+             final UnsafeSlabKeyStore<UnsafeTestOrder> keyStore = new UnsafeSlabKeyStore<>(8, 0.65f, slab)) {
+            final UnsafeTestOrder testOrder = new UnsafeTestOrder();
+            for (int i = 0; i < 2000; i++) {
+                final int index = slab.create(testOrder);
+                testOrder.setKey("KEY" + i);
+                keyStore.insert(index, testOrder);
+            }
+            final UnsafeTestOrder lookup = new UnsafeTestOrder();
+            final UnsafeSlab<UnsafeTestOrder> lookupSlab = new UnsafeSlab<>((short) 4, 1, UnsafeTestOrder::new);
+            lookupSlab.create(lookup);
+            for (int i = 0; i < 2000; i += 2) {
+                lookup.setKey("KEY" + i);
+                assertEquals(i, keyStore.removeCodec(lookup));
+            }
+            for (int i = 1; i < 2000; i += 2) {
+                lookup.setKey("KEY" + i);
+                assertEquals(i, keyStore.getKey(lookup));
+            }
+            assertEquals(0, slabHashCount[0]);
+            lookupSlab.close();
+        }
+    }
+
+    @Test
+    public void robinHoodKeyStoreInsertGetRemove() {
+        try (final UnsafeSlab<UnsafeTestOrder> slab = new UnsafeSlab<>((short) 64, 4, UnsafeTestOrder::new);
+             final UnsafeSlabKeyStore<UnsafeTestOrder> keyStore = new UnsafeSlabKeyStore<>(8, 0.9f, slab, false,
+                     ProbeMode.ROBIN_HOOD);
+             final UnsafeSlab<UnsafeTestOrder> lookupSlab = new UnsafeSlab<>((short) 64, 1, UnsafeTestOrder::new)) {
+            final UnsafeTestOrder testOrder = new UnsafeTestOrder();
+            for (int i = 0; i < 5000; i++) {
+                final int index = slab.create(testOrder);
+                testOrder.setKey("KEY" + i);
+                keyStore.insert(index, testOrder);
+            }
+            assertEquals(5000, keyStore.size());
+            assertTrue(keyStore.getMaxProbeDistance() <= ProbeMode.MAX_PROBE_DISTANCE);
+
+            final UnsafeTestOrder lookup = new UnsafeTestOrder();
+            lookupSlab.create(lookup);
+            for (int i = 0; i < 5000; i += 2) {
+                lookup.setKey("KEY" + i);
+                assertEquals(i, keyStore.removeCodec(lookup));
+            }
+            for (int i = 1; i < 5000; i += 4) {
+                assertTrue(keyStore.removeAt(i));
+                assertFalse(keyStore.removeAt(i));
+            }
+            for (int i = 0; i < 5000; i++) {
+                lookup.setKey("KEY" + i);
+                assertEquals(i % 4 == 3 ? i : -1, keyStore.getKey(lookup));
+            }
+            lookup.setKey("MISSING");
+            assertEquals(-1, keyStore.getKey(lookup));
+            assertEquals(1250, keyStore.size());
+        }
+    }
 }
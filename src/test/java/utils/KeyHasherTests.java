@@ -0,0 +1,117 @@
+package utils;
+
+import org.agrona.collections.Hashing;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+import slab.Slab;
+import slab.SlabKeyStore;
+import slab.TestOrder;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeyHasherTests {
+
+    @Test
+    public void heapOffHeapAndSegmentCopiesHashAlike() {
+        final byte[] key = "ORDER-1234567890-ABCDEFGHIJKLMNOPQRSTU".getBytes(StandardCharsets.US_ASCII);
+        final UnsafeBuffer heap = new UnsafeBuffer(new byte[key.length + 3]);
+        final UnsafeBuffer direct = new UnsafeBuffer(ByteBuffer.allocateDirect(key.length + 5));
+        heap.putBytes(3, key);
+        direct.putBytes(5, key);
+        try (final Arena arena = Arena.ofConfined()) {
+            final MemorySegment segment = arena.allocate(key.length + 7);
+            MemorySegment.copy(MemorySegment.ofArray(key), 0, segment, 7, key.length);
+            for (final StandardKeyHasher hasher : StandardKeyHasher.values()) {
+                for (int length = 0; length <= key.length; length++) {
+                    final int expected = hasher.hash(heap, 3, length);
+                    assertEquals(expected, hasher.hash(direct, 5, length), hasher + " " + length);
+                    assertEquals(expected, hasher.hash(direct.addressOffset() + 5, length), hasher + " " + length);
+                    assertEquals(expected, hasher.hash(segment, 7, length), hasher + " " + length);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void standardHashersMatchTheirReferences() {
+        final byte[] key = "0123456789abcdefghijklmnopqrstuvwxyz!?".getBytes(StandardCharsets.US_ASCII);
+        final UnsafeBuffer direct = new UnsafeBuffer(ByteBuffer.allocateDirect(key.length));
+        direct.putBytes(0, key);
+        final CRC32C crc32c = new CRC32C();
+        crc32c.update(key);
+        assertEquals((int) crc32c.getValue(), StandardKeyHasher.CRC32C.hash(direct, 0, key.length));
+        assertEquals((int) crc32c.getValue(), StandardKeyHasher.CRC32C.hash(new UnsafeBuffer(key), 0, key.length));
+        //The test JVM opens java.util.zip, so the off-heap path above went through the intrinsic
+        assertTrue(StandardKeyHasher.CRC32C.isIntrinsic());
+        //POLYNOMIAL is the previous codec hash: 31-multiplier over every whole word, then the tail bytes
+        int i = 0, polynomial = 19;
+        for (final int end = key.length & ~7; i < end; i += 8) {
+            polynomial = polynomial * 31 + Long.hashCode(direct.getLong(i));
+        }
+        for (; i < key.length; i++) {
+            polynomial = polynomial * 31 + key[i];
+        }
+        assertEquals(polynomial, StandardKeyHasher.POLYNOMIAL.hash(direct, 0, key.length));
+    }
+
+    @Test
+    public void keysDifferingAfterAZeroWordHashApart() {
+        final TestOrder first = new TestOrder();
+        first.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+        final TestOrder second = new TestOrder();
+        second.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+        first.buffer().putLong(16, 1);
+        second.buffer().putLong(16, 2);
+        assertNotEquals(first.keyHashCode(), second.keyHashCode());
+    }
+
+    @Test
+    public void sequentialKeysSpreadAcrossTheTable() {
+        for (final StandardKeyHasher hasher : new StandardKeyHasher[]{StandardKeyHasher.WYHASH, StandardKeyHasher.CRC32C}) {
+            //Low bits alone, before any further mixing: random hashing fills about 63% of buckets
+            final int bucketCount = 1 << 16;
+            final boolean[] usedBuckets = new boolean[bucketCount];
+            final TestOrder lookup = new TestOrder();
+            lookup.wrap(new UnsafeBuffer(ByteBuffer.allocateDirect(40).order(ByteOrder.LITTLE_ENDIAN)), 0, 40);
+            int used = 0;
+            for (int i = 0; i < bucketCount; i++) {
+                lookup.getUnsafeAsciiString().set("ORDER" + i);
+                final int bucket = hasher.hash(lookup.buffer(), 0, TestOrder.ASCII_LENGTH) & (bucketCount - 1);
+                if (!usedBuckets[bucket]) {
+                    usedBuckets[bucket] = true;
+                    used++;
+                }
+            }
+            assertTrue(used > bucketCount * 6 / 10, hasher + " filled " + used);
+
+            final Slab<TestOrder> slab = new Slab<>((short) 64, 64, () -> withHasher(hasher));
+            final SlabKeyStore<TestOrder> keyStore = new SlabKeyStore<>(8, 0.65f, slab);
+            final TestOrder testOrder = withHasher(hasher);
+            for (int i = 0; i < 100000; i++) {
+                final int index = slab.create(testOrder);
+                testOrder.getUnsafeAsciiString().set("ORDER" + i);
+                keyStore.insert(index, testOrder);
+            }
+            assertTrue(keyStore.getMaxProbeDistance() < 64, hasher + " " + keyStore.getMaxProbeDistance());
+            assertEquals(Hashing.hash(testOrder.keyHashCode(), 15), Hashing.hash(slab.keyHashCode(99999), 15));
+        }
+    }
+
+    private static TestOrder withHasher(final KeyHasher hasher) {
+        return new TestOrder() {
+            @Override
+            public KeyHasher keyHasher() {
+                return hasher;
+            }
+        };
+    }
+}